@@ -0,0 +1,126 @@
+package aed.collections;
+
+// A UNodeStore de sempre: UNodes de 16 bytes (XOR das ligações + endereço do item) lidos e escritos com o Unsafe.
+// Os nós são cortados da arena, ou reservados um a um com allocateMemory se a arena for null.
+// Várias stores podem embrulhar a mesma arena (as listas criadas com new StingyList<>(arena)): o que conta para saber
+// se os nós podem ser libertados de uma só vez, ou passados de uma lista para outra, é a arena.
+
+class ArenaNodeStore implements UNodeStore {
+
+    private final UNodeArena arena;
+
+    ArenaNodeStore(UNodeArena arena)
+    {
+        this.arena = arena;
+    }
+
+    @Override
+    public long create(Object item, long previous, long next)
+    {
+        return UNode.create_node(this.arena, item, previous, next);
+    }
+
+    @Override
+    public void free(long node)
+    {
+        UNode.free_node(this.arena, node);
+    }
+
+    @Override
+    public void freeChain(long head)
+    {
+        UNode.free_chain(this.arena, head);
+    }
+
+    @Override
+    public long links(long node)
+    {
+        return UNode.get_prev_next_addr(node);
+    }
+
+    @Override
+    public void setLinks(long node, long prevXorNext)
+    {
+        UNode.set_prev_next_addr(node, prevXorNext);
+    }
+
+    @Override
+    public <T> T item(long node)
+    {
+        return UNode.get_item(node);
+    }
+
+    @Override
+    public void setItem(long node, Object item)
+    {
+        UNode.set_item(node, item);
+    }
+
+    @Override
+    public void reserve(int nodes)
+    {
+        if(this.arena != null) this.arena.reserve(nodes);
+    }
+
+    @Override
+    public void retain()
+    {
+        if(this.arena != null) this.arena.retain();
+    }
+
+    @Override
+    public void release()
+    {
+        if(this.arena != null) this.arena.release();
+    }
+
+    @Override
+    public boolean canFreeAll()
+    {
+        return this.arena != null && !this.arena.isShared();
+    }
+
+    @Override
+    public void freeAll()
+    {
+        this.arena.freeAll();
+    }
+
+    // Se as duas stores usarem a mesma arena (ou nenhuma usar arena) não há nada a fazer; se other for a única dona
+    // da sua arena, os slabs dessa arena passam para esta (UNodeArena.adopt, O(log n)).
+    @Override
+    public boolean adopt(UNodeStore other)
+    {
+        if(!(other instanceof ArenaNodeStore)){
+            return false;
+        }
+        UNodeArena otherArena = ((ArenaNodeStore) other).arena;
+        if(otherArena == this.arena){
+            return true;
+        }
+        if(this.arena == null || otherArena == null || otherArena.isShared()
+                || this.arena.nodeSize() != otherArena.nodeSize()){
+            return false;
+        }
+        this.arena.adopt(otherArena);
+        return true;
+    }
+
+    @Override
+    public long[] compact(long first, int size)
+    {
+        return canFreeAll() ? this.arena.relayout(first, size) : null;
+    }
+
+    @Override
+    public long reservedBytes()
+    {
+        return (this.arena != null) ? this.arena.reservedBytes() : 0L;
+    }
+
+    @Override
+    public long nodeBytes()
+    {
+        return UNodeArena.DEFAULT_NODE_SIZE;
+    }
+}
@@ -0,0 +1,338 @@
+package aed.collections;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.lang.ref.Cleaner;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Iterator;
+
+// UNodeStore que não usa o Unsafe. As ligações (XOR do previous e do next) de cada nó ficam em ByteBuffers diretos,
+// isto é, fora do HEAP, e são lidas e escritas com um VarHandle (MethodHandles.byteBufferViewVarHandle), que o JIT
+// transforma num simples acesso à memória. Os itens ficam num array de referências normal, no HEAP, na mesma
+// posição que a ligação do nó. Assim:
+//   - ler um item não cria nenhum objeto (o UNode.get_item precisa de um Object[] temporário para "converter" o
+//     endereço num objeto);
+//   - os itens estão sempre alcançáveis e o garbage collector pode mudá-los de sítio à vontade, o que com os UNodes
+//     (que guardam o endereço do item) não pode acontecer;
+//   - cada nó gasta 8 bytes fora do HEAP (só as ligações) mais uma referência no HEAP (4 bytes com compressed oops).
+//
+// O "endereço" de um nó é a sua posição k nos slabs mais 1 (para que 0 continue a ser NULL). Os slabs têm todos
+// SLAB_NODES nós, por isso o slab e a posição dentro do slab saem de k com um shift e uma máscara. Os nós libertados
+// ficam numa lista de livres intrusiva, como na UNodeArena (a ligação de um nó livre guarda o próximo nó livre).
+//
+// O ideal seria a API Foreign Function & Memory (MemorySegment/Arena), mas no JDK 17 essa API ainda está em
+// incubação (jdk.incubator.foreign); os VarHandles sobre ByteBuffers diretos são a alternativa estável.
+//
+// Libertação da memória: NÃO é determinística. Sem o Unsafe (Unsafe.invokeCleaner) não há forma de libertar um
+// ByteBuffer direto: a sua memória só é devolvida ao sistema quando o garbage collector recolhe o ByteBuffer. Por isso
+// freeAll() e compact() apenas largam os slabs, e a memória continua reservada (e a contar para o limite
+// -XX:MaxDirectMemorySize) até o GC correr. Cada slab regista-se num Cleaner que só o conta como libertado no
+// UNodeMemoryStats quando o ByteBuffer é recolhido, para que as métricas mostrem a memória que ainda está de facto
+// reservada. Quem precisar de devolver a memória no momento do clear()/close() deve usar a ArenaNodeStore (a store
+// por omissão).
+// A store conta as listas que a usam (retain/release), como a UNodeArena. Não é thread-safe.
+
+public class BufferNodeStore implements UNodeStore {
+
+    //representamos null como o long 0L.
+    private static final long NULL = 0L;
+
+    private static final int SLAB_SHIFT = 12;
+    private static final int SLAB_NODES = 1 << SLAB_SHIFT;      //4096 nós (32 KB de ligações) por slab
+    private static final int SLAB_MASK = SLAB_NODES - 1;
+    private static final long SLAB_BYTES = 8L * SLAB_NODES;
+    private static final VarHandle LINKS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+    private static final Cleaner CLEANER = Cleaner.create();
+
+    private ByteBuffer[] links;     //ligações dos nós, um ByteBuffer direto por slab
+    private Object[][] items;       //itens dos nós, um array por slab
+    private int slabs;              //número de slabs reservados
+    private long used;              //número de nós já cortados alguma vez (os nós 1..used)
+    private long freeList;          //primeiro nó da lista de nós livres
+    private long liveNodes;
+    private int owners;
+
+    public BufferNodeStore()
+    {
+        this.links = new ByteBuffer[4];
+        this.items = new Object[4][];
+        this.slabs = 0;
+        this.used = 0;
+        this.freeList = NULL;
+        this.liveNodes = 0;
+        this.owners = 0;
+    }
+
+    @Override
+    public long create(Object item, long previous, long next)
+    {
+        long node;
+        //Caso em que há nós livres para reciclar
+        if(this.freeList != NULL){
+            node = this.freeList;
+            this.freeList = links(node);
+        }
+        //Caso em que temos de cortar um nó novo (reservando um novo slab se os que há estiverem cheios)
+        else{
+            if((this.used >>> SLAB_SHIFT) == this.slabs){
+                newSlab();
+            }
+            node = ++this.used;
+        }
+        long k = node - 1;
+        LINKS.set(this.links[(int) (k >>> SLAB_SHIFT)], (int) (k & SLAB_MASK) << 3, previous ^ next);
+        this.items[(int) (k >>> SLAB_SHIFT)][(int) (k & SLAB_MASK)] = item;
+        this.liveNodes++;
+        UNodeMemoryStats.nodeAllocated();
+        return node;
+    }
+
+    @Override
+    public void free(long node)
+    {
+        setItem(node, null);    //o item deixa de estar alcançável através da store
+        setLinks(node, this.freeList);
+        this.freeList = node;
+        this.liveNodes--;
+        UNodeMemoryStats.nodeFreed();
+    }
+
+    @Override
+    public void freeChain(long head)
+    {
+        long count = 0;
+        long prevAddr = NULL;
+        long node = head;
+        while(node != NULL){
+            long nextAddr = links(node) ^ prevAddr;
+            setItem(node, null);
+            setLinks(node, this.freeList);
+            this.freeList = node;
+            prevAddr = node;
+            node = nextAddr;
+            count++;
+        }
+        this.liveNodes -= count;
+        UNodeMemoryStats.nodesFreed(count);
+    }
+
+    @Override
+    public long links(long node)
+    {
+        if(node == NULL) throw new NullPointerException("Trying to get address of NULL address");
+        long k = node - 1;
+        return (long) LINKS.get(this.links[(int) (k >>> SLAB_SHIFT)], (int) (k & SLAB_MASK) << 3);
+    }
+
+    @Override
+    public void setLinks(long node, long prevXorNext)
+    {
+        if(node == NULL) throw new NullPointerException("Trying to set address of NULL address");
+        long k = node - 1;
+        LINKS.set(this.links[(int) (k >>> SLAB_SHIFT)], (int) (k & SLAB_MASK) << 3, prevXorNext);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T item(long node)
+    {
+        if(node == NULL) throw new NullPointerException("Trying to get item of NULL address");
+        long k = node - 1;
+        return (T) this.items[(int) (k >>> SLAB_SHIFT)][(int) (k & SLAB_MASK)];
+    }
+
+    @Override
+    public void setItem(long node, Object item)
+    {
+        if(node == NULL) throw new NullPointerException("Trying to set item of NULL address");
+        long k = node - 1;
+        this.items[(int) (k >>> SLAB_SHIFT)][(int) (k & SLAB_MASK)] = item;
+    }
+
+    // Os slabs têm tamanho fixo, por isso basta reservar já os slabs que faltam para os próximos nodes nós.
+    @Override
+    public void reserve(int nodes)
+    {
+        long needed = this.used + nodes;
+        while(((long) this.slabs << SLAB_SHIFT) < needed){
+            newSlab();
+        }
+    }
+
+    @Override
+    public void retain()
+    {
+        this.owners++;
+    }
+
+    @Override
+    public void release()
+    {
+        if(this.owners > 0){
+            this.owners--;
+        }
+    }
+
+    @Override
+    public boolean canFreeAll()
+    {
+        return this.owners <= 1;
+    }
+
+    // Larga todos os slabs. A memória dos ByteBuffers não é libertada aqui: só é devolvida ao sistema (e descontada
+    // no UNodeMemoryStats) quando o garbage collector os recolher (ver o comentário da classe).
+    @Override
+    public void freeAll()
+    {
+        UNodeMemoryStats.nodesFreed(this.liveNodes);
+        this.links = new ByteBuffer[4];
+        this.items = new Object[4][];
+        this.slabs = 0;
+        this.used = 0;
+        this.freeList = NULL;
+        this.liveNodes = 0;
+    }
+
+    // Os endereços dos nós dependem da posição do seu slab, por isso os slabs de outra store não podem ser juntados
+    // aos desta sem mudar os endereços: só os nós da própria store são aceites sem cópia.
+    @Override
+    public boolean adopt(UNodeStore other)
+    {
+        return other == this;
+    }
+
+    // Copia as ligações e os itens para slabs novos, pela ordem da lista: o i-ésimo nó passa a ser o nó i+1. Os slabs
+    // antigos são largados (a sua memória sai, e é descontada no UNodeMemoryStats, quando o GC os recolher).
+    @Override
+    public long[] compact(long first, int size)
+    {
+        if(!canFreeAll()){
+            return null;
+        }
+        ByteBuffer[] oldLinks = this.links;
+        Object[][] oldItems = this.items;
+        this.links = new ByteBuffer[4];
+        this.items = new Object[4][];
+        this.slabs = 0;
+        this.used = 0;
+        this.freeList = NULL;
+        reserve(size);
+        long oldPrev = NULL;
+        long oldNode = first;
+        for(int i = 0; i < size; i++){
+            long k = oldNode - 1;
+            long oldNext = ((long) LINKS.get(oldLinks[(int) (k >>> SLAB_SHIFT)], (int) (k & SLAB_MASK) << 3)) ^ oldPrev;
+            Object item = oldItems[(int) (k >>> SLAB_SHIFT)][(int) (k & SLAB_MASK)];
+            long next = (i == size - 1) ? NULL : i + 2;
+            LINKS.set(this.links[i >>> SLAB_SHIFT], (i & SLAB_MASK) << 3, i ^ next);   //o anterior do nó i+1 é o nó i
+            this.items[i >>> SLAB_SHIFT][i & SLAB_MASK] = item;
+            oldPrev = oldNode;
+            oldNode = oldNext;
+        }
+        this.used = size;
+        return new long[] {1L, size};
+    }
+
+    @Override
+    public long reservedBytes()
+    {
+        return this.slabs * SLAB_BYTES;
+    }
+
+    @Override
+    public long nodeBytes()
+    {
+        return 8L;
+    }
+
+    public long liveNodes()
+    {
+        return this.liveNodes;
+    }
+
+    private void newSlab()
+    {
+        if(this.slabs == this.links.length){
+            ByteBuffer[] newLinks = new ByteBuffer[this.slabs * 2];
+            Object[][] newItems = new Object[this.slabs * 2][];
+            System.arraycopy(this.links, 0, newLinks, 0, this.slabs);
+            System.arraycopy(this.items, 0, newItems, 0, this.slabs);
+            this.links = newLinks;
+            this.items = newItems;
+        }
+        ByteBuffer slab = ByteBuffer.allocateDirect((int) SLAB_BYTES).order(ByteOrder.nativeOrder());
+        //a memória do slab só é libertada quando o GC recolher o ByteBuffer, e só então sai das contas
+        CLEANER.register(slab, () -> UNodeMemoryStats.bytesReleased(SLAB_BYTES));
+        this.links[this.slabs] = slab;
+        this.items[this.slabs] = new Object[SLAB_NODES];
+        this.slabs++;
+        UNodeMemoryStats.bytesReserved(SLAB_BYTES);
+        UNodeMemoryStats.updatePeak();
+    }
+
+    //Benchmark: add, get(i) sequencial e iteração numa StingyList com UNodes (Unsafe) e com esta store.
+    //Os itens são promovidos para a old generation antes de serem guardados nos UNodes, que guardam os seus endereços.
+
+    public static StingyList<Integer> generateUnsafeExample(int n)
+    {
+        return fill(new StingyList<>(), n);
+    }
+
+    public static StingyList<Integer> generateBufferExample(int n)
+    {
+        return fill(new StingyList<>(new BufferNodeStore()), n);
+    }
+
+    private static StingyList<Integer> fill(StingyList<Integer> list, int n)
+    {
+        Integer[] items = UNodeArena.generateItems(n);
+        System.gc();
+        for(Integer item : items){
+            list.add(item);
+        }
+        return list;
+    }
+
+    public static void addAll(StingyList<Integer> list)
+    {
+        Integer item = 42;
+        int n = list.size();
+        for(int i = 0; i < n; i++){
+            list.add(item);
+        }
+    }
+
+    //soma de todos os valores lidos nos testes, escrita no fim do main para que as leituras não possam ser eliminadas
+    private static long benchmarkSum = 0;
+
+    public static void sequentialGets(StingyList<Integer> list)
+    {
+        long sum = 0;
+        for(int i = 0; i < list.size(); i++){
+            sum += list.get(i);
+        }
+        benchmarkSum += sum;
+    }
+
+    public static void iterate(StingyList<Integer> list)
+    {
+        long sum = 0;
+        Iterator<Integer> it = list.iterator();
+        while(it.hasNext()){
+            sum += it.next();
+        }
+        benchmarkSum += sum;
+    }
+
+    public static void main(String[] args)
+    {
+        TemporalAnalysisUtils.runDoublingRatioTest("add com UNodes (Unsafe)", BufferNodeStore::generateUnsafeExample, BufferNodeStore::addAll, 1000, 10);
+        TemporalAnalysisUtils.runDoublingRatioTest("add com BufferNodeStore", BufferNodeStore::generateBufferExample, BufferNodeStore::addAll, 1000, 10);
+        TemporalAnalysisUtils.runDoublingRatioTest("get(i) sequencial com UNodes (Unsafe)", BufferNodeStore::generateUnsafeExample, BufferNodeStore::sequentialGets, 1000, 10);
+        TemporalAnalysisUtils.runDoublingRatioTest("get(i) sequencial com BufferNodeStore", BufferNodeStore::generateBufferExample, BufferNodeStore::sequentialGets, 1000, 10);
+        TemporalAnalysisUtils.runDoublingRatioTest("iterar com UNodes (Unsafe)", BufferNodeStore::generateUnsafeExample, BufferNodeStore::iterate, 1000, 10);
+        TemporalAnalysisUtils.runDoublingRatioTest("iterar com BufferNodeStore", BufferNodeStore::generateBufferExample, BufferNodeStore::iterate, 1000, 10);
+        System.out.println("soma dos valores lidos: " + benchmarkSum);
+    }
+}
@@ -0,0 +1,412 @@
+package aed.collections;
+
+import sun.misc.Unsafe;
+
+import java.lang.ref.Cleaner;
+
+// UNodeStore com nós de 8 bytes em vez de 16. Os nós não são identificados pelo seu endereço de memória (64 bits) mas
+// pela sua posição na região de memória da store (um índice de 32 bits, a começar em 1 para que 0 continue a ser
+// NULL), por isso cada nó guarda:
+//   - 4 bytes com o XOR dos índices do previous e do next (o XOR de dois índices de 31 bits cabe em 32 bits);
+//   - 4 bytes com o handle do item, a sua posição numa tabela de referências no HEAP (como na HandleNodeStore).
+// A StingyList não dá pela diferença: continua a fazer o XOR dos "endereços" dos nós com getBeyond e relink, só que
+// agora esses endereços são índices.
+//
+// Os nós estão todos numa única região de memória fora do HEAP, que cresce para o dobro com reallocateMemory quando
+// enche. A região pode mudar de endereço ao crescer, mas os índices dos nós não mudam, e chegar ao nó k é só
+// base + 8*(k-1), sem tabelas de regiões pelo meio (em Linux, blocos grandes crescem com mremap, sem cópia).
+// Como os nós estão seguidos, percorrer uma lista construída por ordem lê a memória sequencialmente, e cabem o dobro
+// dos nós em cada linha de cache.
+//
+// Limites: no máximo MAX_NODES = 2^31-1 nós e MAX_ITEMS (pouco menos de 2^31) itens por store, o mesmo limite que o
+// size() int da lista; acima disso create lança IllegalStateException. Um nó gasta 8 bytes fora do HEAP e o seu item
+// uma referência na tabela de handles (4 bytes com compressed oops, 8 sem), mais 4 bytes por cada handle libertado à
+// espera de ser reciclado. Enquanto cresce, a região e a tabela podem ter até o dobro das posições em uso.
+//
+// Como a UNodeArena, regista-se num Cleaner que liberta a região se a store deixar de ser alcançável sem freeAll, e
+// conta as listas que a usam (retain/release): as listas que partilham a store devem ser fechadas para que a última
+// a possa voltar a libertar de uma só vez. Não é thread-safe.
+
+public class CompactNodeStore implements UNodeStore {
+
+    //representamos null como o long 0L.
+    private static final long NULL = 0L;
+    private static final Unsafe UNSAFE = UnsafeHelper.getUnsafe();
+    private static final Cleaner CLEANER = Cleaner.create();
+
+    static final long NODE_BYTES = 8L;
+    static final long MAX_NODES = Integer.MAX_VALUE;
+    static final int MAX_ITEMS = Integer.MAX_VALUE - 8;    //maior tamanho seguro de um array em Java
+    private static final int FIRST_CAPACITY = 64;
+    private static final long HANDLE_OFFSET = 4L;
+    private static final long REFERENCE_BYTES = UNSAFE.arrayIndexScale(Object[].class);
+
+    private final Region region;    //memória dos nós (num objeto à parte para o Cleaner não depender da store)
+    private long base;              //endereço do nó 1 (o mesmo que region.base, aqui para chegar aos nós mais depressa)
+    private long capacity;          //número de nós que cabem na região
+    private long used;              //número de nós já cortados alguma vez (os nós 1..used)
+    private long freeList;          //primeiro nó da lista de nós livres (o XOR de um nó livre guarda o próximo livre)
+    private long freeNodes;
+    private int owners;
+
+    private Object[] items;         //tabela de itens: o handle de um item é a sua posição nesta tabela
+    private int handles;            //handles já usados alguma vez
+    private int[] freeHandles;      //pilha de handles libertados
+    private int freeHandleCount;
+
+    public CompactNodeStore()
+    {
+        this.region = new Region();
+        CLEANER.register(this, this.region);
+        this.base = NULL;
+        this.capacity = 0;
+        this.used = 0;
+        this.freeList = NULL;
+        this.freeNodes = 0;
+        this.owners = 0;
+        this.items = new Object[FIRST_CAPACITY];
+        this.handles = 0;
+        this.freeHandles = new int[16];
+        this.freeHandleCount = 0;
+    }
+
+    @Override
+    public long create(Object item, long previous, long next)
+    {
+        long node;
+        //Caso em que há nós livres para reciclar
+        if(this.freeList != NULL){
+            node = this.freeList;
+            this.freeList = links(node);
+            this.freeNodes--;
+        }
+        //Caso em que temos de cortar um nó novo (aumentando a região se estiver cheia)
+        else{
+            if(this.used == this.capacity){
+                grow(this.used + 1);
+            }
+            node = ++this.used;
+        }
+        long addr = address(node);
+        UNSAFE.putInt(addr, (int) (previous ^ next));
+        UNSAFE.putInt(addr + HANDLE_OFFSET, acquire(item));
+        this.region.liveNodes++;
+        UNodeMemoryStats.nodeAllocated();
+        return node;
+    }
+
+    @Override
+    public void free(long node)
+    {
+        long addr = address(node);
+        release(UNSAFE.getInt(addr + HANDLE_OFFSET));
+        UNSAFE.putInt(addr, (int) this.freeList);
+        this.freeList = node;
+        this.freeNodes++;
+        this.region.liveNodes--;
+        UNodeMemoryStats.nodeFreed();
+    }
+
+    @Override
+    public void freeChain(long head)
+    {
+        long count = 0;
+        long prevAddr = NULL;
+        long node = head;
+        while(node != NULL){
+            long addr = address(node);
+            long nextAddr = (UNSAFE.getInt(addr) & 0xFFFFFFFFL) ^ prevAddr;
+            release(UNSAFE.getInt(addr + HANDLE_OFFSET));
+            UNSAFE.putInt(addr, (int) this.freeList);
+            this.freeList = node;
+            prevAddr = node;
+            node = nextAddr;
+            count++;
+        }
+        this.freeNodes += count;
+        this.region.liveNodes -= count;
+        UNodeMemoryStats.nodesFreed(count);
+    }
+
+    @Override
+    public long links(long node)
+    {
+        return UNSAFE.getInt(address(node)) & 0xFFFFFFFFL;
+    }
+
+    @Override
+    public void setLinks(long node, long prevXorNext)
+    {
+        UNSAFE.putInt(address(node), (int) prevXorNext);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T item(long node)
+    {
+        return (T) this.items[UNSAFE.getInt(address(node) + HANDLE_OFFSET)];
+    }
+
+    @Override
+    public void setItem(long node, Object item)
+    {
+        this.items[UNSAFE.getInt(address(node) + HANDLE_OFFSET)] = item;
+    }
+
+    @Override
+    public void reserve(int nodes)
+    {
+        long needed = this.used + Math.max(0, nodes - this.freeNodes);
+        if(needed > this.capacity){
+            grow(needed);
+        }
+    }
+
+    @Override
+    public void retain()
+    {
+        this.owners++;
+    }
+
+    @Override
+    public void release()
+    {
+        if(this.owners > 0){
+            this.owners--;
+        }
+    }
+
+    @Override
+    public boolean canFreeAll()
+    {
+        return this.owners <= 1;
+    }
+
+    // Liberta a região e larga a tabela de itens. A store pode continuar a ser usada depois disto.
+    @Override
+    public void freeAll()
+    {
+        this.region.run();
+        this.base = NULL;
+        this.capacity = 0;
+        this.used = 0;
+        this.freeList = NULL;
+        this.freeNodes = 0;
+        this.items = new Object[FIRST_CAPACITY];
+        this.handles = 0;
+        this.freeHandles = new int[16];
+        this.freeHandleCount = 0;
+    }
+
+    // Os índices dos nós dependem da região da store, por isso só os nós da própria store são aceites sem cópia.
+    @Override
+    public boolean adopt(UNodeStore other)
+    {
+        return other == this;
+    }
+
+    // Copia os nós para uma região nova, pela ordem da lista: o i-ésimo nó passa a ser o nó i+1 e o seu item passa para
+    // a posição i da tabela, por isso tanto os nós como os itens ficam seguidos. A região antiga é libertada.
+    @Override
+    public long[] compact(long first, int size)
+    {
+        if(!canFreeAll()){
+            return null;
+        }
+        long newCapacity = Math.max(FIRST_CAPACITY, size);
+        long newBase = UNSAFE.allocateMemory(newCapacity * NODE_BYTES);
+        Object[] newItems = new Object[(int) newCapacity];
+        long oldPrev = NULL;
+        long oldNode = first;
+        for(int i = 0; i < size; i++){
+            long oldAddr = address(oldNode);
+            long oldNext = (UNSAFE.getInt(oldAddr) & 0xFFFFFFFFL) ^ oldPrev;
+            long newAddr = newBase + ((long) i << 3);
+            long next = (i == size - 1) ? NULL : i + 2;
+            UNSAFE.putInt(newAddr, (int) (i ^ next));     //o anterior do nó i+1 é o nó i
+            UNSAFE.putInt(newAddr + HANDLE_OFFSET, i);
+            newItems[i] = this.items[UNSAFE.getInt(oldAddr + HANDLE_OFFSET)];
+            oldPrev = oldNode;
+            oldNode = oldNext;
+        }
+        this.region.replace(newBase, newCapacity * NODE_BYTES);
+        this.base = newBase;
+        this.capacity = newCapacity;
+        this.used = size;
+        this.freeList = NULL;
+        this.freeNodes = 0;
+        this.items = newItems;
+        this.handles = size;
+        this.freeHandleCount = 0;
+        return new long[] {1L, size};
+    }
+
+    @Override
+    public long reservedBytes()
+    {
+        return this.region.bytes;
+    }
+
+    @Override
+    public long nodeBytes()
+    {
+        return NODE_BYTES;
+    }
+
+    // Memória ocupada pela tabela de handles no HEAP, em bytes (o tamanho de cada referência é dado pelo Unsafe).
+    public long handleTableBytes()
+    {
+        return REFERENCE_BYTES * this.items.length + 4L * this.freeHandles.length;
+    }
+
+    public long liveNodes()
+    {
+        return this.region.liveNodes;
+    }
+
+    //endereço de memória do nó com índice node
+    private long address(long node)
+    {
+        if(node == NULL) throw new NullPointerException("Trying to access NULL node");
+        return this.base + ((node - 1) << 3);
+    }
+
+    //aumenta a região para o dobro (ou mais, se for preciso) até caberem pelo menos nodes nós
+    private void grow(long nodes)
+    {
+        if(nodes > MAX_NODES){
+            throw new IllegalStateException("CompactNodeStore is limited to " + MAX_NODES + " nodes");
+        }
+        long newCapacity = Math.max(FIRST_CAPACITY, this.capacity);
+        while(newCapacity < nodes){
+            newCapacity *= 2;
+        }
+        newCapacity = Math.min(newCapacity, MAX_NODES);
+        this.region.resize(newCapacity * NODE_BYTES);
+        this.base = this.region.base;
+        this.capacity = newCapacity;
+        UNodeMemoryStats.updatePeak();
+    }
+
+    private int acquire(Object item)
+    {
+        int handle;
+        if(this.freeHandleCount > 0){
+            handle = this.freeHandles[--this.freeHandleCount];
+        }
+        else{
+            if(this.handles == this.items.length){
+                if(this.handles == MAX_ITEMS){
+                    throw new IllegalStateException("CompactNodeStore is limited to " + MAX_ITEMS + " items");
+                }
+                Object[] newItems = new Object[(int) Math.min(2L * this.items.length, MAX_ITEMS)];
+                System.arraycopy(this.items, 0, newItems, 0, this.handles);
+                this.items = newItems;
+            }
+            handle = this.handles++;
+        }
+        this.items[handle] = item;
+        return handle;
+    }
+
+    private void release(int handle)
+    {
+        this.items[handle] = null;
+        if(this.freeHandleCount == this.freeHandles.length){
+            int[] newFreeHandles = new int[this.freeHandles.length * 2];
+            System.arraycopy(this.freeHandles, 0, newFreeHandles, 0, this.freeHandleCount);
+            this.freeHandles = newFreeHandles;
+        }
+        this.freeHandles[this.freeHandleCount++] = handle;
+    }
+
+    // Memória da região de uma store (e o número de nós em uso, para a contabilidade do UNodeMemoryStats).
+    // É também a ação do Cleaner, por isso não pode ter referências para a store.
+    private static class Region implements Runnable {
+
+        private long base = NULL;
+        private long bytes = 0;
+        private long liveNodes = 0;
+
+        //muda o tamanho da região para newBytes, mantendo o seu conteúdo
+        void resize(long newBytes)
+        {
+            this.base = (this.base == NULL) ? UNSAFE.allocateMemory(newBytes) : UNSAFE.reallocateMemory(this.base, newBytes);
+            UNodeMemoryStats.bytesReserved(newBytes - this.bytes);
+            this.bytes = newBytes;
+        }
+
+        //passa a usar a região newBase (já preenchida) e liberta a antiga
+        void replace(long newBase, long newBytes)
+        {
+            UNSAFE.freeMemory(this.base);
+            UNodeMemoryStats.bytesReleased(this.bytes);
+            UNodeMemoryStats.bytesReserved(newBytes);
+            UNodeMemoryStats.updatePeak();
+            this.base = newBase;
+            this.bytes = newBytes;
+        }
+
+        //liberta a região
+        @Override
+        public void run()
+        {
+            if(this.base != NULL){
+                UNSAFE.freeMemory(this.base);
+                this.base = NULL;
+            }
+            UNodeMemoryStats.bytesReleased(this.bytes);
+            UNodeMemoryStats.nodesFreed(this.liveNodes);
+            this.bytes = 0;
+            this.liveNodes = 0;
+        }
+    }
+
+    //Benchmark: memória por elemento com UNodes de 16 bytes (com endereços e com handles) e com nós de 8 bytes, e
+    //tempo de iteração com handles em nós de 16 e de 8 bytes.
+
+    private static void printFootprint(int n)
+    {
+        Integer item = 42;      //só medimos a memória da lista: o mesmo item em todas as posições
+        StingyList<Integer> unodes = new StingyList<>();
+        HandleNodeStore handleStore = new HandleNodeStore();
+        StingyList<Integer> handles = new StingyList<>(handleStore);
+        CompactNodeStore compactStore = new CompactNodeStore();
+        StingyList<Integer> compact = new StingyList<>(compactStore);
+        for(int i = 0; i < n; i++){
+            unodes.add(item);
+            handles.add(item);
+            compact.add(item);
+        }
+        System.out.println(n + "\t" + String.format("%.2f", (double) unodes.nativeMemoryBytes() / n)
+                + "\t" + String.format("%.2f", (double) handles.nativeMemoryBytes() / n)
+                + "\t" + String.format("%.2f", (double) handleStore.handleTableBytes() / n)
+                + "\t" + String.format("%.2f", (double) compact.nativeMemoryBytes() / n)
+                + "\t" + String.format("%.2f", (double) compactStore.handleTableBytes() / n));
+        unodes.close();
+        handles.close();
+        compact.close();
+    }
+
+    public static StingyList<Integer> generateCompactExample(int n)
+    {
+        StingyList<Integer> list = new StingyList<>(new CompactNodeStore());
+        Integer[] items = UNodeArena.generateItems(n);
+        for(Integer item : items){
+            list.add(item);
+        }
+        return list;
+    }
+
+    public static void main(String[] args)
+    {
+        System.out.println("bytes por elemento (referências de " + REFERENCE_BYTES + " bytes)");
+        System.out.println("n\tUNodes\thandles(fora)\thandles(HEAP)\tcompacto(fora)\tcompacto(HEAP)");
+        for(int n = 1000; n <= 10_000_000; n *= 10){
+            printFootprint(n);
+        }
+        TemporalAnalysisUtils.runDoublingRatioTest("iterar com handles (nós de 16 bytes)", HandleNodeStore::generateHandleExample, BufferNodeStore::iterate, 1000, 11);
+        TemporalAnalysisUtils.runDoublingRatioTest("iterar com nós de 8 bytes", CompactNodeStore::generateCompactExample, BufferNodeStore::iterate, 1000, 11);
+        TemporalAnalysisUtils.runDoublingRatioTest("get(i) sequencial com nós de 8 bytes", CompactNodeStore::generateCompactExample, BufferNodeStore::sequentialGets, 1000, 11);
+    }
+}
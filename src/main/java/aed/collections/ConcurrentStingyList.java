@@ -0,0 +1,431 @@
+package aed.collections;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.StampedLock;
+
+// Variante thread-safe da StingyList.
+//
+// As operações que alteram a lista (add, addAt, remove, removeAt, reverse, clear) são feitas sob o write lock de um
+// StampedLock, sobre uma StingyList interna. As leituras (get, size, toArray, iterator) começam por uma leitura
+// otimista (tryOptimisticRead): percorrem os nós sem bloquear nada, e validam o stamp depois de cada leitura de
+// memória e antes de usar o endereço lido. Se entretanto houve uma escrita, a leitura é descartada e repetida com o
+// read lock. Como a StingyList.get(i) mexe no finger, as leituras não a usam: percorrem os nós a partir do first ou
+// do last.
+//
+// Um nó removido por um escritor pode estar a ser lido por um leitor otimista. Por isso a memória dos nós nunca é
+// devolvida ao sistema enquanto houver leitores: os nós removidos voltam para a lista de livres da arena (o slab
+// continua reservado, por isso ler um nó reciclado dá um valor errado, que a validação deteta, mas nunca um acesso a
+// memória libertada), e os slabs de uma lista limpa com clear só são libertados quando o contador de leitores
+// (um LongAdder, para que os leitores não disputem a mesma cache line) chegar a zero.
+//
+// Os iteradores percorrem uma cópia da lista tirada no momento em que são criados (não lançam
+// ConcurrentModificationException, mas também não veem as alterações feitas depois).
+
+public class ConcurrentStingyList<T> implements Iterable<T>, AutoCloseable {
+
+    //representamos null como o long 0L.
+    private static final long NULL = 0L;
+
+    private final StampedLock lock;
+    private final LongAdder readers;                //leitores que podem estar a ler nós neste momento
+    private StingyList<T> list;
+    private final ArrayList<StingyList<T>> retired; //listas limpas cujos slabs esperam que os leitores saiam
+    private volatile boolean reclaimPending;
+
+    public ConcurrentStingyList()
+    {
+        this.lock = new StampedLock();
+        this.readers = new LongAdder();
+        this.list = new StingyList<>();
+        this.retired = new ArrayList<>();
+        this.reclaimPending = false;
+    }
+
+    //Operações de escrita
+
+    public void add(T item)
+    {
+        long stamp = this.lock.writeLock();
+        try{
+            this.list.add(item);
+        }
+        finally{
+            this.lock.unlockWrite(stamp);
+        }
+    }
+
+    public void addAt(int i, T item)
+    {
+        long stamp = this.lock.writeLock();
+        try{
+            this.list.addAt(i, item);
+        }
+        finally{
+            this.lock.unlockWrite(stamp);
+        }
+    }
+
+    public T remove()
+    {
+        long stamp = this.lock.writeLock();
+        try{
+            return this.list.remove();
+        }
+        finally{
+            this.lock.unlockWrite(stamp);
+        }
+    }
+
+    public T removeAt(int i)
+    {
+        long stamp = this.lock.writeLock();
+        try{
+            return this.list.removeAt(i);
+        }
+        finally{
+            this.lock.unlockWrite(stamp);
+        }
+    }
+
+    public void reverse()
+    {
+        long stamp = this.lock.writeLock();
+        try{
+            this.list.reverse();
+        }
+        finally{
+            this.lock.unlockWrite(stamp);
+        }
+    }
+
+    // Esvazia a lista. A lista antiga é trocada por uma nova, e os seus slabs só são libertados quando não houver
+    // leitores que ainda possam estar a percorrê-la.
+    public void clear()
+    {
+        long stamp = this.lock.writeLock();
+        try{
+            this.retired.add(this.list);
+            this.list = new StingyList<>();
+            this.reclaimPending = true;
+            reclaim();
+        }
+        finally{
+            this.lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public void close()
+    {
+        clear();
+    }
+
+    //Operações de leitura
+
+    public T get()
+    {
+        return read(-1);
+    }
+
+    public T get(int i)
+    {
+        if(i < 0){
+            throw new IndexOutOfBoundsException();
+        }
+        return read(i);
+    }
+
+    //Devolve o item na posição i (ou o último item se i for -1).
+    private T read(int i)
+    {
+        this.readers.increment();
+        try{
+            long stamp = this.lock.tryOptimisticRead();
+            if(stamp != 0L){
+                long itemAddr = findItem(i, stamp);
+                if(itemAddr != NULL){
+                    return item(itemAddr);
+                }
+            }
+            stamp = this.lock.readLock();
+            try{
+                return item(findItem(i, 0L));
+            }
+            finally{
+                this.lock.unlockRead(stamp);
+            }
+        }
+        finally{
+            endRead();
+        }
+    }
+
+    public int size()
+    {
+        long stamp = this.lock.tryOptimisticRead();
+        int size = this.list.size();
+        if(!this.lock.validate(stamp)){
+            stamp = this.lock.readLock();
+            try{
+                size = this.list.size();
+            }
+            finally{
+                this.lock.unlockRead(stamp);
+            }
+        }
+        return size;
+    }
+
+    public boolean isEmpty()
+    {
+        return size() == 0;
+    }
+
+    public Object[] toArray()
+    {
+        this.readers.increment();
+        try{
+            long stamp = this.lock.tryOptimisticRead();
+            if(stamp != 0L){
+                Object[] result = copyItems(stamp);
+                if(result != null){
+                    return result;
+                }
+            }
+            stamp = this.lock.readLock();
+            try{
+                return copyItems(0L);
+            }
+            finally{
+                this.lock.unlockRead(stamp);
+            }
+        }
+        finally{
+            endRead();
+        }
+    }
+
+    @Override
+    public Iterator<T> iterator()
+    {
+        return new SnapshotIterator(toArray());
+    }
+
+    //Um stamp 0 significa que temos o read lock, por isso não é preciso validar nada.
+    private boolean valid(long stamp)
+    {
+        return stamp == 0L || this.lock.validate(stamp);
+    }
+
+    //Devolve o endereço do item na posição i (-1 para o último), ou NULL se a leitura otimista deixou de ser válida.
+    private long findItem(int i, long stamp)
+    {
+        StingyList<T> l = this.list;
+        int size = l.size();
+        long first = l.firstNode();
+        long last = l.lastNode();
+        if(!valid(stamp)){
+            return NULL;
+        }
+        if(i == -1) i = size-1;
+        if(i < 0 || i >= size){
+            throw new IndexOutOfBoundsException();
+        }
+        //partimos do extremo mais próximo
+        long addr = first;
+        int steps = i;
+        if(size-1-i < i){
+            addr = last;
+            steps = size-1-i;
+        }
+        long prevAddr = NULL;
+        for(int k = 0; k < steps; k++){
+            long nextAddr = UNode.get_prev_next_addr(addr) ^ prevAddr;
+            if(!valid(stamp)){
+                return NULL;    //não seguimos um endereço lido de um nó que pode ter sido alterado ou reciclado
+            }
+            prevAddr = addr;
+            addr = nextAddr;
+        }
+        long itemAddr = UNode.get_value(addr);  //o 2.º long do nó é o endereço do item
+        if(!valid(stamp)){
+            return NULL;
+        }
+        return itemAddr;
+    }
+
+    //Copia os itens da lista para um array, ou devolve null se a leitura otimista deixou de ser válida.
+    private Object[] copyItems(long stamp)
+    {
+        StingyList<T> l = this.list;
+        int size = l.size();
+        long addr = l.firstNode();
+        if(!valid(stamp)){
+            return null;
+        }
+        long[] itemAddrs = new long[size];
+        long prevAddr = NULL;
+        for(int k = 0; k < size; k++){
+            long itemAddr = UNode.get_value(addr);
+            long nextAddr = UNode.get_prev_next_addr(addr) ^ prevAddr;
+            if(!valid(stamp)){
+                return null;
+            }
+            itemAddrs[k] = itemAddr;
+            prevAddr = addr;
+            addr = nextAddr;
+        }
+        //só convertemos os endereços em objetos depois de sabermos que todos foram lidos de forma consistente
+        Object[] result = new Object[size];
+        for(int k = 0; k < size; k++){
+            result[k] = UnsafeHelper.fromAddress(itemAddrs[k]);
+        }
+        return result;
+    }
+
+    @SuppressWarnings("unchecked")
+    private T item(long itemAddr)
+    {
+        return (T) UnsafeHelper.fromAddress(itemAddr);
+    }
+
+    //O último leitor a sair liberta as listas que estavam à espera (se conseguir o write lock sem esperar).
+    private void endRead()
+    {
+        this.readers.decrement();
+        if(this.reclaimPending){
+            long stamp = this.lock.tryWriteLock();
+            if(stamp != 0L){
+                try{
+                    reclaim();
+                }
+                finally{
+                    this.lock.unlockWrite(stamp);
+                }
+            }
+        }
+    }
+
+    //Tem de ser chamado com o write lock: novos leitores só começam depois de o largarmos, por isso basta que não
+    //haja leitores registados agora.
+    private void reclaim()
+    {
+        if(this.readers.sum() == 0){
+            for(StingyList<T> old : this.retired){
+                old.close();
+            }
+            this.retired.clear();
+            this.reclaimPending = false;
+        }
+    }
+
+    private class SnapshotIterator implements Iterator<T> {
+
+        private final Object[] items;
+        private int i;
+
+        SnapshotIterator(Object[] items)
+        {
+            this.items = items;
+            this.i = 0;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return this.i < this.items.length;
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public T next() {
+            if(this.i >= this.items.length){
+                throw new NoSuchElementException();
+            }
+            return (T) this.items[this.i++];
+        }
+    }
+
+    //Benchmark: débito de get(i) aleatórios com 1% de escritas (addAt/removeAt), com 1, 2, 4, ... threads,
+    //comparado com uma StingyList protegida por synchronized.
+    //Os itens são Integers da cache de Integer.valueOf, para que o garbage collector não os mude de sítio.
+
+    private static final int LIST_SIZE = 1000;
+    private static final long DURATION_MS = 500;
+
+    private static long runThreads(int threads, Runnable operation) throws InterruptedException
+    {
+        LongAdder operations = new LongAdder();
+        long deadline = System.currentTimeMillis() + DURATION_MS;
+        Thread[] workers = new Thread[threads];
+        for(int t = 0; t < threads; t++){
+            workers[t] = new Thread(() -> {
+                long count = 0;
+                while(System.currentTimeMillis() < deadline){
+                    for(int k = 0; k < 100; k++){
+                        operation.run();
+                    }
+                    count += 100;
+                }
+                operations.add(count);
+            });
+            workers[t].start();
+        }
+        for(Thread worker : workers){
+            worker.join();
+        }
+        return operations.sum() / DURATION_MS;
+    }
+
+    public static void main(String[] args) throws InterruptedException
+    {
+        Random r = new Random();
+        ConcurrentStingyList<Integer> concurrent = new ConcurrentStingyList<>();
+        StingyList<Integer> synced = new StingyList<>();
+        for(int i = 0; i < LIST_SIZE; i++){
+            Integer item = r.nextInt(256) - 128;
+            concurrent.add(item);
+            synced.add(item);
+        }
+
+        Runnable concurrentOp = () -> {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            if(random.nextInt(100) == 0){
+                concurrent.addAt(random.nextInt(LIST_SIZE), random.nextInt(256) - 128);
+                concurrent.removeAt(random.nextInt(LIST_SIZE));
+            }
+            else{
+                concurrent.get(random.nextInt(LIST_SIZE));
+            }
+        };
+        Runnable syncedOp = () -> {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            synchronized(synced){
+                if(random.nextInt(100) == 0){
+                    synced.addAt(random.nextInt(LIST_SIZE), random.nextInt(256) - 128);
+                    synced.removeAt(random.nextInt(LIST_SIZE));
+                }
+                else{
+                    synced.get(random.nextInt(LIST_SIZE));
+                }
+            }
+        };
+
+        int cores = Runtime.getRuntime().availableProcessors();
+        System.out.println("n = " + LIST_SIZE + ", " + cores + " cores, 99% get(i) / 1% addAt+removeAt");
+        System.out.println("threads\tStampedLock (ops/ms)\tsynchronized (ops/ms)");
+        runThreads(cores, concurrentOp);    //aquecimento do JIT
+        runThreads(cores, syncedOp);
+        for(int threads = 1; threads <= Math.max(2, 2 * cores); threads *= 2){
+            long concurrentThroughput = runThreads(threads, concurrentOp);
+            long syncedThroughput = runThreads(threads, syncedOp);
+            System.out.println(threads + "\t" + concurrentThroughput + "\t" + syncedThroughput);
+        }
+        concurrent.close();
+        synced.close();
+    }
+}
@@ -0,0 +1,276 @@
+package aed.collections;
+
+import java.util.Iterator;
+
+// UNodeStore com os mesmos UNodes de 16 bytes (cortados de uma UNodeArena), mas em que o 2.º long de cada nó não
+// guarda o endereço do item: guarda um "handle", a posição do item numa tabela de referências no HEAP.
+//
+// Guardar o endereço do item (como faz o UNode.set_item) só funciona enquanto o item não mudar de sítio, e nada impede
+// o garbage collector de o mudar (o G1, o Parallel e o ZGC fazem-no sempre que compactam o HEAP) ou mesmo de o
+// recolher, porque o endereço guardado fora do HEAP não conta como referência. Com a tabela de handles:
+//   - os itens estão sempre alcançáveis (a tabela é um Object[] normal) e podem ser mudados de sítio à vontade;
+//   - ler um item é ler o handle do nó e indexar a tabela, sem criar objetos;
+//   - as ligações XOR continuam fora do HEAP, em nós de 16 bytes, e a tabela custa uma referência por item
+//     (4 bytes com compressed oops), mais 4 bytes por cada posição libertada à espera de ser reciclada.
+//
+// As posições libertadas são guardadas numa pilha (freeSlots) e reutilizadas pelos próximos itens, por isso a tabela
+// só cresce até ao maior número de itens que a store teve ao mesmo tempo.
+//
+// Os handles só têm significado dentro da store que os criou, por isso os nós de outra HandleNodeStore não podem ser
+// adotados sem cópia (appendAll copia os itens, exceto entre listas que partilham a mesma store).
+// Não é thread-safe.
+
+public class HandleNodeStore implements UNodeStore {
+
+    //representamos null como o long 0L.
+    private static final long NULL = 0L;
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final UNodeArena arena;
+    private Object[] items;     //tabela de itens: o handle de um item é a sua posição nesta tabela
+    private int used;           //posições da tabela já usadas alguma vez
+    private int[] freeSlots;    //pilha de posições libertadas
+    private int freeCount;
+
+    public HandleNodeStore()
+    {
+        this(new UNodeArena());
+    }
+
+    // Os nós são cortados da arena recebida, ou reservados um a um com allocateMemory se a arena for null.
+    public HandleNodeStore(UNodeArena arena)
+    {
+        this.arena = arena;
+        this.items = new Object[INITIAL_CAPACITY];
+        this.used = 0;
+        this.freeSlots = new int[INITIAL_CAPACITY];
+        this.freeCount = 0;
+    }
+
+    @Override
+    public long create(Object item, long previous, long next)
+    {
+        return UNode.create_value_node(this.arena, acquire(item), previous, next);
+    }
+
+    @Override
+    public void free(long node)
+    {
+        release((int) UNode.get_value(node));
+        UNode.free_node(this.arena, node);
+    }
+
+    @Override
+    public void freeChain(long head)
+    {
+        long prevAddr = NULL;
+        long node = head;
+        while(node != NULL){
+            release((int) UNode.get_value(node));
+            long nextAddr = UNode.get_prev_next_addr(node) ^ prevAddr;
+            prevAddr = node;
+            node = nextAddr;
+        }
+        UNode.free_chain(this.arena, head);
+    }
+
+    @Override
+    public long links(long node)
+    {
+        return UNode.get_prev_next_addr(node);
+    }
+
+    @Override
+    public void setLinks(long node, long prevXorNext)
+    {
+        UNode.set_prev_next_addr(node, prevXorNext);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T item(long node)
+    {
+        return (T) this.items[(int) UNode.get_value(node)];
+    }
+
+    @Override
+    public void setItem(long node, Object item)
+    {
+        this.items[(int) UNode.get_value(node)] = item;
+    }
+
+    @Override
+    public void reserve(int nodes)
+    {
+        if(this.arena != null) this.arena.reserve(nodes);
+        ensureCapacity(this.used + Math.max(0, nodes - this.freeCount));
+    }
+
+    @Override
+    public void retain()
+    {
+        if(this.arena != null) this.arena.retain();
+    }
+
+    @Override
+    public void release()
+    {
+        if(this.arena != null) this.arena.release();
+    }
+
+    @Override
+    public boolean canFreeAll()
+    {
+        return this.arena != null && !this.arena.isShared();
+    }
+
+    // Liberta os slabs da arena e larga a tabela de itens (os itens deixam de estar alcançáveis através da store).
+    @Override
+    public void freeAll()
+    {
+        this.arena.freeAll();
+        this.items = new Object[INITIAL_CAPACITY];
+        this.used = 0;
+        this.freeSlots = new int[INITIAL_CAPACITY];
+        this.freeCount = 0;
+    }
+
+    @Override
+    public boolean adopt(UNodeStore other)
+    {
+        return other == this;
+    }
+
+    // Os nós são copiados com o seu handle, por isso a tabela de itens não muda.
+    @Override
+    public long[] compact(long first, int size)
+    {
+        return canFreeAll() ? this.arena.relayout(first, size) : null;
+    }
+
+    @Override
+    public long reservedBytes()
+    {
+        return (this.arena != null) ? this.arena.reservedBytes() : 0L;
+    }
+
+    @Override
+    public long nodeBytes()
+    {
+        return UNodeArena.DEFAULT_NODE_SIZE;
+    }
+
+    // Memória ocupada pela tabela de handles no HEAP, em bytes (assumindo referências de 4 bytes, com compressed oops).
+    public long handleTableBytes()
+    {
+        return 4L * this.items.length + 4L * this.freeSlots.length;
+    }
+
+    // Número de itens guardados na tabela.
+    public int liveHandles()
+    {
+        return this.used - this.freeCount;
+    }
+
+    private int acquire(Object item)
+    {
+        int handle;
+        if(this.freeCount > 0){
+            handle = this.freeSlots[--this.freeCount];
+        }
+        else{
+            if(this.used == this.items.length){
+                ensureCapacity(this.used + 1);
+            }
+            handle = this.used++;
+        }
+        this.items[handle] = item;
+        return handle;
+    }
+
+    private void release(int handle)
+    {
+        this.items[handle] = null;
+        if(this.freeCount == this.freeSlots.length){
+            int[] newFreeSlots = new int[this.freeSlots.length * 2];
+            System.arraycopy(this.freeSlots, 0, newFreeSlots, 0, this.freeCount);
+            this.freeSlots = newFreeSlots;
+        }
+        this.freeSlots[this.freeCount++] = handle;
+    }
+
+    //garante que a tabela tem pelo menos capacity posições (cresce para o dobro)
+    private void ensureCapacity(int capacity)
+    {
+        if(capacity <= this.items.length){
+            return;
+        }
+        int newLength = this.items.length;
+        while(newLength < capacity){
+            newLength *= 2;
+        }
+        Object[] newItems = new Object[newLength];
+        System.arraycopy(this.items, 0, newItems, 0, this.used);
+        this.items = newItems;
+    }
+
+    //Benchmark: add, get(i) sequencial e iteração com UNodes que guardam o endereço do item e com handles, e a memória
+    //de cada um. Os itens são promovidos para a old generation antes de serem guardados nos UNodes, que guardam os seus
+    //endereços (a versão com handles não precisaria disso).
+
+    public static StingyList<Integer> generateHandleExample(int n)
+    {
+        StingyList<Integer> list = new StingyList<>(new HandleNodeStore());
+        Integer[] items = UNodeArena.generateItems(n);
+        System.gc();
+        for(Integer item : items){
+            list.add(item);
+        }
+        return list;
+    }
+
+    //lista com handles sujeita a recolhas que mudam os itens de sítio: cada item é criado no momento (young generation)
+    //e a lista é percorrida depois de um System.gc(), que os muda para a old generation
+    public static long survivesMovingGC(int n)
+    {
+        StingyList<Integer> list = new StingyList<>(new HandleNodeStore());
+        for(int i = 0; i < n; i++){
+            list.add(Integer.valueOf(1_000_000 + i));
+        }
+        System.gc();
+        long sum = 0;
+        Iterator<Integer> it = list.iterator();
+        while(it.hasNext()){
+            sum += it.next();
+        }
+        list.close();
+        return sum;
+    }
+
+    public static void main(String[] args)
+    {
+        TemporalAnalysisUtils.runDoublingRatioTest("add com endereços (UNode.set_item)", BufferNodeStore::generateUnsafeExample, BufferNodeStore::addAll, 1000, 10);
+        TemporalAnalysisUtils.runDoublingRatioTest("add com handles", HandleNodeStore::generateHandleExample, BufferNodeStore::addAll, 1000, 10);
+        TemporalAnalysisUtils.runDoublingRatioTest("get(i) sequencial com endereços", BufferNodeStore::generateUnsafeExample, BufferNodeStore::sequentialGets, 1000, 10);
+        TemporalAnalysisUtils.runDoublingRatioTest("get(i) sequencial com handles", HandleNodeStore::generateHandleExample, BufferNodeStore::sequentialGets, 1000, 10);
+        TemporalAnalysisUtils.runDoublingRatioTest("iterar com endereços", BufferNodeStore::generateUnsafeExample, BufferNodeStore::iterate, 1000, 10);
+        TemporalAnalysisUtils.runDoublingRatioTest("iterar com handles", HandleNodeStore::generateHandleExample, BufferNodeStore::iterate, 1000, 10);
+
+        int n = 1_000_000;
+        HandleNodeStore store = new HandleNodeStore();
+        StingyList<Integer> list = new StingyList<>(store);
+        for(int i = 0; i < n; i++){
+            list.add(i);
+        }
+        System.out.println("n = " + n);
+        System.out.println("fora do HEAP: " + String.format("%.2f", (double) list.nativeMemoryBytes() / n) + " bytes por elemento (igual nos dois casos)");
+        System.out.println("tabela de handles no HEAP: " + String.format("%.2f", (double) store.handleTableBytes() / n) + " bytes por elemento");
+        list.close();
+
+        long expected = 0;
+        for(int i = 0; i < n; i++){
+            expected += 1_000_000 + i;
+        }
+        System.out.println("soma depois de um GC que muda os itens de sítio: " + (survivesMovingGC(n) == expected ? "correta" : "ERRADA"));
+    }
+}
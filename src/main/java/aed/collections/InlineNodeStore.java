@@ -0,0 +1,436 @@
+package aed.collections;
+
+import sun.misc.Unsafe;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Function;
+
+// UNodeStore que guarda o próprio item dentro do nó, fora do HEAP, em vez de uma referência para ele. Serve para itens
+// pequenos e de forma fixa (alguns campos primitivos): cada nó tem o XOR das ligações (8 bytes) seguido dos bytes do
+// item, e os nós são cortados de uma UNodeArena com esse tamanho. Assim:
+//   - o HEAP não guarda nada por elemento: não há milhões de objetos pequenos para o garbage collector percorrer;
+//   - percorrer a lista lê só a memória dos nós, sem saltar para os itens no HEAP.
+// Em troca, cada item(node) reconstrói um objeto novo a partir dos bytes do nó (um objeto de vida curta, que morre na
+// young generation), e setItem/create copiam os campos do item para o nó. O item guardado é uma cópia: alterar o
+// objeto depois de o adicionar não altera a lista, e get devolve sempre um objeto diferente (igual por equals, não
+// por ==, por isso o índice de hash por identidade não faz sentido com esta store).
+//
+// Há duas formas de passar um item para bytes e de volta:
+//   - um StingyListCodec escolhido pelo utilizador, que tem de escrever sempre exatamente itemBytes bytes
+//     (InlineNodeStore(codec, itemBytes));
+//   - os campos da classe, copiados com o Unsafe a partir dos seus offsets (forClass): a classe só pode ter campos
+//     primitivos, e os itens são recriados com allocateInstance, sem chamar nenhum construtor. O Unsafe não dá os
+//     offsets dos campos de records, por isso para records é preciso um codec.
+// Os itens não podem ser null. Não é thread-safe (o codec usa um buffer partilhado).
+
+public class InlineNodeStore<T> implements UNodeStore {
+
+    //representamos null como o long 0L.
+    private static final long NULL = 0L;
+    private static final Unsafe UNSAFE = UnsafeHelper.getUnsafe();
+    private static final long BYTE_ARRAY_BASE = UNSAFE.arrayBaseOffset(byte[].class);
+    private static final long ITEM_OFFSET = 8L;
+
+    private final UNodeArena arena;
+    private final int itemBytes;
+    private final StingyListCodec<T> codec;     //null se os itens forem copiados campo a campo
+    private final FieldLayout<T> layout;        //null se os itens passarem pelo codec
+    private final byte[] scratch;               //bytes de um item, entre o nó e o codec
+    private final ByteBuffer buffer;
+
+    // Os itens passam pelo codec, que tem de escrever exatamente itemBytes bytes por item.
+    public InlineNodeStore(StingyListCodec<T> codec, int itemBytes)
+    {
+        if(codec == null){
+            throw new IllegalArgumentException("Codec cannot be null");
+        }
+        if(itemBytes <= 0){
+            throw new IllegalArgumentException("Item size must be positive");
+        }
+        this.arena = new UNodeArena(ITEM_OFFSET + itemBytes);
+        this.itemBytes = itemBytes;
+        this.codec = codec;
+        this.layout = null;
+        this.scratch = new byte[itemBytes];
+        this.buffer = ByteBuffer.wrap(this.scratch).order(ByteOrder.nativeOrder());
+    }
+
+    private InlineNodeStore(FieldLayout<T> layout)
+    {
+        this.arena = new UNodeArena(ITEM_OFFSET + layout.bytes);
+        this.itemBytes = layout.bytes;
+        this.codec = null;
+        this.layout = layout;
+        this.scratch = null;
+        this.buffer = null;
+    }
+
+    // Store que copia os campos de cada item (todos primitivos) para o nó. Lança IllegalArgumentException se a classe
+    // tiver campos que não sejam primitivos, não tiver campos, ou não puder ser recriada com o Unsafe (records,
+    // interfaces, classes abstratas, arrays).
+    public static <T> InlineNodeStore<T> forClass(Class<T> type)
+    {
+        return new InlineNodeStore<>(new FieldLayout<>(type));
+    }
+
+    @Override
+    public long create(Object item, long previous, long next)
+    {
+        if(item == null){
+            throw new IllegalArgumentException("InlineNodeStore cannot store null items");
+        }
+        long node = this.arena.allocate();
+        try{
+            write(item, node + ITEM_OFFSET);
+        }
+        catch(RuntimeException e){
+            this.arena.free(node);
+            throw e;
+        }
+        UNSAFE.putLong(node, previous ^ next);
+        return node;
+    }
+
+    @Override
+    public void free(long node)
+    {
+        this.arena.free(node);
+    }
+
+    @Override
+    public void freeChain(long head)
+    {
+        this.arena.freeChain(head);
+    }
+
+    @Override
+    public long links(long node)
+    {
+        return UNode.get_prev_next_addr(node);
+    }
+
+    @Override
+    public void setLinks(long node, long prevXorNext)
+    {
+        UNode.set_prev_next_addr(node, prevXorNext);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <E> E item(long node)
+    {
+        if(node == NULL) throw new NullPointerException("Trying to get item of NULL address");
+        return (E) read(node + ITEM_OFFSET);
+    }
+
+    @Override
+    public void setItem(long node, Object item)
+    {
+        if(node == NULL) throw new NullPointerException("Trying to set item of NULL address");
+        if(item == null){
+            throw new IllegalArgumentException("InlineNodeStore cannot store null items");
+        }
+        write(item, node + ITEM_OFFSET);
+    }
+
+    @Override
+    public void reserve(int nodes)
+    {
+        this.arena.reserve(nodes);
+    }
+
+    @Override
+    public void retain()
+    {
+        this.arena.retain();
+    }
+
+    @Override
+    public void release()
+    {
+        this.arena.release();
+    }
+
+    @Override
+    public boolean canFreeAll()
+    {
+        return !this.arena.isShared();
+    }
+
+    @Override
+    public void freeAll()
+    {
+        this.arena.freeAll();
+    }
+
+    // Os nós são UNodes com o item lá dentro, por isso, como na ArenaNodeStore, os slabs de outra InlineNodeStore que
+    // guarde os itens da mesma forma (o mesmo codec, ou os campos da mesma classe) podem passar para a arena desta.
+    @Override
+    public boolean adopt(UNodeStore other)
+    {
+        if(other == this){
+            return true;
+        }
+        if(!(other instanceof InlineNodeStore)){
+            return false;
+        }
+        InlineNodeStore<?> o = (InlineNodeStore<?>) other;
+        boolean sameLayout = (this.codec != null) ? this.codec == o.codec
+                : o.layout != null && this.layout.type == o.layout.type;
+        if(!sameLayout || o.arena.isShared() || this.arena.nodeSize() != o.arena.nodeSize()){
+            return false;
+        }
+        this.arena.adopt(o.arena);
+        return true;
+    }
+
+    // Os bytes do item vão com o nó, por isso basta copiar os nós tal como estão.
+    @Override
+    public long[] compact(long first, int size)
+    {
+        return canFreeAll() ? this.arena.relayout(first, size) : null;
+    }
+
+    @Override
+    public long reservedBytes()
+    {
+        return this.arena.reservedBytes();
+    }
+
+    @Override
+    public long nodeBytes()
+    {
+        return this.arena.nodeSize();
+    }
+
+    // Bytes de cada item dentro do nó.
+    public int itemBytes()
+    {
+        return this.itemBytes;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void write(Object item, long addr)
+    {
+        if(this.layout != null){
+            this.layout.write(item, addr);
+            return;
+        }
+        this.buffer.clear();
+        try{
+            this.codec.encode((T) item, this.buffer);
+        }
+        catch(BufferOverflowException e){
+            throw new IllegalArgumentException("Item does not fit in " + this.itemBytes + " bytes");
+        }
+        if(this.buffer.position() != this.itemBytes){
+            throw new IllegalArgumentException("Codec must write exactly " + this.itemBytes + " bytes per item");
+        }
+        UNSAFE.copyMemory(this.scratch, BYTE_ARRAY_BASE, null, addr, this.itemBytes);
+    }
+
+    private T read(long addr)
+    {
+        if(this.layout != null){
+            return this.layout.read(addr);
+        }
+        UNSAFE.copyMemory(null, addr, this.scratch, BYTE_ARRAY_BASE, this.itemBytes);
+        this.buffer.clear();
+        return this.codec.decode(this.buffer);
+    }
+
+    // Posição de cada campo primitivo da classe dentro do objeto (offset do Unsafe) e dentro do nó. No nó os campos
+    // ficam por ordem decrescente de tamanho, para ficarem alinhados sem precisar de padding.
+    private static final class FieldLayout<T> {
+
+        private final Class<T> type;
+        private final int bytes;
+        private final long[] objectOffsets;
+        private final long[] nodeOffsets;
+        private final int[] sizes;
+
+        FieldLayout(Class<T> type)
+        {
+            if(type.isRecord() || type.isInterface() || type.isArray() || type.isPrimitive()
+                    || Modifier.isAbstract(type.getModifiers())){
+                throw new IllegalArgumentException("Cannot lay out the fields of " + type.getName() + ", use a codec");
+            }
+            List<Field> fields = new ArrayList<>();
+            for(Class<?> c = type; c != Object.class; c = c.getSuperclass()){
+                for(Field f : c.getDeclaredFields()){
+                    if(Modifier.isStatic(f.getModifiers())){
+                        continue;
+                    }
+                    if(!f.getType().isPrimitive()){
+                        throw new IllegalArgumentException("Field " + f.getName() + " of " + type.getName() + " is not primitive");
+                    }
+                    fields.add(f);
+                }
+            }
+            if(fields.isEmpty()){
+                throw new IllegalArgumentException(type.getName() + " has no fields to store");
+            }
+            fields.sort((a, b) -> sizeOf(b.getType()) - sizeOf(a.getType()));
+            this.type = type;
+            this.objectOffsets = new long[fields.size()];
+            this.nodeOffsets = new long[fields.size()];
+            this.sizes = new int[fields.size()];
+            int offset = 0;
+            for(int i = 0; i < fields.size(); i++){
+                Field f = fields.get(i);
+                this.objectOffsets[i] = UNSAFE.objectFieldOffset(f);
+                this.nodeOffsets[i] = offset;
+                this.sizes[i] = sizeOf(f.getType());
+                offset += this.sizes[i];
+            }
+            this.bytes = offset;
+        }
+
+        private static int sizeOf(Class<?> primitive)
+        {
+            if(primitive == long.class || primitive == double.class) return 8;
+            if(primitive == int.class || primitive == float.class) return 4;
+            if(primitive == short.class || primitive == char.class) return 2;
+            return 1;   //byte e boolean
+        }
+
+        //os bits de cada campo são copiados tal como estão, por isso basta saber o tamanho do campo
+        void write(Object item, long addr)
+        {
+            if(item.getClass() != this.type){
+                throw new IllegalArgumentException("Expected " + this.type.getName() + " but got " + item.getClass().getName());
+            }
+            for(int i = 0; i < this.sizes.length; i++){
+                long src = this.objectOffsets[i];
+                long dst = addr + this.nodeOffsets[i];
+                switch(this.sizes[i]){
+                    case 8: UNSAFE.putLong(dst, UNSAFE.getLong(item, src)); break;
+                    case 4: UNSAFE.putInt(dst, UNSAFE.getInt(item, src)); break;
+                    case 2: UNSAFE.putShort(dst, UNSAFE.getShort(item, src)); break;
+                    default: UNSAFE.putByte(dst, UNSAFE.getByte(item, src));
+                }
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        T read(long addr)
+        {
+            Object item;
+            try{
+                item = UNSAFE.allocateInstance(this.type);
+            }
+            catch(InstantiationException e){
+                throw new IllegalStateException("Cannot create an instance of " + this.type.getName(), e);
+            }
+            for(int i = 0; i < this.sizes.length; i++){
+                long src = addr + this.nodeOffsets[i];
+                long dst = this.objectOffsets[i];
+                switch(this.sizes[i]){
+                    case 8: UNSAFE.putLong(item, dst, UNSAFE.getLong(src)); break;
+                    case 4: UNSAFE.putInt(item, dst, UNSAFE.getInt(src)); break;
+                    case 2: UNSAFE.putShort(item, dst, UNSAFE.getShort(src)); break;
+                    default: UNSAFE.putByte(item, dst, UNSAFE.getByte(src));
+                }
+            }
+            return (T) item;
+        }
+    }
+
+    //Benchmark: uma lista de leituras de sensores (um long, um double e um int por leitura) guardada como referências
+    //para objetos no HEAP (HandleNodeStore) e guardada dentro dos nós (com os campos copiados pelo Unsafe e com um
+    //codec). Mede-se a iteração (soma dos valores) e a memória que fica ocupada no HEAP e fora dele por elemento.
+
+    public static final class Reading {
+        long timestamp;
+        double value;
+        int sensor;
+
+        public Reading(long timestamp, double value, int sensor)
+        {
+            this.timestamp = timestamp;
+            this.value = value;
+            this.sensor = sensor;
+        }
+    }
+
+    public static final StingyListCodec<Reading> READING_CODEC = new StingyListCodec<>() {
+        @Override
+        public void encode(Reading item, ByteBuffer dst) {
+            dst.putLong(item.timestamp).putDouble(item.value).putInt(item.sensor);
+        }
+
+        @Override
+        public Reading decode(ByteBuffer src) {
+            return new Reading(src.getLong(), src.getDouble(), src.getInt());
+        }
+    };
+
+    private static final Random R = new Random();
+
+    private static StingyList<Reading> fill(StingyList<Reading> list, int n)
+    {
+        long t = System.currentTimeMillis();
+        for(int i = 0; i < n; i++){
+            list.add(new Reading(t + i, R.nextDouble(), R.nextInt(64)));
+        }
+        return list;
+    }
+
+    public static StingyList<Reading> generateReferenceExample(int n)
+    {
+        return fill(new StingyList<>(new HandleNodeStore()), n);
+    }
+
+    public static StingyList<Reading> generateInlineExample(int n)
+    {
+        return fill(new StingyList<>(InlineNodeStore.forClass(Reading.class)), n);
+    }
+
+    public static StingyList<Reading> generateCodecExample(int n)
+    {
+        return fill(new StingyList<>(new InlineNodeStore<>(READING_CODEC, 20)), n);
+    }
+
+    //soma de todos os valores lidos nos testes, escrita no fim do main para que as leituras não possam ser eliminadas
+    private static double benchmarkSum = 0;
+
+    public static void sumValues(StingyList<Reading> list)
+    {
+        double sum = 0;
+        for(Reading reading : list){
+            sum += reading.value;
+        }
+        benchmarkSum += sum;
+    }
+
+    private static void printFootprint(String name, Function<Integer, StingyList<Reading>> generator, int n)
+    {
+        long heapBefore = TemporalAnalysisUtils.getUsedHeap();
+        StingyList<Reading> list = generator.apply(n);
+        long heapAfter = TemporalAnalysisUtils.getUsedHeap();
+        System.out.println(name + "\t" + String.format("%.2f", (double) (heapAfter - heapBefore) / n)
+                + "\t" + String.format("%.2f", (double) list.nativeMemoryBytes() / n));
+        list.close();
+    }
+
+    public static void main(String[] args)
+    {
+        TemporalAnalysisUtils.runDoublingRatioTest("iterar com referências (HandleNodeStore)", InlineNodeStore::generateReferenceExample, InlineNodeStore::sumValues, 1000, 10);
+        TemporalAnalysisUtils.runDoublingRatioTest("iterar com os itens nos nós (forClass)", InlineNodeStore::generateInlineExample, InlineNodeStore::sumValues, 1000, 10);
+        TemporalAnalysisUtils.runDoublingRatioTest("iterar com os itens nos nós (codec)", InlineNodeStore::generateCodecExample, InlineNodeStore::sumValues, 1000, 10);
+
+        int n = 1_000_000;
+        System.out.println("bytes por elemento, n = " + n + "\nstore\tHEAP\tfora do HEAP");
+        printFootprint("referências", InlineNodeStore::generateReferenceExample, n);
+        printFootprint("forClass", InlineNodeStore::generateInlineExample, n);
+        printFootprint("codec", InlineNodeStore::generateCodecExample, n);
+        System.out.println("soma dos valores lidos: " + benchmarkSum);
+    }
+}
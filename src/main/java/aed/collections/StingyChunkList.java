@@ -0,0 +1,501 @@
+package aed.collections;
+
+import sun.misc.Unsafe;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+// Variante "unrolled" da StingyList. A espinha continua a ser uma lista duplamente ligada por XOR, mas cada nó
+// (chunk) fora do HEAP guarda até chunkSize itens em vez de apenas um:
+//
+//   ,----------------+-------------+---------+------------------------------------.
+//   | prev XOR next  | count (int) | padding | item 0 | item 1 | ... | item K-1     |
+//   `----------------+-------------+---------+------------------------------------'
+//         8 bytes         4 bytes    4 bytes          8 bytes por item
+//
+// Os itens de um chunk estão sempre compactados nas posições 0..count-1. Com chunks cheios, o custo por elemento
+// aproxima-se de 8 bytes (um long) em vez dos 16 bytes de um UNode, e get(i), addAt e removeAt saltam um chunk de
+// cada vez, fazendo até chunkSize vezes menos saltos entre nós.
+
+public class StingyChunkList<T> implements Iterable<T>, AutoCloseable {
+
+    //representamos null como o long 0L.
+    private static final long NULL = 0L;
+    private static final Unsafe UNSAFE = UnsafeHelper.getUnsafe();
+
+    private static final long COUNT_OFFSET = 8L;
+    private static final long ITEMS_OFFSET = 16L;
+    private static final long SLOT_SIZE = 8L;
+
+    public static final int DEFAULT_CHUNK_SIZE = 32;
+    public static final int MAX_CHUNK_SIZE = 1024;
+
+    private int size;
+    private long first;
+    private long last;
+    private final int chunkSize;    //número máximo de itens por chunk
+    private final UNodeArena arena; //arena de onde são cortados os chunks
+
+    public StingyChunkList()
+    {
+        this(DEFAULT_CHUNK_SIZE);
+    }
+
+    public StingyChunkList(int chunkSize)
+    {
+        if(chunkSize < 2 || chunkSize > MAX_CHUNK_SIZE){
+            throw new IllegalArgumentException("Chunk size must be between 2 and " + MAX_CHUNK_SIZE);
+        }
+        this.size = 0;
+        this.first = NULL;
+        this.last = NULL;
+        this.chunkSize = chunkSize;
+        this.arena = new UNodeArena(ITEMS_OFFSET + chunkSize * SLOT_SIZE);
+    }
+
+    //Métodos de acesso aos campos de um chunk
+
+    private long createChunk(long previous, long next)
+    {
+        long addr = this.arena.allocate();
+        UNode.set_prev_next_addr(addr, previous^next);
+        setCount(addr, 0);
+        return addr;
+    }
+
+    private void freeChunk(long chunk)
+    {
+        this.arena.free(chunk);
+    }
+
+    private static int getCount(long chunk)
+    {
+        return UNSAFE.getInt(chunk + COUNT_OFFSET);
+    }
+
+    private static void setCount(long chunk, int count)
+    {
+        UNSAFE.putInt(chunk + COUNT_OFFSET, count);
+    }
+
+    private static long slotAddr(long chunk, int slot)
+    {
+        return chunk + ITEMS_OFFSET + slot * SLOT_SIZE;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T getSlot(long chunk, int slot)
+    {
+        return (T) UnsafeHelper.fromAddress(UNSAFE.getLong(slotAddr(chunk, slot)));
+    }
+
+    private static <T> void setSlot(long chunk, int slot, T item)
+    {
+        UNSAFE.putLong(slotAddr(chunk, slot), UnsafeHelper.toAddress(item));
+    }
+
+    //move count slots de from para to (as zonas podem sobrepor-se)
+    private static void moveSlots(long fromChunk, int from, long toChunk, int to, int count)
+    {
+        if(count > 0){
+            UNSAFE.copyMemory(slotAddr(fromChunk, from), slotAddr(toChunk, to), count * SLOT_SIZE);
+        }
+    }
+
+    // Igual ao getBeyond da StingyList: dado o chunk atual e o chunk de onde viemos, devolve o chunk seguinte.
+    long getBeyond(long chunk, long fromAddr)
+    {
+        return UNode.get_prev_next_addr(chunk) ^ fromAddr;
+    }
+
+    //Encontra o chunk que contém a posição i da lista.
+    //Devolve {chunk anterior, chunk, posição de i dentro do chunk}.
+    private long[] locate(int i)
+    {
+        long[] results = new long[3];
+        //Caso em que i se encontra na primeira metade da lista: andamos para a frente a partir do first
+        if(i < (this.size/2)){
+            long prev = NULL;
+            long chunk = this.first;
+            int base = 0;   //posição na lista do primeiro item do chunk atual
+            while(i >= base + getCount(chunk)){
+                base += getCount(chunk);
+                long tempAddr = chunk;
+                chunk = getBeyond(tempAddr, prev);
+                prev = tempAddr;
+            }
+            results[0] = prev;
+            results[1] = chunk;
+            results[2] = i - base;
+        }
+        //Caso em que i se encontra na segunda metade da lista: andamos para trás a partir do last
+        else{
+            long next = NULL;
+            long chunk = this.last;
+            int base = this.size - getCount(chunk);
+            while(i < base){
+                long tempAddr = chunk;
+                chunk = getBeyond(tempAddr, next);
+                next = tempAddr;
+                base -= getCount(chunk);
+            }
+            results[0] = getBeyond(chunk, next);
+            results[1] = chunk;
+            results[2] = i - base;
+        }
+        return results;
+    }
+
+    //Stingy Chunk List Methods
+
+    public void add(T item)
+    {
+        if(item == null){
+            throw new IllegalArgumentException();
+        }
+        //Caso em que a lista está vazia
+        if(this.isEmpty()){
+            this.first = createChunk(NULL, NULL);
+            this.last = this.first;
+        }
+        //Caso em que o último chunk está cheio: cria um novo chunk a seguir ao last
+        else if(getCount(this.last) == this.chunkSize){
+            long tempNodeAddr = this.last;
+            this.last = createChunk(tempNodeAddr, NULL);
+            StingyList.updateNodeReference(tempNodeAddr, NULL, this.last);
+        }
+        int count = getCount(this.last);
+        setSlot(this.last, count, item);
+        setCount(this.last, count + 1);
+        this.size++;
+    }
+
+    public T remove()
+    {
+        if(this.isEmpty()){
+            throw new IndexOutOfBoundsException();
+        }
+        int count = getCount(this.last) - 1;
+        T result = getSlot(this.last, count);
+        setCount(this.last, count);
+        //Caso em que o último chunk ficou vazio
+        if(count == 0){
+            unlinkChunk(getBeyond(this.last, NULL), this.last, NULL);
+        }
+        this.size--;
+        return result;
+    }
+
+    public T get()
+    {
+        if(this.isEmpty()){
+            throw new IndexOutOfBoundsException();
+        }
+        return getSlot(this.last, getCount(this.last) - 1);
+    }
+
+    public T get(int i)
+    {
+        if(i < 0 || i >= this.size){
+            throw new IndexOutOfBoundsException();
+        }
+        long[] location = locate(i);
+        return getSlot(location[1], (int) location[2]);
+    }
+
+    public void set(int i, T item)
+    {
+        if(item == null){
+            throw new IllegalArgumentException();
+        }
+        if(i < 0 || i >= this.size){
+            throw new IndexOutOfBoundsException();
+        }
+        long[] location = locate(i);
+        setSlot(location[1], (int) location[2], item);
+    }
+
+    public void addAt(int i, T item)
+    {
+        if(item == null){
+            throw new IllegalArgumentException();
+        }
+        if(i < 0 || i > this.size){
+            throw new IndexOutOfBoundsException();
+        }
+        //Caso em que i é o fim da lista (inclui a lista vazia)
+        if(i == this.size){
+            this.add(item);
+            return;
+        }
+        long[] location = locate(i);
+        long prev = location[0];
+        long chunk = location[1];
+        int offset = (int) location[2];
+        int count = getCount(chunk);
+        //Caso em que o chunk está cheio: parte-o em dois, passando a metade de cima para um chunk novo
+        if(count == this.chunkSize){
+            long next = getBeyond(chunk, prev);
+            long newChunk = createChunk(chunk, next);
+            updateBothNodeReferences(chunk, prev, newChunk);
+            if(next != NULL){
+                StingyList.updateNodeReference(next, chunk, newChunk);
+            }
+            else{
+                this.last = newChunk;
+            }
+            int half = count / 2;
+            moveSlots(chunk, half, newChunk, 0, count - half);
+            setCount(newChunk, count - half);
+            setCount(chunk, half);
+            //se a posição de inserção passou para o novo chunk, é lá que inserimos
+            if(offset > half){
+                chunk = newChunk;
+                offset -= half;
+            }
+            count = getCount(chunk);
+        }
+        moveSlots(chunk, offset, chunk, offset + 1, count - offset);
+        setSlot(chunk, offset, item);
+        setCount(chunk, count + 1);
+        this.size++;
+    }
+
+    public T removeAt(int i)
+    {
+        if(i < 0 || i >= this.size){
+            throw new IndexOutOfBoundsException();
+        }
+        //Caso em que i é o fim da lista
+        if(i == this.size - 1){
+            return this.remove();
+        }
+        long[] location = locate(i);
+        long prev = location[0];
+        long chunk = location[1];
+        int offset = (int) location[2];
+        int count = getCount(chunk);
+        T result = getSlot(chunk, offset);
+        moveSlots(chunk, offset + 1, chunk, offset, count - offset - 1);
+        count--;
+        setCount(chunk, count);
+        long next = getBeyond(chunk, prev);
+        //Caso em que o chunk ficou vazio
+        if(count == 0){
+            unlinkChunk(prev, chunk, next);
+        }
+        //Caso em que o chunk ficou com poucos itens: junta-o com um vizinho onde caibam, para não desperdiçar memória
+        else if(count < this.chunkSize / 4){
+            if(prev != NULL && getCount(prev) + count <= this.chunkSize){
+                int prevCount = getCount(prev);
+                moveSlots(chunk, 0, prev, prevCount, count);
+                setCount(prev, prevCount + count);
+                unlinkChunk(prev, chunk, next);
+            }
+            else if(next != NULL && getCount(next) + count <= this.chunkSize){
+                int nextCount = getCount(next);
+                moveSlots(next, 0, chunk, count, nextCount);
+                setCount(chunk, count + nextCount);
+                unlinkChunk(chunk, next, getBeyond(next, chunk));
+            }
+        }
+        this.size--;
+        return result;
+    }
+
+    //Retira o chunk da espinha, ligando prev e next diretamente, e liberta-o
+    private void unlinkChunk(long prev, long chunk, long next)
+    {
+        if(prev != NULL){
+            StingyList.updateNodeReference(prev, chunk, next);
+        }
+        else{
+            this.first = next;
+        }
+        if(next != NULL){
+            StingyList.updateNodeReference(next, chunk, prev);
+        }
+        else{
+            this.last = prev;
+        }
+        freeChunk(chunk);
+    }
+
+    private void updateBothNodeReferences(long chunk, long prevAddr, long nextAddr)
+    {
+        UNode.set_prev_next_addr(chunk, prevAddr ^ nextAddr);
+    }
+
+    public void reverse()
+    {
+        //a ordem dentro de cada chunk não se inverte sozinha, por isso invertemos os itens de cada chunk
+        long prev = NULL;
+        long chunk = this.first;
+        while(chunk != NULL){
+            int count = getCount(chunk);
+            for(int l = 0, r = count - 1; l < r; l++, r--){
+                long tempItem = UNSAFE.getLong(slotAddr(chunk, l));
+                UNSAFE.putLong(slotAddr(chunk, l), UNSAFE.getLong(slotAddr(chunk, r)));
+                UNSAFE.putLong(slotAddr(chunk, r), tempItem);
+            }
+            long tempAddr = chunk;
+            chunk = getBeyond(tempAddr, prev);
+            prev = tempAddr;
+        }
+        long tempAddr = this.first;
+        this.first = this.last;
+        this.last = tempAddr;
+    }
+
+    public void clear()
+    {
+        //todos os chunks vêm da arena desta lista, por isso podemos libertá-los todos de uma vez
+        this.arena.freeAll();
+        this.first = NULL;
+        this.last = NULL;
+        this.size = 0;
+    }
+
+    // Liberta a memória fora do HEAP ocupada pela lista (a lista fica vazia, mas pode continuar a ser usada).
+    @Override
+    public void close()
+    {
+        clear();
+    }
+
+    public boolean isEmpty()
+    {
+        return this.size == 0;
+    }
+
+    public int size()
+    {
+        return this.size;
+    }
+
+    public int chunkSize()
+    {
+        return this.chunkSize;
+    }
+
+    // Memória fora do HEAP reservada pela lista, em bytes.
+    public long nativeMemoryBytes()
+    {
+        return this.arena.reservedBytes();
+    }
+
+    public Object[] toArray()
+    {
+        Object[] result = new Object[this.size];
+        int i = 0;
+        for(T item : this){
+            result[i++] = item;
+        }
+        return result;
+    }
+
+    public Iterator<T> iterator()
+    {
+        return new StingyChunkListIterator();
+    }
+
+    private class StingyChunkListIterator implements Iterator<T>{
+
+        long prevChunk;
+
+        long chunk;
+
+        int slot;
+
+        StingyChunkListIterator(){
+            this.prevChunk = NULL;
+            this.chunk = first;
+            this.slot = 0;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return this.chunk != NULL;
+        }
+
+        @Override
+        public T next() {
+            if(this.chunk == NULL){
+                throw new NoSuchElementException();
+            }
+            T result = getSlot(this.chunk, this.slot);
+            this.slot++;
+            if(this.slot == getCount(this.chunk)){
+                long tempPrev = this.prevChunk;
+                this.prevChunk = this.chunk;
+                this.chunk = getBeyond(this.chunk, tempPrev);
+                this.slot = 0;
+            }
+            return result;
+        }
+    }
+
+    //Doubling ratio tests: get(i) e addAt/removeAt em posições aleatórias, StingyChunkList vs StingyList
+
+    private static final Random R = new Random();
+    private static final int OPERATIONS = 1000;
+
+    public static StingyList<Integer> generateStingyListExample(int n)
+    {
+        StingyList<Integer> example = new StingyList<>();
+        for(int i = 0; i < n; i++){
+            example.add(R.nextInt());
+        }
+        return example;
+    }
+
+    public static StingyChunkList<Integer> generateStingyChunkListExample(int n, int chunkSize)
+    {
+        StingyChunkList<Integer> example = new StingyChunkList<>(chunkSize);
+        for(int i = 0; i < n; i++){
+            example.add(R.nextInt());
+        }
+        return example;
+    }
+
+    public static void randomGets(StingyList<Integer> list)
+    {
+        for(int k = 0; k < OPERATIONS; k++){
+            list.get(R.nextInt(list.size()));
+        }
+    }
+
+    public static void randomGets(StingyChunkList<Integer> list)
+    {
+        for(int k = 0; k < OPERATIONS; k++){
+            list.get(R.nextInt(list.size()));
+        }
+    }
+
+    public static void randomAddRemoveAts(StingyList<Integer> list)
+    {
+        for(int k = 0; k < OPERATIONS; k++){
+            list.addAt(R.nextInt(list.size() + 1), k);
+            list.removeAt(R.nextInt(list.size()));
+        }
+    }
+
+    public static void randomAddRemoveAts(StingyChunkList<Integer> list)
+    {
+        for(int k = 0; k < OPERATIONS; k++){
+            list.addAt(R.nextInt(list.size() + 1), k);
+            list.removeAt(R.nextInt(list.size()));
+        }
+    }
+
+    public static void main(String[] args)
+    {
+        TemporalAnalysisUtils.runDoublingRatioTest("StingyList get(i)", StingyChunkList::generateStingyListExample, StingyChunkList::randomGets, 1000, 8);
+        TemporalAnalysisUtils.runDoublingRatioTest("StingyList addAt/removeAt", StingyChunkList::generateStingyListExample, StingyChunkList::randomAddRemoveAts, 1000, 8);
+        for(int chunkSize : new int[] {8, 32, 64}){
+            TemporalAnalysisUtils.runDoublingRatioTest("StingyChunkList(" + chunkSize + ") get(i)", n -> generateStingyChunkListExample(n, chunkSize), StingyChunkList::randomGets, 1000, 8);
+            TemporalAnalysisUtils.runDoublingRatioTest("StingyChunkList(" + chunkSize + ") addAt/removeAt", n -> generateStingyChunkListExample(n, chunkSize), StingyChunkList::randomAddRemoveAts, 1000, 8);
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package aed.collections;
+
+import java.util.PrimitiveIterator;
+import java.util.function.DoubleConsumer;
+import java.util.stream.DoubleStream;
+
+// Lista sovina de doubles: cada elemento é guardado diretamente no nó de 16 bytes fora do HEAP (como os bits do
+// double), sem caixas Double. Nenhuma operação de add/get aloca memória no HEAP.
+
+public class StingyDoubleList extends StingyPrimitiveList {
+
+    public StingyDoubleList()
+    {
+        super();
+    }
+
+    public void addDouble(double value)
+    {
+        addRaw(Double.doubleToRawLongBits(value));
+    }
+
+    public void addDoubleAt(int i, double value)
+    {
+        addAtRaw(i, Double.doubleToRawLongBits(value));
+    }
+
+    public double removeDouble()
+    {
+        return Double.longBitsToDouble(removeRaw());
+    }
+
+    public double removeDoubleAt(int i)
+    {
+        return Double.longBitsToDouble(removeAtRaw(i));
+    }
+
+    public double getDouble()
+    {
+        return Double.longBitsToDouble(getRaw());
+    }
+
+    public double getDouble(int i)
+    {
+        return Double.longBitsToDouble(getRaw(i));
+    }
+
+    public void setDouble(int i, double value)
+    {
+        setRaw(i, Double.doubleToRawLongBits(value));
+    }
+
+    public double[] toArray()
+    {
+        return stream().toArray();
+    }
+
+    public void forEach(DoubleConsumer action)
+    {
+        forEachRaw(value -> action.accept(Double.longBitsToDouble(value)));
+    }
+
+    public PrimitiveIterator.OfDouble iterator()
+    {
+        return new StingyDoubleListIterator();
+    }
+
+    public DoubleStream stream()
+    {
+        return rawStream().mapToDouble(Double::longBitsToDouble);
+    }
+
+    private class StingyDoubleListIterator extends RawIterator implements PrimitiveIterator.OfDouble{
+
+        @Override
+        public double nextDouble() {
+            return Double.longBitsToDouble(nextRaw());
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package aed.collections;
+
+// "Finger" das listas ligadas por XOR (StingyList e listas primitivas): a última posição visitada, guardada como
+// (posição, endereço do nó, endereço do nó anterior). Como num nó XOR só se consegue avançar sabendo de onde se vem,
+// guardar também o anterior permite retomar o percurso a partir do finger em qualquer sentido.
+// Os acessos seguintes partem do first, do last ou do finger, o que estiver mais perto, por isso acessos a posições
+// próximas umas das outras custam O(distância) em vez de O(n).
+//
+// O finger não sabe quando a lista muda: cabe à lista avisá-lo (addedFirst, removedFirst, ...) ou invalidá-lo.
+
+final class StingyFinger {
+
+    //representamos null como o long 0L.
+    private static final long NULL = 0L;
+
+    int index = -1;     //posição do finger (-1 se o finger não for válido)
+    long addr;          //endereço do nó na posição index
+    long prevAddr;      //endereço do nó na posição index-1 (NULL se index for 0)
+
+    boolean isValid()
+    {
+        return this.index >= 0;
+    }
+
+    void invalidate()
+    {
+        this.index = -1;
+    }
+
+    void set(int i, long addr, long prevAddr)
+    {
+        this.index = i;
+        this.addr = addr;
+        this.prevAddr = prevAddr;
+    }
+
+    //Coloca o finger na posição i de uma lista com size nós (entre first e last) guardados em nodes, e devolve o
+    //endereço do nó nessa posição (o endereço do nó i-1 fica em prevAddr). Anda a partir do first, do last ou do
+    //finger atual, o que estiver mais perto de i.
+    long seek(UNodeStore nodes, long first, long last, int size, int i)
+    {
+        int count;  //posição do nó atual
+        long countAddr; //endereço do nó na posição count
+        long countPrevAddr; //endereço do nó na posição count-1
+        int distance;
+        //Caso em que i está mais perto do first
+        if(i <= size-1-i){
+            count = 0;
+            countAddr = first;
+            countPrevAddr = NULL;
+            distance = i;
+        }
+        //Caso em que i está mais perto do last
+        else{
+            count = size-1;
+            countAddr = last;
+            countPrevAddr = nodes.links(last);  //o next do last é NULL, por isso as ligações são o prev
+            distance = size-1-i;
+        }
+        //Caso em que o finger está ainda mais perto
+        if(this.index >= 0 && Math.abs(i - this.index) < distance){
+            count = this.index;
+            countAddr = this.addr;
+            countPrevAddr = this.prevAddr;
+        }
+        while(count < i){
+            long tempAddr = countAddr;
+            countAddr = nodes.links(tempAddr) ^ countPrevAddr;  //avança 1 posiçao: next = prevXORnext XOR prev
+            countPrevAddr = tempAddr;
+            count++;
+        }
+        while(count > i){
+            long tempAddr = countPrevAddr;
+            countPrevAddr = nodes.links(tempAddr) ^ countAddr;  //recua 1 posiçao: o novo prev é o prev do prev atual
+            countAddr = tempAddr;
+            count--;
+        }
+        set(i, countAddr, countPrevAddr);
+        return countAddr;
+    }
+
+    //Foi inserido um nó (newFirst) no início da lista: todas as posições avançam 1, e se o finger estava no antigo
+    //first o seu anterior passa a ser o novo first.
+    void addedFirst(long newFirst)
+    {
+        if(this.index >= 0){
+            if(this.index == 0) this.prevAddr = newFirst;
+            this.index++;
+        }
+    }
+
+    //Foi removido o first: todas as posições recuam 1, e o finger deixa de ser válido se estava no first.
+    void removedFirst()
+    {
+        if(this.index == 0) this.index = -1;
+        else if(this.index > 0){
+            if(this.index == 1) this.prevAddr = NULL;
+            this.index--;
+        }
+    }
+
+    //Foi removido o last e a lista ficou com size nós: o finger deixa de ser válido se estava no nó removido.
+    void removedLast(int size)
+    {
+        if(this.index >= size) this.index = -1;
+    }
+
+    //A lista com size nós foi invertida: o finger continua no mesmo nó, mas a sua posição é espelhada e o anterior
+    //passa a ser o antigo seguinte.
+    void reversed(UNodeStore nodes, int size)
+    {
+        if(this.index >= 0){
+            this.prevAddr = nodes.links(this.addr) ^ this.prevAddr;
+            this.index = size-1-this.index;
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package aed.collections;
+
+import java.util.PrimitiveIterator;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+// Lista sovina de ints: cada elemento é guardado diretamente no nó de 16 bytes fora do HEAP, sem caixas Integer.
+// Nenhuma operação de add/get aloca memória no HEAP.
+
+public class StingyIntList extends StingyPrimitiveList {
+
+    public StingyIntList()
+    {
+        super();
+    }
+
+    public void addInt(int value)
+    {
+        addRaw(value);
+    }
+
+    public void addIntAt(int i, int value)
+    {
+        addAtRaw(i, value);
+    }
+
+    public int removeInt()
+    {
+        return (int) removeRaw();
+    }
+
+    public int removeIntAt(int i)
+    {
+        return (int) removeAtRaw(i);
+    }
+
+    public int getInt()
+    {
+        return (int) getRaw();
+    }
+
+    public int getInt(int i)
+    {
+        return (int) getRaw(i);
+    }
+
+    public void setInt(int i, int value)
+    {
+        setRaw(i, value);
+    }
+
+    public int[] toArray()
+    {
+        return stream().toArray();
+    }
+
+    public void forEach(IntConsumer action)
+    {
+        forEachRaw(value -> action.accept((int) value));
+    }
+
+    public PrimitiveIterator.OfInt iterator()
+    {
+        return new StingyIntListIterator();
+    }
+
+    public IntStream stream()
+    {
+        return rawStream().mapToInt(value -> (int) value);
+    }
+
+    private class StingyIntListIterator extends RawIterator implements PrimitiveIterator.OfInt{
+
+        @Override
+        public int nextInt() {
+            return (int) nextRaw();
+        }
+    }
+}
@@ -1,10 +1,30 @@
 package aed.collections;
 
+import java.lang.reflect.Array;
+import java.util.AbstractCollection;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Deque;
 import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.NoSuchElementException;
 import java.util.Random;
+import java.util.Spliterator;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.stream.Collector;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
-public class StingyList<T> implements Iterable<T> {
+public class StingyList<T> implements Iterable<T>, AutoCloseable {
 
     //representamos null como o long 0L.
     private static final long NULL = 0L;
@@ -12,12 +32,45 @@ public class StingyList<T> implements Iterable<T> {
     private int size;
     private long first;
     private long last;
+    private final UNodeStore nodes; //onde vivem os nós da lista (por omissão UNodes cortados de uma UNodeArena)
+    private boolean owner;          //true enquanto a lista está registada como dona da store (ver clear)
+    private StingyListIndex index;  //índice posicional opcional (null se estiver desligado)
+    private StingyListContainsIndex containsIndex;  //índice de contains opcional (null se estiver desligado)
+
+    //"finger": a última posição visitada por get(i)/addAt/removeAt (ver StingyFinger).
+    private final StingyFinger finger;
 
     public StingyList()
+    {
+        this(new UNodeArena());
+    }
+
+    //Cria uma lista cujos nós são cortados da arena recebida. Se a arena for null, cada nó é reservado e libertado
+    //individualmente com allocateMemory/freeMemory.
+    public StingyList(UNodeArena arena)
+    {
+        this(new ArenaNodeStore(arena));
+    }
+
+    //Cria uma lista cujos nós são guardados na store recebida (por exemplo, new StingyList<>(new BufferNodeStore())
+    //para uma lista que não usa o Unsafe).
+    public StingyList(UNodeStore nodes)
+    {
+        this(nodes, true);
+    }
+
+    //Cria uma lista vazia com os nós na store recebida. Se owner for false a lista só passa a ser dona da store quando
+    //tiver nós (createNode, appendAll), para que uma lista vazia que partilha a store de outra (splitAt, reversed) não
+    //impeça essa outra de a libertar em O(1), compactar ou passar a outra lista.
+    private StingyList(UNodeStore nodes, boolean owner)
     {
         this.size = 0;
         this.first = NULL;  //Cria first node NULL
         this.last = NULL;  //Cria last node NULL
+        this.nodes = nodes;
+        this.owner = false;
+        if(owner) retainNodes();
+        this.finger = new StingyFinger();
     }
 
     // Embora não seja obrigatório, aconselho-vos a implementar estes 3 métodos seguintes, pois o código da StingyList pode
@@ -32,13 +85,26 @@ public class StingyList<T> implements Iterable<T> {
     //
     long getBeyond(long node, long fromAddr)
     {
-        return UNode.get_prev_next_addr(node) ^ fromAddr;   //pXORn XOR p = n ou pXORn XOR n = p
+        return this.nodes.links(node) ^ fromAddr;   //pXORn XOR p = n ou pXORn XOR n = p
+    }
+
+    // Endereços do primeiro e do último nó (usados pela ConcurrentStingyList para percorrer a lista sem o finger).
+    long firstNode()
+    {
+        return this.first;
+    }
+
+    long lastNode()
+    {
+        return this.last;
     }
 
     // Atualiza uma das referências do nó (pode ser usado para atualizar o previous ou o next).
     // Recebe como argumento um endereço para o nó, um endereço para a ligação que queremos atualizar (previous ou next),
     // e o novo endereço a usar. Se passármos o previous, este método atualiza apenas o ponteiro para o previous
     // mantendo o ponteiro para o next, e vice-versa.
+    // Trabalha diretamente sobre UNodes (é usado pela StingyChunkList e pelas listas primitivas); os nós da StingyList
+    // são atualizados através da sua UNodeStore (UNodeStore.relink), que faz o mesmo em qualquer store.
     static void updateNodeReference(long node, long oldAddr, long newAddr)
     {
         long newXor = (UNode.get_prev_next_addr(node) ^ oldAddr) ^ newAddr; // (pXORn XOR p) XOR newP = n XOR newP ou (pXORn XOR n) XOR newN = p XOR newN
@@ -51,7 +117,7 @@ public class StingyList<T> implements Iterable<T> {
     void updateBothNodeReferences(long node, long prevAddr, long nextAddr)
     {
         long newXor = prevAddr ^ nextAddr;  //pXORn
-        UNode.set_prev_next_addr(node, newXor);
+        this.nodes.setLinks(node, newXor);
     }
 
 
@@ -64,23 +130,48 @@ public class StingyList<T> implements Iterable<T> {
         }
         //Caso em que a lista está vazia
         else if(this.isEmpty()){
-            this.first = UNode.create_node(item, NULL, NULL);   //cria o node first sem next nem prev
+            this.first = createNode(item, NULL, NULL);   //cria o node first sem next nem prev
             this.last = this.first; //aponta o last para o first, quando o tamanho do array é 1, amos os ponteiros apontarão para o mesmo elemento
         }
         //Caso em que a lista tem apenas 1 elemento
         else if(size == 1){
-            this.last = UNode.create_node(item, this.first, NULL);  //cria o node last da lista, com prev em first e next em NULL
+            this.last = createNode(item, this.first, NULL);  //cria o node last da lista, com prev em first e next em NULL
             updateBothNodeReferences(this.first, NULL, this.last);  //atribui ao first o next em last e prev em NULL
         }
         //Caso em que a lista tem mais que um elemento
         else{
             long tempNodeAddr = this.last;  //guarda o endereço do antigo last
-            this.last = UNode.create_node(item, tempNodeAddr, NULL);    //cria novo last com prev em last-1 e next em NULL
-            updateNodeReference(tempNodeAddr, NULL, this.last); //aponta next de last antigo para last
+            this.last = createNode(item, tempNodeAddr, NULL);    //cria novo last com prev em last-1 e next em NULL
+            this.nodes.relink(tempNodeAddr, NULL, this.last); //aponta next de last antigo para last
         }
+        if(this.index != null) this.index.insert(this.size, this.last);
+        if(this.containsIndex != null) this.containsIndex.add(this.last);
         this.size++;
     }
 
+    // Acrescenta n itens, obtidos de items, ao fim da lista numa só passagem. A store reserva de uma só vez a memória
+    // para os n nós, que são ligados em sequência (usado pelo StingyListSnapshot para reconstruir listas).
+    // Se items lançar uma exceção, a lista fica com os itens acrescentados até esse ponto.
+    void addAllBulk(int n, Supplier<? extends T> items)
+    {
+        this.nodes.reserve(n);
+        long prevAddr = this.last;
+        for(int k = 0; k < n; k++){
+            T item = items.get();
+            if(item == null){
+                throw new IllegalArgumentException();
+            }
+            long addr = createNode(item, prevAddr, NULL);
+            if(prevAddr == NULL) this.first = addr;
+            else this.nodes.relink(prevAddr, NULL, addr);
+            this.last = addr;
+            if(this.index != null) this.index.insert(this.size, addr);
+            if(this.containsIndex != null) this.containsIndex.add(addr);
+            this.size++;
+            prevAddr = addr;
+        }
+    }
+
     public T remove()
     {
         T result;
@@ -90,22 +181,61 @@ public class StingyList<T> implements Iterable<T> {
         }
         //Caso em que a lista tem apenas 1 elemento
         else if(this.size == 1){
-            result = UNode.get_item(this.first);
-            UNode.free_node(this.first); //limpa a parte da memória onde estava endereçado o first
+            result = this.nodes.item(this.first);
+            freeNode(this.first, 0); //limpa a parte da memória onde estava endereçado o first
+            //a lista fica vazia: o first e o last não podem continuar a apontar para o nó libertado, que a arena
+            //pode voltar a dar a outra lista (os iteradores e o appendAll partem do first/last)
+            this.first = NULL;
+            this.last = NULL;
             size--;
         }
         //Caso em que a lista tem mais que 1 elemento
         else{
             long tempNodeAddr = getBeyond(this.last, NULL); //guarda o endereço de last-1 que passará a ser last
-            result = UNode.get_item(this.last);
-            updateNodeReference(tempNodeAddr, this.last, NULL);  //aponta o next de last-1 para NULL em vez de last
-            UNode.free_node(this.last);  //liberta a parte da memória onde estava endereçado o antigo last
+            result = this.nodes.item(this.last);
+            this.nodes.relink(tempNodeAddr, this.last, NULL);  //aponta o next de last-1 para NULL em vez de last
+            freeNode(this.last, this.size-1);  //liberta a parte da memória onde estava endereçado o antigo last
             this.last = tempNodeAddr;   //last-1 passa a ser o novo last
             size--;
         }
+        //o finger deixa de ser válido se estava no nó que foi removido
+        this.finger.removedLast(this.size);
         return result;
     }
 
+    //Liberta o nó addr, que estava na posição i. A entrada do índice é apagada antes de libertar o nó, porque o índice
+    //de hash ainda tem de ler o item do nó para o encontrar na tabela. O nó já foi desligado da lista, mas o first pode
+    //ainda ser ele (removeAt(0)): nesse caso a lista que o índice de contains percorre começa no nó seguinte.
+    private void freeNode(long addr, int i)
+    {
+        if(this.index != null) this.index.delete(i);
+        if(this.containsIndex != null) this.containsIndex.remove(addr, (addr == this.first) ? getBeyond(addr, NULL) : this.first);
+        this.nodes.free(addr);
+    }
+
+    //Cria um nó na store. Se a lista tinha deixado de ser dona da store (ao ficar vazia com clear), volta a sê-lo.
+    private long createNode(T item, long previous, long next)
+    {
+        retainNodes();
+        return this.nodes.create(item, previous, next);
+    }
+
+    private void retainNodes()
+    {
+        if(!this.owner){
+            this.nodes.retain();
+            this.owner = true;
+        }
+    }
+
+    private void releaseNodes()
+    {
+        if(this.owner){
+            this.nodes.release();
+            this.owner = false;
+        }
+    }
+
     public T get()
     {
         T result;
@@ -115,15 +245,38 @@ public class StingyList<T> implements Iterable<T> {
         }
         //Caso em que a lista tem apenas 1 elemento
         else if(this.size == 1){
-            result = UNode.get_item(this.first);
+            result = this.nodes.item(this.first);
         }
         //Caso em que a lista tem mais que 1 elemento
         else{
-            result = UNode.get_item(this.last);
+            result = this.nodes.item(this.last);
         }
         return result;
     }
 
+    // Operações no início da lista, com o mesmo custo O(1) que add/remove/get têm no fim (com o índice posicional
+    // ligado, O(log n) para o manter atualizado).
+    public void addFirst(T item)
+    {
+        if(item == null){
+            throw new IllegalArgumentException();
+        }
+        this.addAt(0, item);
+    }
+
+    public T removeFirst()
+    {
+        return this.removeAt(0);
+    }
+
+    public T getFirst()
+    {
+        if(this.size == 0){
+            throw new IndexOutOfBoundsException();
+        }
+        return this.nodes.item(this.first);
+    }
+
     //Encontra o endereço do node que tem posição i na lista
     //Trabalha para a primeira metade da lista
     public long getAddrFirstHalf(int i){
@@ -161,26 +314,29 @@ public class StingyList<T> implements Iterable<T> {
             throw new IndexOutOfBoundsException();
         }
         long resultAddr = getAddrFirstHalf(i);
-        return UNode.get_item(resultAddr);
+        return this.nodes.item(resultAddr);
     }
 
     public T get(int i)
     {
-        T result;
         //Caso em que i não é uma posição válida da lista
         if(i < 0 || i > this.size-1){
             throw new IndexOutOfBoundsException();
         }
-        //Caso em que i se encontra na primeira metade da lista
-        else if(i < (this.size/2)){
-            result = this.getSlow(i);
-        }
-        //Caso em que i se encontra na segunda metade da lista
-        else{
-            long resultAddr = getAddrSecondHalf(i);
-            result = UNode.get_item(resultAddr);
+        return this.nodes.item(seek(i));
+    }
+
+    //Coloca o finger na posição i e devolve o endereço do nó nessa posição (o endereço do nó i-1 fica em
+    //finger.prevAddr). Se a lista tiver índice posicional usa o índice; senão anda a partir do first, do last ou do
+    //finger atual, o que estiver mais perto de i. Assim, acessos a posições próximas umas das outras custam O(distância).
+    private long seek(int i)
+    {
+        if(this.index != null){
+            long addr = this.index.get(i);
+            this.finger.set(i, addr, (i > 0) ? this.index.get(i-1) : NULL);
+            return addr;
         }
-        return result;
+        return this.finger.seek(this.nodes, this.first, this.last, this.size, i);
     }
 
     //Encontra o endereço do node que tem posição i e i-1 na lista
@@ -232,8 +388,11 @@ public class StingyList<T> implements Iterable<T> {
         //Caso em que i é o início da lista
         else if(i == 0){
             long tempNodeAddr = this.first; //guarda o antigo endereço de first
-            this.first = UNode.create_node(item, NULL, tempNodeAddr);   //cria novo first com prev em NULL e next no antigo first
-            updateNodeReference(tempNodeAddr, NULL, this.first);    //atualiza o ponteiro do antigo first de null para o novo first
+            this.first = createNode(item, NULL, tempNodeAddr);   //cria novo first com prev em NULL e next no antigo first
+            this.nodes.relink(tempNodeAddr, NULL, this.first);    //atualiza o ponteiro do antigo first de null para o novo first
+            if(this.index != null) this.index.insert(0, this.first);
+            if(this.containsIndex != null) this.containsIndex.add(this.first);
+            this.finger.addedFirst(this.first);   //todas as posições avançam 1
             this.size++;
         }
         //Caso em que i é o fim da lista
@@ -241,26 +400,14 @@ public class StingyList<T> implements Iterable<T> {
             this.add(item);
         }
         else{
-            long iAddr; //endereço da posiçao i
-            long iPrevAddr; //endereço da posiçao i-1
-            //Caso em que i se encontra na primeira metade da lista
-            if(i < (this.size/2)){
-                long[] iPrevAddrAndiAddr = getAddrFirstHalfForAts(i);
-                iPrevAddr = iPrevAddrAndiAddr[0]; //endereço da posiçao i-1
-                iAddr = iPrevAddrAndiAddr[1];   //endereço da posiçao i
-                long newNode = UNode.create_node(item, iPrevAddr, iAddr);   //novo node que ficará entre i-1 e i
-                updateNodeReference(iPrevAddr, iAddr, newNode); //aponta o next do node i-1 para o newNode em vez do node i
-                updateNodeReference(iAddr, iPrevAddr, newNode); //aponta o previous do node i para newNode em vez do node i-1
-            }
-            //Caso em que i se encontra na segunda metade da lista
-            else{
-                long[] iAddrAndiNextAddr = getAddrSecondHalfForAts(i);
-                iAddr = iAddrAndiNextAddr[0];  //endereço da posiçao i
-                iPrevAddr = getBeyond(iAddr, iAddrAndiNextAddr[1]); //endereço da posiçao i-1
-                long newNode = UNode.create_node(item, iPrevAddr, iAddr);   //novo node que ficará entre i-1 e i
-                updateNodeReference(iPrevAddr, iAddr, newNode); //aponta o next do node i-1 para o newNode em vez do node i
-                updateNodeReference(iAddr, iPrevAddr, newNode); //aponta o previous do node i para newNode em vez do node i-1
-            }
+            long iAddr = seek(i); //endereço da posiçao i
+            long iPrevAddr = this.finger.prevAddr; //endereço da posiçao i-1
+            long newNode = createNode(item, iPrevAddr, iAddr);   //novo node que ficará entre i-1 e i
+            this.nodes.relink(iPrevAddr, iAddr, newNode); //aponta o next do node i-1 para o newNode em vez do node i
+            this.nodes.relink(iAddr, iPrevAddr, newNode); //aponta o previous do node i para newNode em vez do node i-1
+            if(this.index != null) this.index.insert(i, newNode);
+            if(this.containsIndex != null) this.containsIndex.add(newNode);
+            this.finger.addr = newNode;  //o finger fica no novo nó, que passou a ser a posição i
             this.size++;
         }
     }
@@ -272,53 +419,29 @@ public class StingyList<T> implements Iterable<T> {
         if(i < 0 || i > this.size-1 || this.isEmpty()){
             throw new IndexOutOfBoundsException();
         }
+        //Caso em que i é o fim da lista (inclui a lista com um só elemento, que fica vazia em remove())
+        else if(i == this.size-1){
+            result = this.remove();
+        }
         //Caso em que i é o início da lista
         else if(i == 0){
-            //Caso em que a lista tem apenas um elemento
-            if(this.size == 1){
-                result = UNode.get_item(this.first);
-                UNode.free_node(this.first);
-                //UNode.free_node(this.last);
-            }
-            else{
-                long tempNodeAddr = getBeyond(this.first, NULL); //guarda o endereço de first+1 que passará a ser first
-                result = UNode.get_item(this.first);
-                updateNodeReference(tempNodeAddr, this.first, NULL);    //aponta o prev do first+1 para NULL em vez de first
-                UNode.free_node(this.first);    //liberta a parte da memória onde estava guardado o endereço do first
-                this.first = tempNodeAddr;  //first+1 passa a ser o novo first
-            }
+            this.finger.removedFirst();   //todas as posições recuam 1
+            long tempNodeAddr = getBeyond(this.first, NULL); //guarda o endereço de first+1 que passará a ser first
+            result = this.nodes.item(this.first);
+            this.nodes.relink(tempNodeAddr, this.first, NULL);    //aponta o prev do first+1 para NULL em vez de first
+            freeNode(this.first, 0);    //liberta a parte da memória onde estava guardado o endereço do first
+            this.first = tempNodeAddr;  //first+1 passa a ser o novo first
             size--;
         }
-        //Caso em que i é o fim da lista
-        else if(i == this.size-1){
-            result = this.remove();
-        }
         else{
-            long iAddr; //endereço da posiçao i
-            long iPrevAddr; //endereço da posiçao i-1
-            long iNextAddr; //endereço da posiçao i+1
-            //Caso em que i se encontra na primeira metade da lista
-            if(i < (this.size/2)){
-                long[] iPrevAddrAndiAddr = getAddrFirstHalfForAts(i);
-                iAddr = iPrevAddrAndiAddr[1];   //endereço da posiçao i
-                iPrevAddr = iPrevAddrAndiAddr[0]; //endereço da posiçao i-1
-                iNextAddr = getBeyond(iAddr, iPrevAddr);  //endereço da posiçao i+1
-                updateNodeReference(iPrevAddr, iAddr, iNextAddr); //aponta o next do node i-1 para o i+1 em vez do node i
-                updateNodeReference(iNextAddr, iAddr, iPrevAddr); //aponta o previous do node i+1 para i-1 em vez do node i
-                result = UNode.get_item(iAddr);
-                UNode.free_node(iAddr); //liberta a parte da memória onde estava guardado o endereço do node i
-            }
-            //Caso em que i se encontra na segunda metade da lista
-            else{
-                long[] iAddrAndiNextAddr = getAddrSecondHalfForAts(i);
-                iAddr = iAddrAndiNextAddr[0];  //endereço da posiçao i
-                iNextAddr = iAddrAndiNextAddr[1];  //endereço da posiçao i+1
-                iPrevAddr = getBeyond(iAddr, iNextAddr); //endereço da posiçao i-1
-                updateNodeReference(iPrevAddr, iAddr, iNextAddr); //aponta o next do node i-1 para o i+1 em vez do node i
-                updateNodeReference(iNextAddr, iAddr, iPrevAddr); //aponta o previous do node i+1 para i-1 em vez do node i
-                result = UNode.get_item(iAddr);
-                UNode.free_node(iAddr); //liberta a parte da memória onde estava guardado o endereço do node i
-            }
+            long iAddr = seek(i); //endereço da posiçao i
+            long iPrevAddr = this.finger.prevAddr; //endereço da posiçao i-1
+            long iNextAddr = getBeyond(iAddr, iPrevAddr); //endereço da posiçao i+1
+            this.nodes.relink(iPrevAddr, iAddr, iNextAddr); //aponta o next do node i-1 para o i+1 em vez do node i
+            this.nodes.relink(iNextAddr, iAddr, iPrevAddr); //aponta o previous do node i+1 para i-1 em vez do node i
+            result = this.nodes.item(iAddr);
+            freeNode(iAddr, i); //liberta a parte da memória onde estava guardado o endereço do node i
+            this.finger.addr = iNextAddr;    //o finger fica no nó i+1, que passou a ser a posição i
             this.size--;
         }
         return result;
@@ -329,129 +452,1541 @@ public class StingyList<T> implements Iterable<T> {
         long tempAddr = this.first;
         this.first = this.last;
         this.last = tempAddr;
+        if(this.index != null) this.index.reverse();
+        this.finger.reversed(this.nodes, this.size);
     }
 
     public StingyList<T> reversed()
     {
-        StingyList<T> result = new StingyList<>();
+        StingyList<T> result = new StingyList<>(this.nodes, this.size > 0);    //partilha os nós, logo partilha a store
         result.size = this.size;
         result.first = this.last;
         result.last = this.first;
         return result;
     }
 
-    public void clear()
+    // Acrescenta ao fim desta lista os nós de other, pela ordem em que other está (tenha sido invertida ou não), sem os
+    // copiar: basta ligar o last desta lista ao first de other. other fica vazia.
+    // Os nós passam a ser desta lista, por isso a store tem de os acompanhar (UNodeStore.adopt): com UNodes, se other
+    // for a única dona da sua arena, os slabs dessa arena passam para a arena desta lista (UNodeArena.adopt, O(log n)),
+    // com os nós livres e a folga do slab de other, que esta arena volta a usar; se as duas listas usarem a mesma
+    // arena, ou nenhuma usar arena, não há nada a fazer.
+    // O concat só é O(1) nesses casos. Nos outros, os m itens de other são COPIADOS um a um para nós novos (O(m)) e os
+    // nós de other são libertados:
+    //   - other partilha a arena com outra lista (reversed() ou splitAt() ainda não fechadas) ou usa outra arena com
+    //     nós de outro tamanho;
+    //   - as listas usam duas HandleNodeStore, CompactNodeStore ou BufferNodeStore diferentes: estas stores
+    //     endereçam os nós (ou os itens) pela posição nas suas tabelas, que não podem ser juntadas sem mudar os
+    //     endereços, por isso só aceitam sem cópia os nós da própria store;
+    //   - as stores são de tipos diferentes, ou são InlineNodeStores que guardam os itens de formas diferentes.
+    // Com o índice posicional ligado custa ainda O(m log n) para registar os m novos nós.
+    public void appendAll(StingyList<T> other)
     {
-        while(this.size > 0){
-            this.remove();
+        if(other == this){
+            throw new IllegalArgumentException();
+        }
+        if(other.size == 0){
+            return;
+        }
+        if(this.nodes.adopt(other.nodes)){
+            retainNodes();
+            //Caso em que esta lista está vazia
+            if(this.size == 0){
+                this.first = other.first;
+            }
+            else{
+                this.nodes.relink(this.last, NULL, other.first);  //o next do last passa a ser o first de other
+                this.nodes.relink(other.first, NULL, this.last);  //o prev do first de other passa a ser o last
+            }
+            if(this.index != null || this.containsIndex != null){
+                long prevAddr = this.last;  //o first de other já está ligado ao last desta lista (NULL se estava vazia)
+                long addr = other.first;
+                for(int i = 0; i < other.size; i++){
+                    if(this.index != null) this.index.insert(this.size + i, addr);
+                    if(this.containsIndex != null) this.containsIndex.add(addr);
+                    long tempAddr = addr;
+                    addr = getBeyond(tempAddr, prevAddr);
+                    prevAddr = tempAddr;
+                }
+            }
+            this.last = other.last;
+            this.size += other.size;
+            //other fica vazia sem libertar nenhum nó
+            other.first = NULL;
+            other.last = NULL;
+            other.size = 0;
+            if(other.index != null) other.index.clear();
+            if(other.containsIndex != null) other.containsIndex.clear();
+            other.finger.invalidate();
+            other.releaseNodes();
+        }
+        else{
+            for(T item : other){
+                add(item);
+            }
+            other.clear();
         }
     }
 
-    public boolean isEmpty()
+    // Separa a lista na posição i: esta lista fica com os elementos 0..i-1 e é devolvida uma nova lista com os
+    // elementos i..size()-1, pela mesma ordem. Os nós não são copiados: basta chegar ao nó i e cortar as duas ligações
+    // entre os nós i-1 e i. Como as duas listas ficam com nós da mesma store, a nova lista partilha a store desta.
+    // Com o índice posicional ligado, a árvore do índice também é cortada de uma só vez (StingyListIndex.splitOff) e a
+    // parte cortada passa a ser o índice da nova lista, o que custa O(log n + (size()-i)). Com o índice de contains
+    // ligado, a nova lista também fica com um, e os dois são reconstruídos (O(n)).
+    public StingyList<T> splitAt(int i)
     {
-        if(this.size == 0){
-            return true;
+        if(i < 0 || i > this.size){
+            throw new IndexOutOfBoundsException();
         }
-        return false;
+        //a nova lista só conta como dona da store se receber nós
+        StingyList<T> result = new StingyList<>(this.nodes, i < this.size);
+        if(this.containsIndex != null) result.containsIndex = new StingyListContainsIndex(this.nodes, this.containsIndex.isByIdentity());
+        if(i == this.size){
+            if(this.index != null) result.index = this.index.splitOff(i);
+            return result;
+        }
+        long iAddr = seek(i);
+        long iPrevAddr = this.finger.prevAddr;
+        result.first = iAddr;
+        result.last = this.last;
+        result.size = this.size - i;
+        //Caso em que a lista inteira passa para a nova lista
+        if(i == 0){
+            this.first = NULL;
+            this.last = NULL;
+        }
+        else{
+            this.nodes.relink(iPrevAddr, iAddr, NULL);    //o next do nó i-1 passa a ser NULL
+            this.nodes.relink(iAddr, iPrevAddr, NULL);    //o prev do nó i passa a ser NULL
+            this.last = iPrevAddr;
+        }
+        if(this.index != null) result.index = this.index.splitOff(i);
+        this.size = i;
+        this.finger.invalidate();
+        if(this.containsIndex != null){
+            rebuildContainsIndex();
+            result.rebuildContainsIndex();
+        }
+        if(i == 0) releaseNodes();  //todos os nós passaram para a nova lista
+        return result;
     }
 
-    public int size()
+    // Remove numa só passagem todos os elementos que satisfazem o filtro. Devolve true se removeu algum.
+    // Cada sequência de nós consecutivos a remover é desligada da lista com uma única religação, e no fim todos os nós
+    // removidos são libertados de uma só vez (UNodeStore.freeChain). Custa O(n) (mais O(k log n) com o índice ligado).
+    // Se o filtro lançar uma exceção, ficam removidos apenas os elementos das sequências já desligadas.
+    public boolean removeIf(Predicate<? super T> filter)
     {
-        return this.size;
+        if(filter == null){
+            throw new NullPointerException();
+        }
+        return removeMatching(0, this.size, (position, nodeAddr) -> filter.test(this.nodes.item(nodeAddr))) > 0;
     }
 
-    public Object[] toArray()
+    // Remove os elementos das posições from (inclusive) a to (exclusive), andando apenas até from e depois até to.
+    public void removeRange(int from, int to)
     {
-        Object[] result = new Object[this.size];
-        for(int i = 0; i < this.size; i++){
-            result[i] = this.get(i);
+        if(from < 0 || to > this.size || from > to){
+            throw new IndexOutOfBoundsException();
         }
-        return result;
+        //Caso em que removemos a lista toda
+        if(from == 0 && to == this.size){
+            clear();
+            return;
+        }
+        removeMatching(from, to, (position, nodeAddr) -> true);
     }
 
-    public Iterator<T> iterator()
+    // Remove os elementos nas posições indicadas, que têm de estar por ordem estritamente crescente (as posições
+    // referem-se à lista antes de qualquer remoção). Numa só passagem, da primeira à última posição indicada.
+    public void removeAll(int... indices)
     {
-        return new StingyListIterator();
+        if(indices.length == 0){
+            return;
+        }
+        for(int k = 1; k < indices.length; k++){
+            if(indices[k] <= indices[k-1]){
+                throw new IllegalArgumentException("Indices must be in strictly increasing order");
+            }
+        }
+        if(indices[0] < 0 || indices[indices.length-1] >= this.size){
+            throw new IndexOutOfBoundsException();
+        }
+        removeMatching(indices[0], indices[indices.length-1] + 1, new PositionFilter() {
+            private int next = 0;   //próxima posição de indices a remover
+
+            @Override
+            public boolean remove(int position, long nodeAddr) {
+                if(indices[this.next] == position){
+                    this.next++;
+                    return true;
+                }
+                return false;
+            }
+        });
     }
 
-    private class StingyListIterator implements Iterator<T>{
+    // Decide se o nó na posição (original) position deve ser removido.
+    private interface PositionFilter {
+        boolean remove(int position, long nodeAddr);
+    }
 
-        long prevI;
+    //Remove, numa só passagem pelas posições from..to-1, os nós escolhidos pelo filtro. Devolve quantos removeu.
+    private int removeMatching(int from, int to, PositionFilter filter)
+    {
+        if(from >= to){
+            return 0;
+        }
+        BulkRemoval removal = new BulkRemoval();
+        long addr = seek(from);
+        long prevAddr = this.finger.prevAddr;
+        removal.kept = prevAddr;
+        removal.keptPosition = from;
+        long runStart = NULL;
+        int runLength = 0;
+        try{
+            for(int position = from; position < to; position++){
+                long nextAddr = getBeyond(addr, prevAddr);  //lido antes de mexermos nas ligações
+                if(filter.remove(position, addr)){
+                    if(runStart == NULL) runStart = addr;
+                    runLength++;
+                }
+                else{
+                    if(runStart != NULL){
+                        removal.detach(runStart, prevAddr, addr, runLength);
+                        runStart = NULL;
+                        runLength = 0;
+                    }
+                    removal.kept = addr;
+                    removal.keptPosition++;
+                }
+                prevAddr = addr;
+                addr = nextAddr;
+            }
+            if(runStart != NULL){
+                removal.detach(runStart, prevAddr, addr, runLength);
+            }
+        }
+        finally{
+            this.nodes.freeChain(removal.garbageHead);
+            this.finger.invalidate();
+            //o índice de contains é reconstruído em vez de atualizado nó a nó (removeMatching já custa O(n))
+            if(this.containsIndex != null && removal.removed > 0) rebuildContainsIndex();
+        }
+        return removal.removed;
+    }
 
-        long i;
+    // Estado de uma remoção em bloco: o último nó mantido e a cadeia (ligada por XOR) dos nós já desligados da lista,
+    // que são libertados todos juntos no fim.
+    private class BulkRemoval {
+
+        long kept;          //último nó mantido (NULL se ainda não há nenhum antes da posição atual)
+        int keptPosition;   //posição atual, na lista já alterada, do nó a seguir a kept
+        long garbageHead = NULL;
+        long garbageTail = NULL;
+        int removed = 0;
 
-        StingyListIterator(){
-            this.prevI = NULL;
-            this.i = first;
+        //Desliga os nós runStart..runEnd, que estão entre kept e after, e junta-os à cadeia de nós removidos.
+        void detach(long runStart, long runEnd, long after, int runLength)
+        {
+            if(this.kept != NULL) nodes.relink(this.kept, runStart, after);  //o next de kept passa a ser after
+            else first = after;
+            if(after != NULL) nodes.relink(after, runEnd, this.kept);    //o prev de after passa a ser kept
+            else last = this.kept;
+            //a sequência removida passa a estar ligada à cadeia de nós removidos, com NULL no fim
+            nodes.relink(runStart, this.kept, this.garbageTail);
+            if(this.garbageTail != NULL) nodes.relink(this.garbageTail, NULL, runStart);
+            else this.garbageHead = runStart;
+            nodes.relink(runEnd, after, NULL);
+            this.garbageTail = runEnd;
+            if(index != null){
+                for(int k = 0; k < runLength; k++){
+                    index.delete(this.keptPosition);
+                }
+            }
+            size -= runLength;
+            this.removed += runLength;
         }
+    }
 
-        @Override
-        public boolean hasNext() {
-            return this.i != NULL;
+    // Ordena a lista (de forma estável) com um merge sort bottom-up que apenas volta a ligar os nós existentes: não
+    // cria nós nem copia itens, e usa O(1) memória extra. Durante a ordenação o 1.º long de cada nó guarda apenas o
+    // endereço do next (a lista passa a ser simplesmente ligada); no fim as ligações XOR são refeitas numa passagem.
+    // Se c for null, usa a ordem natural dos itens (que têm de ser Comparable). Custa O(n log n).
+    //
+    // Porquê voltar a ligar os nós em vez de copiar os itens para um array, ordená-lo e voltar a escrevê-los: a
+    // StingyList existe para gastar pouca memória, e ordenar num array precisa de n referências a mais (mais até n/2
+    // do TimSort), que é justamente o que uma lista destas não pode ter de sobra. O preço é o tempo: cada passagem
+    // salta de nó em nó pela memória e lê os itens através da store, por isso o sortBenchmark mede ~7x o tempo do
+    // ArrayList.sort (e menos do que o LinkedList.sort, que copia para um array). Quem tiver memória para o array e
+    // quiser velocidade pode fazer toArray, ordenar e reconstruir a lista; depois de sort, compact() volta a pôr os
+    // nós pela ordem da lista na memória, o que torna as travessias seguintes sequenciais.
+    //
+    // Se o comparador lançar uma exceção (ou, com c null, os itens não forem Comparable), a exceção é propagada mas a
+    // lista continua válida: tem todos os elementos, numa ordem parcialmente ordenada, e as ligações XOR, o first, o
+    // last, o índice e o finger são refeitos no bloco finally.
+    public void sort(Comparator<? super T> c)
+    {
+        if(this.size < 2){
+            return;
+        }
+        //1.ª passagem: prev^next -> next
+        long prevAddr = NULL;
+        long addr = this.first;
+        while(addr != NULL){
+            long nextAddr = getBeyond(addr, prevAddr);
+            this.nodes.setLinks(addr, nextAddr);
+            prevAddr = addr;
+            addr = nextAddr;
+        }
+        MergeSort<T> sorter = new MergeSort<>(this.nodes, c);
+        long head = this.first;
+        boolean sorted = false;
+        try{
+            //juntamos sublistas ordenadas de tamanho width, 2*width, 4*width, ...
+            for(int width = 1; width < this.size; width *= 2){
+                sorter.head = NULL;
+                sorter.tail = NULL;
+                sorter.rest = head;
+                while(sorter.rest != NULL){
+                    long left = sorter.rest;
+                    long right = sorter.cutAfter(left, width);
+                    sorter.rest = sorter.cutAfter(right, width);
+                    sorter.merge(left, right);
+                }
+                head = sorter.head;
+            }
+            sorted = true;
+        }
+        finally{
+            //se o comparador falhou, juntamos ao que já estava juntado os nós que ainda faltava juntar
+            if(!sorted) head = sorter.salvage();
+            //última passagem: next -> prev^next
+            prevAddr = NULL;
+            addr = head;
+            while(addr != NULL){
+                long nextAddr = this.nodes.links(addr);
+                this.nodes.setLinks(addr, prevAddr ^ nextAddr);
+                prevAddr = addr;
+                addr = nextAddr;
+            }
+            this.first = head;
+            this.last = prevAddr;
+            //a ordem dos nós mudou: o índice tem de ser reconstruído e o finger deixa de ser válido
+            rebuildIndex();
+            this.finger.invalidate();
         }
+    }
 
-        @Override
-        public T next() {
-            T result = UNode.get_item(this.i);
-            long tempPrevI = this.prevI;
-            this.prevI = this.i;
-            this.i = getBeyond(this.i, tempPrevI);
-            return result;
+    // Estado do merge sort: a sublista já juntada na passagem atual (head e tail), ligada apenas pelos nexts, o que
+    // resta das duas sublistas que estão a ser juntadas (left e right) e o resto da passagem (rest). Em qualquer
+    // momento, todos os nós da lista estão numa destas quatro cadeias, o que permite recuperar a lista se o
+    // comparador lançar uma exceção a meio (salvage).
+    private static class MergeSort<T> {
+
+        private final UNodeStore nodes;
+        private final Comparator<? super T> comparator;
+        long head;
+        long tail;
+        long left;
+        long right;
+        long rest;
+
+        @SuppressWarnings("unchecked")
+        MergeSort(UNodeStore nodes, Comparator<? super T> comparator)
+        {
+            this.nodes = nodes;
+            this.comparator = comparator != null ? comparator : (Comparator<? super T>) Comparator.naturalOrder();
+        }
+
+        //Separa a sublista que começa em node depois de k nós e devolve o início do resto (NULL se não houver resto).
+        long cutAfter(long node, int k)
+        {
+            for(int i = 1; i < k && node != NULL; i++){
+                node = this.nodes.links(node);
+            }
+            if(node == NULL){
+                return NULL;
+            }
+            long rest = this.nodes.links(node);
+            this.nodes.setLinks(node, NULL);
+            return rest;
+        }
+
+        //Junta as sublistas ordenadas left e right e acrescenta o resultado ao fim de head..tail. Em caso de empate
+        //fica primeiro o nó de left, o que torna a ordenação estável.
+        void merge(long left, long right)
+        {
+            this.left = left;
+            this.right = right;
+            if(this.left != NULL && this.right != NULL){
+                //guardamos os itens das cabeças, para ler cada item apenas uma vez
+                T leftItem = this.nodes.item(this.left);
+                T rightItem = this.nodes.item(this.right);
+                while(true){
+                    if(this.comparator.compare(leftItem, rightItem) <= 0){
+                        append(this.left);
+                        this.left = this.nodes.links(this.left);
+                        if(this.left == NULL) break;
+                        leftItem = this.nodes.item(this.left);
+                    }
+                    else{
+                        append(this.right);
+                        this.right = this.nodes.links(this.right);
+                        if(this.right == NULL) break;
+                        rightItem = this.nodes.item(this.right);
+                    }
+                }
+            }
+            //o que sobra já está ordenado e ligado: basta pendurá-lo e andar até ao fim
+            long rest = this.left != NULL ? this.left : this.right;
+            this.left = NULL;
+            this.right = NULL;
+            appendChain(rest);
+        }
+
+        //Depois de uma exceção a meio de merge: pendura em head..tail o que resta de left, de right e da passagem,
+        //por esta ordem, e devolve o início da cadeia com todos os nós.
+        long salvage()
+        {
+            appendChain(this.left);
+            appendChain(this.right);
+            appendChain(this.rest);
+            return this.head;
+        }
+
+        //Acrescenta a cadeia que começa em node (e acaba num next NULL) ao fim de head..tail.
+        private void appendChain(long node)
+        {
+            if(node != NULL){
+                append(node);
+                while(this.nodes.links(this.tail) != NULL){
+                    this.tail = this.nodes.links(this.tail);
+                }
+            }
+        }
+
+        private void append(long node)
+        {
+            if(this.tail == NULL) this.head = node;
+            else this.nodes.setLinks(this.tail, node);
+            this.tail = node;
         }
     }
-/*
-    public static StingyList<Integer> generateStingyListExample(int n){
-        Random r = new Random();
-        StingyList<Integer> example = new StingyList<>();
-        for(int i = 0; i < n; i++){
-            example.add(r.nextInt());
+
+    // Collector que junta os elementos de um Stream numa StingyList. Em streams paralelos, as listas parciais são
+    // juntadas com appendAll, por isso os elementos não são copiados ao combinar.
+    public static <T> Collector<T, ?, StingyList<T>> toStingyList()
+    {
+        return Collector.of(StingyList::new, StingyList::add, (left, right) -> {
+            left.appendAll(right);
+            return left;
+        });
+    }
+
+    // Liberta todos os nós da lista. Se a lista for a única dona da sua store (da sua arena, com UNodes), liberta os
+    // slabs de uma só vez; senão percorre a lista uma única vez libertando cada nó.
+    public void clear()
+    {
+        //uma lista vazia que já não é dona da store não pode libertá-la: os nós são todos da outra dona
+        if(!this.owner){
+            return;
         }
-        return example;
+        if(this.nodes.canFreeAll()){
+            this.nodes.freeAll();
+        }
+        else{
+            long prevAddr = NULL;
+            long addr = this.first;
+            for(int i = 0; i < this.size; i++){
+                long tempAddr = addr;
+                addr = getBeyond(tempAddr, prevAddr);   //lemos o próximo antes de libertar o nó atual
+                prevAddr = tempAddr;
+                this.nodes.free(tempAddr);
+            }
+        }
+        this.first = NULL;
+        this.last = NULL;
+        this.size = 0;
+        if(this.index != null) this.index.clear();
+        if(this.containsIndex != null) this.containsIndex.clear();
+        this.finger.invalidate();
+        //sem nós, a lista deixa de contar como dona da store: se a store estava partilhada (com a lista devolvida por
+        //reversed() ou splitAt(), por exemplo), a outra dona volta a poder libertá-la, compactá-la ou passá-la
+        releaseNodes();
     }
 
-    public static double calculateAverageExecutionTimeGetSlow(int n){
-        int trials = 30;
-        double totalTime = 0;
-        for(int i = 0; i < trials; i++){
-            StingyList<Integer> exampleList = generateStingyListExample(n);
-            Random r = new Random();
-            int randomI = r.nextInt(0, n);
-            long time = System.currentTimeMillis();
-            exampleList.getSlow(randomI);
-            totalTime += System.currentTimeMillis() - time;
+    // Copia os nós da lista para memória nova e contígua, pela ordem da lista, e liberta a memória antiga de uma só
+    // vez. Depois de muitos addAt/removeAt os nós reciclados ficam espalhados pelos slabs e percorrer a lista salta
+    // de sítio em sítio na memória; depois de compact() percorrer a lista volta a ler a memória por ordem. Os itens
+    // não mudam, mas os endereços dos nós sim: os cursores e iteradores abertos deixam de ser válidos e o índice
+    // (se estiver ligado) é reconstruído. Custa O(n) (O(n log n) com o índice ligado).
+    // Devolve false (e não faz nada) se a store for partilhada com outras listas (reversed() ou splitAt(), por
+    // exemplo) ou não souber compactar os seus nós (UNodes sem arena).
+    public boolean compact()
+    {
+        if(this.size == 0){
+            return true;
         }
-        return totalTime/trials;
+        long[] ends = this.nodes.compact(this.first, this.size);
+        if(ends == null){
+            return false;
+        }
+        this.first = ends[0];
+        this.last = ends[1];
+        rebuildIndex();
+        if(this.containsIndex != null) rebuildContainsIndex();
+        this.finger.invalidate();
+        return true;
     }
 
-    public static double calculateAverageExecutionTimeGet(int n){
-        int trials = 30;
-        double totalTime = 0;
-        for(int i = 0; i < trials; i++){
-            StingyList<Integer> exampleList = generateStingyListExample(n);
-            Random r = new Random();
-            int randomI = r.nextInt(0, n);
-            long time = System.currentTimeMillis();
-            exampleList.get(randomI);
-            totalTime += System.currentTimeMillis() - time;
+    // Liberta a memória fora do HEAP ocupada pela lista (a lista fica vazia, mas pode continuar a ser usada).
+    // As listas que partilham a store (reversed(), splitAt()) devem ser fechadas quando deixam de ser usadas:
+    // enquanto a store tiver mais de uma dona, nenhuma delas a pode libertar em O(1), compactar ou passar a outra
+    // lista no appendAll.
+    // Listas criadas com arena (o caso por omissão) que não sejam fechadas têm os seus slabs libertados pelo Cleaner
+    // da arena quando deixarem de ser alcançáveis; listas sem arena têm de ser fechadas (ou limpas) explicitamente.
+    @Override
+    public void close()
+    {
+        clear();
+    }
+
+    // Liga ou desliga o índice posicional. Com o índice ligado, get(i), addAt e removeAt passam a custar O(log n)
+    // em vez de O(n), à custa de cerca de 28 bytes por elemento no HEAP e de O(log n) em cada add/remove.
+    // Ligar o índice numa lista com n elementos custa O(n log n). Desligá-lo também desliga o índice de hash.
+    public void setIndexed(boolean indexed)
+    {
+        if(indexed && this.index == null){
+            this.index = new StingyListIndex(this.nodes);
+            long prevAddr = NULL;
+            long addr = this.first;
+            for(int i = 0; i < this.size; i++){
+                this.index.insert(i, addr);
+                long tempAddr = addr;
+                addr = getBeyond(tempAddr, prevAddr);
+                prevAddr = tempAddr;
+            }
+        }
+        else if(!indexed && this.index != null){
+            this.index.disableHash();
+            this.index = null;
         }
-        return totalTime/trials;
     }
 
-    public static double calculateAverageExecutionTimeReverse(int n){
-        int trials = 30;
-        double totalTime = 0;
-        for(int i = 0; i < trials; i++){
-            StingyList<Integer> exampleList = generateStingyListExample(n);
-            long time = System.currentTimeMillis();
-            exampleList.reverse();
-            totalTime += System.currentTimeMillis() - time;
+    //volta a construir o índice (e o índice de hash, se estava ligado) depois de os nós mudarem de ordem ou de sítio
+    private void rebuildIndex()
+    {
+        if(this.index != null){
+            boolean hashed = this.index.isHashed();
+            boolean byIdentity = this.index.isHashedByIdentity();
+            setIndexed(false);
+            setIndexed(true);
+            if(hashed) this.index.enableHash(byIdentity);
         }
-        return totalTime/trials;
     }
 
- */
+    // Liga ou desliga o índice de hash (StingyListHashIndex), que torna contains O(1) esperado e indexOf e remove(item)
+    // O(log n) (O(1) para encontrar o item, mais O(log n) para calcular a posição e tirar o nó da lista), mesmo com
+    // muitos itens repetidos. Os itens são comparados com equals/hashCode, ou por identidade (==) se byIdentity for
+    // true. O índice de hash usa o índice posicional para chegar aos nós e às suas posições, por isso ligá-lo também
+    // liga o índice posicional. No total custa cerca de 44 bytes por elemento com itens distintos: cerca de 16 fora do
+    // HEAP (8 da cadeia mais 5 a 11 da tabela) e cerca de 28 no HEAP, do índice posicional (ver setIndexed).
+    // Para quem só precisa de contains há o índice de contains (setContainsIndexed), bem mais barato. Ligar o índice
+    // de hash desliga o índice de contains.
+    public void setHashIndexed(boolean indexed, boolean byIdentity)
+    {
+        if(indexed){
+            setContainsIndexed(false, false);
+            setIndexed(true);
+            this.index.enableHash(byIdentity);
+        }
+        else if(this.index != null){
+            this.index.disableHash();
+        }
+    }
+
+    public boolean isHashIndexed()
+    {
+        return this.index != null && this.index.isHashed();
+    }
+
+    // Liga ou desliga o índice de contains (StingyListContainsIndex), que só torna contains O(1) esperado e não precisa
+    // do índice posicional: guarda, fora do HEAP, um nó de cada item distinto (10,7 a 21,3 bytes por item distinto) e o
+    // número de ocorrências dos itens repetidos. indexOf e remove(item) continuam a percorrer a lista, exceto quando o
+    // item não está na lista (sem byIdentity), que passa a ser respondido em O(1). Cada remoção custa O(1) esperado,
+    // a não ser que retire o nó guardado de um item repetido: aí o índice procura outro igual a partir do início da
+    // lista. Os itens são comparados com equals/hashCode, ou por identidade (==) se byIdentity for true. Ligar o
+    // índice de contains desliga o índice de hash (o índice posicional fica como estava).
+    public void setContainsIndexed(boolean indexed, boolean byIdentity)
+    {
+        if(this.containsIndex != null && (!indexed || this.containsIndex.isByIdentity() != byIdentity)){
+            this.containsIndex.release();
+            this.containsIndex = null;
+        }
+        if(indexed && this.containsIndex == null){
+            if(this.index != null) this.index.disableHash();
+            this.containsIndex = new StingyListContainsIndex(this.nodes, byIdentity);
+            rebuildContainsIndex();
+        }
+    }
+
+    public boolean isContainsIndexed()
+    {
+        return this.containsIndex != null;
+    }
+
+    //volta a registar todos os nós no índice de contains (depois de os nós mudarem de sítio ou de lista)
+    private void rebuildContainsIndex()
+    {
+        this.containsIndex.clear();
+        long prevAddr = NULL;
+        long addr = this.first;
+        for(int i = 0; i < this.size; i++){
+            this.containsIndex.add(addr);
+            long tempAddr = addr;
+            addr = getBeyond(tempAddr, prevAddr);
+            prevAddr = tempAddr;
+        }
+    }
+
+    // Memória ocupada pelo índice de hash ou pelo índice de contains (o que estiver ligado) fora do HEAP, em bytes (0
+    // se os dois estiverem desligados).
+    public long hashIndexMemoryBytes()
+    {
+        if(this.containsIndex != null){
+            return this.containsIndex.memoryBytes();
+        }
+        return (this.index != null) ? this.index.hashMemoryBytes() : 0L;
+    }
 
-    public static void main(String args[]){
+    // Devolve true se a lista tiver um item igual a item (com o índice de hash ou de contains, por identidade se o
+    // índice tiver sido ligado por identidade). Sem nenhum dos dois percorre a lista.
+    public boolean contains(T item)
+    {
+        if(item == null){
+            return false;
+        }
+        if(this.index != null && this.index.isHashed()){
+            return this.index.contains(item);
+        }
+        if(this.containsIndex != null){
+            return this.containsIndex.contains(item);
+        }
+        return indexOf(item) >= 0;
+    }
+
+    // Devolve a posição da primeira ocorrência de item, ou -1 se não existir.
+    public int indexOf(T item)
+    {
+        if(item == null){
+            return -1;
+        }
+        if(this.index != null && this.index.isHashed()){
+            return this.index.indexOf(item);
+        }
+        if(this.containsIndex != null && !this.containsIndex.isByIdentity() && !this.containsIndex.contains(item)){
+            return -1;
+        }
+        long prevAddr = NULL;
+        long addr = this.first;
+        for(int i = 0; i < this.size; i++){
+            if(item.equals(this.nodes.item(addr))){
+                return i;
+            }
+            long tempAddr = addr;
+            addr = getBeyond(tempAddr, prevAddr);
+            prevAddr = tempAddr;
+        }
+        return -1;
+    }
+
+    // Remove a primeira ocorrência de item. Devolve false se não existir. Sem o índice de hash custa O(n); com ele
+    // custa O(log n) e não O(1): o índice de hash encontra o nó em O(1), mas para o desligar da lista é preciso o
+    // endereço de um vizinho (as ligações XOR só dão o next a quem sabe o prev, e vice-versa), que vem do índice
+    // posicional em O(log n), tal como a posição, que o índice posicional também tem de atualizar.
+    public boolean remove(T item)
+    {
+        int i = indexOf(item);
+        if(i < 0){
+            return false;
+        }
+        removeAt(i);
+        return true;
+    }
+
+    public boolean isIndexed()
+    {
+        return this.index != null;
+    }
+
+    // Memória ocupada pelo índice posicional no HEAP, em bytes (0 se o índice estiver desligado).
+    public long indexMemoryBytes()
+    {
+        if(this.index == null){
+            return 0;
+        }
+        return this.index.memoryBytes();
+    }
+
+    public boolean isEmpty()
+    {
+        if(this.size == 0){
+            return true;
+        }
+        return false;
+    }
+
+    public int size()
+    {
+        return this.size;
+    }
+
+    // Memória fora do HEAP usada pela lista, em bytes. Se a lista for a única dona da sua store, são os bytes reservados
+    // pela store (inclui a folga dos slabs); senão, os bytes de cada nó (16 com UNodes).
+    public long nativeMemoryBytes()
+    {
+        long hashBytes = hashIndexMemoryBytes();
+        if(this.nodes.canFreeAll()){
+            return this.nodes.reservedBytes() + hashBytes;
+        }
+        return this.nodes.nodeBytes() * this.size + hashBytes;
+    }
+
+    public Object[] toArray()
+    {
+        Object[] result = new Object[this.size];
+        toArray(result, 0);
+        return result;
+    }
+
+    // Exporta a lista para um array do tipo recebido, com a mesma semântica do Collection.toArray(T[]): se o array
+    // couber a lista é usado (e a posição a seguir ao último elemento fica a null), senão é criado um novo array do
+    // mesmo tipo com o tamanho da lista.
+    @SuppressWarnings("unchecked")
+    public <E> E[] toArray(E[] a)
+    {
+        E[] result = a;
+        if(a.length < this.size){
+            result = (E[]) Array.newInstance(a.getClass().getComponentType(), this.size);
+        }
+        toArray(result, 0);
+        if(result.length > this.size){
+            result[this.size] = null;
+        }
+        return result;
+    }
+
+    // Escreve os elementos da lista num array já existente, a partir da posição offset. Percorre a lista uma única vez.
+    public void toArray(Object[] dest, int offset)
+    {
+        if(offset < 0 || offset > dest.length - this.size){
+            throw new IndexOutOfBoundsException();
+        }
+        Iterator<T> it = iterator();
+        while(it.hasNext()){
+            dest[offset++] = it.next();
+        }
+    }
+
+    // Devolve um ArrayList com os elementos da lista, pela mesma ordem.
+    public List<T> toList()
+    {
+        ArrayList<T> result = new ArrayList<>(this.size);
+        addAllTo(result);
+        return result;
+    }
+
+    // Acrescenta os elementos da lista, pela mesma ordem, ao fim da lista recebida.
+    public void addAllTo(List<? super T> target)
+    {
+        if(target instanceof ArrayList){
+            ((ArrayList<? super T>) target).ensureCapacity(target.size() + this.size);
+        }
+        Iterator<T> it = iterator();
+        while(it.hasNext()){
+            target.add(it.next());
+        }
+    }
+
+    public Iterator<T> iterator()
+    {
+        return new StingyListCursor(0);
+    }
+
+    public ListIterator<T> listIterator()
+    {
+        return new StingyListCursor(0);
+    }
+
+    // Devolve um cursor posicionado antes do elemento index (index pode ir de 0 a size()).
+    public ListIterator<T> listIterator(int index)
+    {
+        if(index < 0 || index > this.size){
+            throw new IndexOutOfBoundsException();
+        }
+        return new StingyListCursor(index);
+    }
+
+    // Devolve uma vista da lista como java.util.Deque (o first é a cabeça e o last é a cauda). A vista não copia
+    // nada: todas as operações são feitas diretamente sobre esta lista, e as operações nas duas pontas (offer/poll/peek,
+    // push/pop, addFirst/removeLast, ...) custam O(1). A StingyList não implementa Deque diretamente porque o seu
+    // remove() e o seu get() trabalham no fim da lista, ao contrário do remove() e do element() de uma Deque.
+    // Como a StingyList, a vista não aceita null (lança NullPointerException, como pede o contrato da Deque).
+    public Deque<T> asDeque()
+    {
+        return new StingyDeque();
+    }
+
+    @Override
+    public Spliterator<T> spliterator()
+    {
+        return new StingyListSpliterator(NULL, this.first, 0, this.size);
+    }
+
+    public Stream<T> stream()
+    {
+        return StreamSupport.stream(spliterator(), false);
+    }
+
+    public Stream<T> parallelStream()
+    {
+        return StreamSupport.stream(spliterator(), true);
+    }
+
+    // Spliterator que sabe quantos elementos tem e que se divide andando até ao meio do seu intervalo.
+    // Numa lista XOR bastam os endereços de dois nós adjacentes (prev e atual) para retomar a travessia,
+    // por isso cada metade guarda apenas esse par, a posição e o número de elementos que lhe faltam.
+    private class StingyListSpliterator implements Spliterator<T>{
+
+        private static final int MIN_SPLIT_SIZE = 1024;  //intervalos mais pequenos não compensam ser divididos
+
+        long prevI;
+
+        long i;
+
+        int position;   //posição na lista do nó i
+
+        int remaining;  //número de elementos que faltam percorrer
+
+        StingyListSpliterator(long prevI, long i, int position, int remaining){
+            this.prevI = prevI;
+            this.i = i;
+            this.position = position;
+            this.remaining = remaining;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super T> action) {
+            if(this.remaining == 0){
+                return false;
+            }
+            action.accept(nodes.item(this.i));
+            advance();
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super T> action) {
+            while(this.remaining > 0){
+                action.accept(nodes.item(this.i));
+                advance();
+            }
+        }
+
+        private void advance(){
+            this.remaining--;
+            this.position++;
+            if(this.remaining > 0){
+                long tempPrevI = this.prevI;
+                this.prevI = this.i;
+                this.i = getBeyond(this.i, tempPrevI);
+            }
+        }
+
+        // Fica com a segunda metade do intervalo e devolve um spliterator para a primeira metade.
+        @Override
+        public Spliterator<T> trySplit() {
+            if(this.remaining < MIN_SPLIT_SIZE){
+                return null;
+            }
+            int half = this.remaining / 2;
+            Spliterator<T> prefix = new StingyListSpliterator(this.prevI, this.i, this.position, half);
+            //com índice posicional saltamos diretamente para o meio, senão andamos até lá
+            if(index != null){
+                this.prevI = index.get(this.position + half - 1);
+                this.i = index.get(this.position + half);
+            }
+            else{
+                for(int k = 0; k < half; k++){
+                    long tempPrevI = this.prevI;
+                    this.prevI = this.i;
+                    this.i = getBeyond(this.i, tempPrevI);
+                }
+            }
+            this.position += half;
+            this.remaining -= half;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return this.remaining;
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | SIZED | SUBSIZED | NONNULL;
+        }
+    }
+
+    // Cursor bidirecional (ListIterator). Guarda os endereços dos dois nós entre os quais está (before e after), que é
+    // tudo o que é preciso para andar numa lista XOR em qualquer direção, por isso next, previous, set, add e remove
+    // custam O(1). Assim, editar a lista numa só passagem (filtrar, intercalar inserções, ...) custa O(n) em vez de
+    // O(n^2) com addAt/removeAt. O índice posicional (se existir) é mantido atualizado, e o finger deixa de ser válido
+    // sempre que o cursor altera a lista.
+    // A lista não deve ser alterada por outros meios enquanto o cursor estiver a ser usado.
+    private class StingyListCursor implements ListIterator<T>{
+
+        long before;            //endereço do nó na posição nextIndex-1 (NULL se o cursor estiver no início)
+
+        long after;             //endereço do nó na posição nextIndex (NULL se o cursor estiver no fim)
+
+        int nextIndex;
+
+        long lastReturned;      //nó devolvido pelo último next/previous (NULL se não houver, ou se já foi alterado)
+
+        boolean lastWasNext;
+
+        StingyListCursor(int index){
+            if(index == 0){
+                this.before = NULL;
+                this.after = first;
+            }
+            else if(index == size){
+                this.before = last;
+                this.after = NULL;
+            }
+            else{
+                this.after = seek(index);
+                this.before = finger.prevAddr;
+            }
+            this.nextIndex = index;
+            this.lastReturned = NULL;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return this.after != NULL;
+        }
+
+        @Override
+        public T next() {
+            if(this.after == NULL){
+                throw new NoSuchElementException();
+            }
+            T result = nodes.item(this.after);
+            long tempAfter = getBeyond(this.after, this.before);    //nó seguinte ao after
+            this.before = this.after;
+            this.after = tempAfter;
+            this.nextIndex++;
+            this.lastReturned = this.before;
+            this.lastWasNext = true;
+            return result;
+        }
+
+        @Override
+        public boolean hasPrevious() {
+            return this.before != NULL;
+        }
+
+        @Override
+        public T previous() {
+            if(this.before == NULL){
+                throw new NoSuchElementException();
+            }
+            T result = nodes.item(this.before);
+            long tempBefore = getBeyond(this.before, this.after);   //nó anterior ao before
+            this.after = this.before;
+            this.before = tempBefore;
+            this.nextIndex--;
+            this.lastReturned = this.after;
+            this.lastWasNext = false;
+            return result;
+        }
+
+        @Override
+        public int nextIndex() {
+            return this.nextIndex;
+        }
+
+        @Override
+        public int previousIndex() {
+            return this.nextIndex - 1;
+        }
+
+        //substitui o item devolvido pelo último next/previous
+        @Override
+        public void set(T item) {
+            if(item == null){
+                throw new IllegalArgumentException();
+            }
+            if(this.lastReturned == NULL){
+                throw new IllegalStateException();
+            }
+            //o último devolvido por next está antes do cursor, o devolvido por previous está depois
+            if(containsIndex != null) containsIndex.remove(this.lastReturned, first);
+            if(index != null) index.setItem(this.lastWasNext ? this.nextIndex - 1 : this.nextIndex, item);
+            else nodes.setItem(this.lastReturned, item);
+            if(containsIndex != null) containsIndex.add(this.lastReturned);
+        }
+
+        //insere o item entre before e after; o cursor fica depois do novo nó
+        @Override
+        public void add(T item) {
+            if(item == null){
+                throw new IllegalArgumentException();
+            }
+            long newNode = createNode(item, this.before, this.after);
+            if(this.before != NULL) nodes.relink(this.before, this.after, newNode);
+            else first = newNode;
+            if(this.after != NULL) nodes.relink(this.after, this.before, newNode);
+            else last = newNode;
+            if(index != null) index.insert(this.nextIndex, newNode);
+            if(containsIndex != null) containsIndex.add(newNode);
+            size++;
+            finger.invalidate();
+            this.before = newNode;
+            this.nextIndex++;
+            this.lastReturned = NULL;
+        }
+
+        //remove o nó devolvido pelo último next/previous
+        @Override
+        public void remove() {
+            if(this.lastReturned == NULL){
+                throw new IllegalStateException();
+            }
+            long removed = this.lastReturned;
+            long removedPrev;
+            long removedNext;
+            if(this.lastWasNext){
+                //o nó removido é o before
+                removedNext = this.after;
+                removedPrev = getBeyond(removed, removedNext);
+                this.before = removedPrev;
+                this.nextIndex--;
+            }
+            else{
+                //o nó removido é o after
+                removedPrev = this.before;
+                removedNext = getBeyond(removed, removedPrev);
+                this.after = removedNext;
+            }
+            if(removedPrev != NULL) nodes.relink(removedPrev, removed, removedNext);
+            else first = removedNext;
+            if(removedNext != NULL) nodes.relink(removedNext, removed, removedPrev);
+            else last = removedPrev;
+            freeNode(removed, this.nextIndex);
+            size--;
+            finger.invalidate();
+            this.lastReturned = NULL;
+        }
+    }
+
+    // Vista da lista como Deque (ver asDeque). As operações nas pontas delegam nos métodos da lista (add/remove/get
+    // no fim, addFirst/removeFirst/getFirst no início) e só traduzem as exceções e os valores especiais para os da Deque:
+    // NullPointerException para itens null, NoSuchElementException (ou null nos poll/peek) para a lista vazia.
+    private class StingyDeque extends AbstractCollection<T> implements Deque<T> {
+
+        @Override
+        public void addFirst(T item) {
+            if(item == null){
+                throw new NullPointerException();
+            }
+            StingyList.this.addFirst(item);
+        }
+
+        @Override
+        public void addLast(T item) {
+            if(item == null){
+                throw new NullPointerException();
+            }
+            StingyList.this.add(item);
+        }
+
+        @Override
+        public boolean offerFirst(T item) {
+            addFirst(item);
+            return true;
+        }
+
+        @Override
+        public boolean offerLast(T item) {
+            addLast(item);
+            return true;
+        }
+
+        @Override
+        public T removeFirst() {
+            if(size == 0){
+                throw new NoSuchElementException();
+            }
+            return StingyList.this.removeFirst();
+        }
+
+        @Override
+        public T removeLast() {
+            if(size == 0){
+                throw new NoSuchElementException();
+            }
+            return StingyList.this.remove();
+        }
+
+        @Override
+        public T pollFirst() {
+            return (size == 0) ? null : StingyList.this.removeFirst();
+        }
+
+        @Override
+        public T pollLast() {
+            return (size == 0) ? null : StingyList.this.remove();
+        }
+
+        @Override
+        public T getFirst() {
+            if(size == 0){
+                throw new NoSuchElementException();
+            }
+            return StingyList.this.getFirst();
+        }
+
+        @Override
+        public T getLast() {
+            if(size == 0){
+                throw new NoSuchElementException();
+            }
+            return StingyList.this.get();
+        }
+
+        @Override
+        public T peekFirst() {
+            return (size == 0) ? null : StingyList.this.getFirst();
+        }
+
+        @Override
+        public T peekLast() {
+            return (size == 0) ? null : StingyList.this.get();
+        }
+
+        //com o índice de hash ligado encontra a ocorrência em O(1) esperado; senão percorre a lista a partir do first
+        @Override
+        @SuppressWarnings("unchecked")
+        public boolean removeFirstOccurrence(Object o) {
+            return o != null && StingyList.this.remove((T) o);
+        }
+
+        //percorre a lista a partir do last e remove o nó com o cursor, sem voltar a procurar a posição
+        @Override
+        public boolean removeLastOccurrence(Object o) {
+            if(o == null){
+                return false;
+            }
+            ListIterator<T> cursor = new StingyListCursor(size);
+            while(cursor.hasPrevious()){
+                if(o.equals(cursor.previous())){
+                    cursor.remove();
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public boolean add(T item) {
+            addLast(item);
+            return true;
+        }
+
+        @Override
+        public boolean offer(T item) {
+            return offerLast(item);
+        }
+
+        @Override
+        public T remove() {
+            return removeFirst();
+        }
+
+        @Override
+        public T poll() {
+            return pollFirst();
+        }
+
+        @Override
+        public T element() {
+            return getFirst();
+        }
+
+        @Override
+        public T peek() {
+            return peekFirst();
+        }
+
+        @Override
+        public void push(T item) {
+            addFirst(item);
+        }
+
+        @Override
+        public T pop() {
+            return removeFirst();
+        }
+
+        @Override
+        public boolean remove(Object o) {
+            return removeFirstOccurrence(o);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public boolean contains(Object o) {
+            return o != null && StingyList.this.contains((T) o);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public void clear() {
+            StingyList.this.clear();
+        }
+
+        @Override
+        public Object[] toArray() {
+            return StingyList.this.toArray();
+        }
+
+        @Override
+        public <E> E[] toArray(E[] a) {
+            return StingyList.this.toArray(a);
+        }
+
+        @Override
+        public Iterator<T> iterator() {
+            return new StingyListCursor(0);
+        }
+
+        //anda pela cadeia XOR a partir do last: um cursor posicionado no fim, percorrido com previous
+        @Override
+        public Iterator<T> descendingIterator() {
+            StingyListCursor cursor = new StingyListCursor(size);
+            return new Iterator<T>() {
+                @Override
+                public boolean hasNext() {
+                    return cursor.hasPrevious();
+                }
+
+                @Override
+                public T next() {
+                    return cursor.previous();
+                }
+
+                @Override
+                public void remove() {
+                    cursor.remove();
+                }
+            };
+        }
+
+        @Override
+        public Spliterator<T> spliterator() {
+            return StingyList.this.spliterator();
+        }
+    }
+/*
+    public static StingyList<Integer> generateStingyListExample(int n){
+        Random r = new Random();
+        StingyList<Integer> example = new StingyList<>();
+        for(int i = 0; i < n; i++){
+            example.add(r.nextInt());
+        }
+        return example;
+    }
+
+    public static double calculateAverageExecutionTimeGetSlow(int n){
+        int trials = 30;
+        double totalTime = 0;
+        for(int i = 0; i < trials; i++){
+            StingyList<Integer> exampleList = generateStingyListExample(n);
+            Random r = new Random();
+            int randomI = r.nextInt(0, n);
+            long time = System.currentTimeMillis();
+            exampleList.getSlow(randomI);
+            totalTime += System.currentTimeMillis() - time;
+        }
+        return totalTime/trials;
+    }
+
+    public static double calculateAverageExecutionTimeGet(int n){
+        int trials = 30;
+        double totalTime = 0;
+        for(int i = 0; i < trials; i++){
+            StingyList<Integer> exampleList = generateStingyListExample(n);
+            Random r = new Random();
+            int randomI = r.nextInt(0, n);
+            long time = System.currentTimeMillis();
+            exampleList.get(randomI);
+            totalTime += System.currentTimeMillis() - time;
+        }
+        return totalTime/trials;
+    }
+
+    public static double calculateAverageExecutionTimeReverse(int n){
+        int trials = 30;
+        double totalTime = 0;
+        for(int i = 0; i < trials; i++){
+            StingyList<Integer> exampleList = generateStingyListExample(n);
+            long time = System.currentTimeMillis();
+            exampleList.reverse();
+            totalTime += System.currentTimeMillis() - time;
+        }
+        return totalTime/trials;
+    }
+
+ */
+
+    public static StingyList<Integer> generateExample(int n){
+        Random r = new Random();
+        StingyList<Integer> example = new StingyList<>();
+        for(int i = 0; i < n; i++){
+            example.add(r.nextInt());
+        }
+        return example;
+    }
+
+    //percorre a lista por posições com passos pequenos: get(i), get(i+1), get(i+3), ...
+    public static void sequentialGets(StingyList<Integer> list){
+        for(int i = 0; i < list.size(); i += 1 + (i % 3)){
+            list.get(i);
+        }
+    }
+
+    //soma os elementos com parallelStream() numa ForkJoinPool com 1, 2, 4 e 8 threads.
+    //Mede tempo real (e não tempo de CPU), porque é o débito com várias threads que nos interessa.
+    //Cada soma é comparada com a soma sequencial; uma falha numa thread do pool interrompe o teste.
+    public static void parallelStreamBenchmark(int n) throws InterruptedException, ExecutionException{
+        StingyList<Integer> list = generateExample(n);
+        long expected = list.stream().mapToLong(Integer::longValue).sum();
+        System.out.println("parallelStream().sum(), n = " + n);
+        System.out.println("threads\ttime(ms)\telements/ms\tsum");
+        for(int threads = 1; threads <= 8; threads *= 2){
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            try{
+                long best = Long.MAX_VALUE;
+                long sum = 0;
+                for(int trial = 0; trial < 10; trial++){
+                    long start = System.nanoTime();
+                    sum = pool.submit(() -> list.parallelStream().mapToLong(Integer::longValue).sum()).get();
+                    best = Math.min(best, System.nanoTime() - start);
+                    if(sum != expected){
+                        throw new IllegalStateException("parallelStream().sum() = " + sum + ", esperado " + expected);
+                    }
+                }
+                System.out.println(threads + "\t" + String.format("%08.4f", best / 1E6) + "\t" + String.format("%.1f", n / (best / 1E6)) + "\t" + sum);
+            }
+            finally{
+                pool.shutdown();
+            }
+        }
+    }
+
+    //remove os elementos pares numa só passagem, com o cursor ou com removeAt
+    public static void removeEvensWithCursor(StingyList<Integer> list){
+        ListIterator<Integer> cursor = list.listIterator();
+        while(cursor.hasNext()){
+            if(cursor.next() % 2 == 0) cursor.remove();
+        }
+    }
+
+    public static void removeEvensWithRemoveAt(StingyList<Integer> list){
+        for(int i = 0; i < list.size(); ){
+            if(list.get(i) % 2 == 0) list.removeAt(i);
+            else i++;
+        }
+    }
+
+    //remove 1 em cada 10 elementos (posições 0, 10, 20, ...), numa só passagem ou com removeAt
+    public static void removeEveryTenthWithRemoveAll(StingyList<Integer> list){
+        int[] indices = new int[(list.size() + 9) / 10];
+        for(int k = 0; k < indices.length; k++){
+            indices[k] = 10 * k;
+        }
+        list.removeAll(indices);
+    }
+
+    public static void removeEveryTenthWithRemoveAt(StingyList<Integer> list){
+        for(int i = 10 * ((list.size() - 1) / 10); i >= 0; i -= 10){
+            list.removeAt(i);
+        }
+    }
+
+    //duas listas com n elementos cada, para comparar juntar com appendAll ou com add
+    public static List<StingyList<Integer>> generateListPair(int n){
+        List<StingyList<Integer>> pair = new ArrayList<>();
+        pair.add(generateExample(n));
+        pair.add(generateExample(n));
+        return pair;
+    }
+
+    public static void concatWithAppendAll(List<StingyList<Integer>> pair){
+        pair.get(0).appendAll(pair.get(1));
+    }
+
+    public static void concatWithAdd(List<StingyList<Integer>> pair){
+        StingyList<Integer> target = pair.get(0);
+        for(Integer item : pair.get(1)){
+            target.add(item);
+        }
+        pair.get(1).clear();
+    }
+
+    //usa a lista como fila de trabalho: os n itens entram pela cauda e saem pela cabeça, metade intercalados com
+    //pedidos urgentes que entram pela cabeça. Comparar com uma ArrayDeque, que guarda as referências num array no HEAP.
+    public static void workDequeWithStingyList(Integer[] items){
+        StingyList<Integer> list = new StingyList<>();
+        workDeque(list.asDeque(), items);
+        list.close();
+    }
+
+    public static void workDequeWithArrayDeque(Integer[] items){
+        workDeque(new ArrayDeque<>(), items);
+    }
+
+    private static void workDeque(Deque<Integer> deque, Integer[] items){
+        for(Integer item : items){
+            deque.offerLast(item);
+        }
+        for(int i = 0; i < items.length / 2; i++){
+            Integer item = deque.pollFirst();
+            if((i & 1) == 0) deque.push(item);
+            else deque.pollLast();
+        }
+        while(deque.pollFirst() != null);
+    }
+
+    //ordena os mesmos n Integers aleatórios numa StingyList, numa ArrayList e numa LinkedList.
+    //Os itens são criados e promovidos para a old generation (System.gc()) antes de serem postos na StingyList, para
+    //que as recolhas seguintes não os mudem de sítio. Para n = 10^7 o HEAP tem de ter logo o tamanho todo, para que a
+    //old generation os consiga receber (por exemplo -XX:+UseSerialGC -Xms3g -Xmx3g).
+    public static void sortBenchmark(int n){
+        Random r = new Random();
+        Integer[] items = new Integer[n];
+        for(int i = 0; i < n; i++){
+            items[i] = r.nextInt();
+        }
+        System.gc();
+        StingyList<Integer> stingy = new StingyList<>();
+        for(Integer item : items){
+            stingy.add(item);
+        }
+        long start = System.nanoTime();
+        stingy.sort(null);
+        long stingyTime = System.nanoTime() - start;
+        stingy.close();
+
+        //as outras listas só são criadas depois, para não encherem a old generation durante a ordenação da StingyList
+        ArrayList<Integer> arrayList = new ArrayList<>(Arrays.asList(items));
+        start = System.nanoTime();
+        arrayList.sort(null);
+        long arrayListTime = System.nanoTime() - start;
+        LinkedList<Integer> linkedList = new LinkedList<>(Arrays.asList(items));
+        start = System.nanoTime();
+        linkedList.sort(null);
+        long linkedListTime = System.nanoTime() - start;
+
+        System.out.println(n + "\t" + String.format("%.1f", stingyTime / 1E6) + "\t" + String.format("%.1f", arrayListTime / 1E6) + "\t" + String.format("%.1f", linkedListTime / 1E6));
+    }
+
+    //iteração numa lista acabada de criar (nós seguidos na memória), depois de n addAt/removeAt em posições aleatórias
+    //(os nós reciclados ficam espalhados pelos slabs) e depois de compact(). O tempo é o melhor de 5 iterações.
+    //A lista usa uma HandleNodeStore, em que ler um item é barato, para que o tempo seja sobretudo o de percorrer os
+    //nós. Pela mesma razão a iteração não toca nos itens (nem sequer para os converter em Integer): depois das trocas
+    //os itens ficam por outra ordem e cada acesso a um item iria a um sítio aleatório do HEAP.
+    public static void compactBenchmark(int n){
+        Random r = new Random(42);
+        Integer[] items = UNodeArena.generateItems(n);
+        StingyList<Integer> list = new StingyList<>(new HandleNodeStore());
+        for(Integer item : items){
+            list.add(item);
+        }
+        double fresh = bestIterationTime(list);
+        list.setIndexed(true);
+        for(int i = 0; i < n; i++){
+            list.removeAt(r.nextInt(list.size()));
+            list.addAt(r.nextInt(list.size() + 1), items[i]);
+        }
+        list.setIndexed(false);
+        double churned = bestIterationTime(list);
+        long start = System.nanoTime();
+        list.compact();
+        double compactTime = (System.nanoTime() - start) / 1E6;
+        double compacted = bestIterationTime(list);
+        list.close();
+        System.out.println(n + "\t" + String.format("%.1f", fresh) + "\t" + String.format("%.1f", churned) + "\t" + String.format("%.1f", compactTime) + "\t" + String.format("%.1f", compacted));
+    }
+
+    //soma dos itens percorridos em bestIterationTime, escrita no fim do main para que o ciclo não possa ser eliminado
+    private static long iterationSum = 0;
+
+    private static double bestIterationTime(StingyList<Integer> list){
+        double best = Double.MAX_VALUE;
+        for(int k = 0; k < 5; k++){
+            long start = System.nanoTime();
+            long sum = 0;
+            for(Integer item : list){
+                sum += item;
+            }
+            best = Math.min(best, (System.nanoTime() - start) / 1E6);
+            iterationSum += sum;
+        }
+        return best;
+    }
+
+    public static void main(String args[]) throws InterruptedException, ExecutionException{
+        //com o finger, um ciclo de get(i) por posições próximas deve ter doubling ratio ~2 (linear) em vez de ~4
+        TemporalAnalysisUtils.runDoublingRatioTest("get(i) sequencial", StingyList::generateExample, StingyList::sequentialGets, 1000, 10);
+        //exportar a lista inteira numa só passagem deve ter doubling ratio ~2 (linear)
+        TemporalAnalysisUtils.runDoublingRatioTest("toArray()", StingyList::generateExample, StingyList::toArray, 1000, 10);
+        TemporalAnalysisUtils.runDoublingRatioTest("toArray(Integer[])", StingyList::generateExample, list -> list.toArray(new Integer[0]), 1000, 10);
+        TemporalAnalysisUtils.runDoublingRatioTest("toList()", StingyList::generateExample, StingyList::toList, 1000, 10);
+        //filtrar com o cursor deve ser linear
+        TemporalAnalysisUtils.runDoublingRatioTest("filtrar com o cursor", StingyList::generateExample, StingyList::removeEvensWithCursor, 1000, 10);
+        TemporalAnalysisUtils.runDoublingRatioTest("filtrar com get(i)/removeAt(i)", StingyList::generateExample, StingyList::removeEvensWithRemoveAt, 1000, 10);
+        //remoção em bloco: uma só passagem e uma só libertação dos nós
+        TemporalAnalysisUtils.runDoublingRatioTest("remover 10% com removeAll(int...)", StingyList::generateExample, StingyList::removeEveryTenthWithRemoveAll, 1000, 10);
+        TemporalAnalysisUtils.runDoublingRatioTest("remover 10% com removeAt", StingyList::generateExample, StingyList::removeEveryTenthWithRemoveAt, 1000, 10);
+        //appendAll só liga os nós das pontas e adota os slabs da outra arena: tempo (quase) constante
+        TemporalAnalysisUtils.runDoublingRatioTest("juntar com appendAll", StingyList::generateListPair, StingyList::concatWithAppendAll, 1000, 10);
+        TemporalAnalysisUtils.runDoublingRatioTest("juntar com add", StingyList::generateListPair, StingyList::concatWithAdd, 1000, 10);
+        //todas as operações da Deque são nas pontas: doubling ratio ~2 (linear), tal como a ArrayDeque
+        TemporalAnalysisUtils.runDoublingRatioTest("fila de trabalho com asDeque()", UNodeArena::generateItems, StingyList::workDequeWithStingyList, 1000, 10);
+        TemporalAnalysisUtils.runDoublingRatioTest("fila de trabalho com ArrayDeque", UNodeArena::generateItems, StingyList::workDequeWithArrayDeque, 1000, 10);
+        parallelStreamBenchmark(1_000_000);
+        System.out.println("sort(null)\nn\tStingyList(ms)\tArrayList(ms)\tLinkedList(ms)");
+        sortBenchmark(100_000);     //aquecimento do JIT
+        for(int n = 100_000; n <= 10_000_000; n *= 10){
+            sortBenchmark(n);
+        }
+        System.out.println("iterar antes e depois de compact()\nn\tnova(ms)\tdepois de addAt/removeAt(ms)\tcompact(ms)\tdepois de compact(ms)");
+        compactBenchmark(100_000);  //aquecimento do JIT
+        for(int n = 100_000; n <= 1_000_000; n *= 10){
+            compactBenchmark(n);
+        }
+        System.out.println("soma dos itens percorridos: " + iterationSum);
         /*
         int n = 125;
         //double previousTime = calculateAverageExecutionTimeGetSlow(n);    //test getSlow
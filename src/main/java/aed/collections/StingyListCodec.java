@@ -0,0 +1,70 @@
+package aed.collections;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+// Codec de itens usado pelos snapshots da StingyList (StingyListSnapshot) e pela InlineNodeStore, que o usa para
+// guardar os itens dentro dos nós (InlineNodeStore(codec, itemBytes)).
+// Na InlineNodeStore cada leitura de um item devolve uma cópia nova, descodificada dos bytes do nó. Por isso o índice
+// de hash da StingyList compara essas cópias: com equals funciona desde que o codec preserve o equals/hashCode do
+// item, mas no modo por identidade (==) um item guardado nunca é igual ao item procurado.
+// encode escreve um item no buffer recebido; se o item não couber, basta deixar o buffer lançar a
+// BufferOverflowException, que o snapshot tenta de novo com um buffer maior. decode recebe um buffer cujos bytes
+// restantes são exatamente os que encode escreveu para esse item.
+
+public interface StingyListCodec<T> {
+
+    void encode(T item, ByteBuffer dst);
+
+    T decode(ByteBuffer src);
+
+    StingyListCodec<Long> LONGS = new StingyListCodec<>() {
+        @Override
+        public void encode(Long item, ByteBuffer dst) {
+            dst.putLong(item);
+        }
+
+        @Override
+        public Long decode(ByteBuffer src) {
+            return src.getLong();
+        }
+    };
+
+    StingyListCodec<Integer> INTEGERS = new StingyListCodec<>() {
+        @Override
+        public void encode(Integer item, ByteBuffer dst) {
+            dst.putInt(item);
+        }
+
+        @Override
+        public Integer decode(ByteBuffer src) {
+            return src.getInt();
+        }
+    };
+
+    StingyListCodec<Double> DOUBLES = new StingyListCodec<>() {
+        @Override
+        public void encode(Double item, ByteBuffer dst) {
+            dst.putDouble(item);
+        }
+
+        @Override
+        public Double decode(ByteBuffer src) {
+            return src.getDouble();
+        }
+    };
+
+    StingyListCodec<String> STRINGS = new StingyListCodec<>() {
+        @Override
+        public void encode(String item, ByteBuffer dst) {
+            dst.put(item.getBytes(StandardCharsets.UTF_8));
+        }
+
+        @Override
+        public String decode(ByteBuffer src) {
+            byte[] bytes = new byte[src.remaining()];
+            src.get(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    };
+}
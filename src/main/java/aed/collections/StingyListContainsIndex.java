@@ -0,0 +1,417 @@
+package aed.collections;
+
+import sun.misc.Unsafe;
+
+import java.lang.ref.Cleaner;
+import java.util.Random;
+
+// Índice de contains opcional da StingyList: só responde a contains(item), em O(1) esperado, e não depende do índice
+// posicional (ao contrário do StingyListHashIndex, que precisa da treap do StingyListIndex para saber posições). É
+// uma tabela de dispersão com endereçamento aberto (linear probing) fora do HEAP, com uma posição por item DISTINTO:
+// cada posição guarda o endereço do UNode de um dos elementos com esse item, o "representante" (0 = posição vazia), e
+// o item é lido do nó quando é preciso compará-lo. Os itens são comparados com equals/hashCode, ou por identidade (==).
+//
+// Os itens repetidos não ocupam posições da tabela: contam-se numa 2.ª tabela, também fora do HEAP, indexada pelo
+// endereço do representante, que só tem entradas (16 bytes: endereço e contagem) para os itens com mais de uma
+// ocorrência. Remover um elemento que não é o representante, ou o último do seu item, é O(1); remover o representante
+// de um item repetido obriga a encontrar outro elemento com o mesmo item para o substituir, percorrendo a lista desde
+// o início (O(n) no pior caso, mas só até ao primeiro igual).
+//
+// Memória: 8 bytes por posição da tabela, que com uma ocupação máxima de 3/4 dá entre 10,7 bytes por item distinto
+// (tabela quase cheia) e 21,3 (tabela acabada de crescer); com itens repetidos, mais 21 a 43 bytes por item repetido
+// (e não por ocorrência). Um índice vazio não tem memória fora do HEAP: as tabelas só são reservadas no primeiro add.
+//
+// As remoções das duas tabelas usam backward shift deletion, por isso nunca ficam com lápides.
+
+class StingyListContainsIndex {
+
+    //representamos null como o long 0L.
+    private static final long NULL = 0L;
+    private static final Unsafe UNSAFE = UnsafeHelper.getUnsafe();
+    private static final Cleaner CLEANER = Cleaner.create();
+    private static final int MIN_CAPACITY = 16;
+    private static final long SLOT_BYTES = 8L;
+    private static final long COUNT_SLOT_BYTES = 16L;    //endereço do representante e contagem
+    private static final long COUNT_OFFSET = 8L;
+
+    private final UNodeStore nodes;
+    private final boolean byIdentity;
+    private final Tables tables;    //memória das tabelas (num objeto à parte para o Cleaner não depender do índice)
+    private int capacity;           //potência de 2 (0 sem tabela)
+    private int shift;              //32 - log2(capacity)
+    private int size;               //número de itens distintos
+    private int countCapacity;      //potência de 2 (0 sem tabela de contagens)
+    private int countShift;         //64 - log2(countCapacity)
+    private int countSize;          //número de itens com mais de uma ocorrência
+
+    StingyListContainsIndex(UNodeStore nodes, boolean byIdentity)
+    {
+        this.nodes = nodes;
+        this.byIdentity = byIdentity;
+        this.tables = new Tables();
+        CLEANER.register(this, this.tables);
+    }
+
+    boolean isByIdentity()
+    {
+        return this.byIdentity;
+    }
+
+    // Regista o nó addr (que já tem o item).
+    void add(long addr)
+    {
+        if(this.capacity == 0){
+            install(reserve(MIN_CAPACITY, SLOT_BYTES), MIN_CAPACITY);
+        }
+        Object item = this.nodes.item(addr);
+        int j = find(item);
+        //Caso em que o item é novo: addr passa a ser o seu representante
+        if(j < 0){
+            if(this.size + 1 > this.capacity / 4 * 3){
+                resize(this.capacity * 2);
+                j = find(item);
+            }
+            setSlot(~j, addr);
+            this.size++;
+        }
+        //Caso em que o item já existe: só conta mais uma ocorrência
+        else{
+            long rep = slot(j);
+            setCount(rep, count(rep) + 1);
+        }
+    }
+
+    // Retira o nó addr, que ainda tem de ter o item com que foi registado. Se addr for o representante de um item
+    // repetido, o novo representante é procurado na lista a partir de first (sem passar por addr), por isso first
+    // tem de ser o primeiro nó de uma lista terminada em NULL dos dois lados.
+    void remove(long addr, long first)
+    {
+        Object item = this.nodes.item(addr);
+        int j = find(item);
+        long rep = slot(j);
+        int count = count(rep);
+        //Caso em que addr era o único com este item: o item sai da tabela
+        if(count == 1){
+            removeSlot(j);
+            return;
+        }
+        if(addr != rep){
+            setCount(rep, count - 1);
+            return;
+        }
+        //Caso em que addr era o representante: passa a ser o primeiro outro nó da lista com o mesmo item
+        long other = first;
+        long prevAddr = NULL;
+        while(other == addr || !matches(this.nodes.item(other), item)){
+            long tempAddr = other;
+            other = this.nodes.links(tempAddr) ^ prevAddr;
+            prevAddr = tempAddr;
+        }
+        setCount(rep, 1);
+        setSlot(j, other);
+        setCount(other, count - 1);
+    }
+
+    boolean contains(Object item)
+    {
+        return this.capacity != 0 && find(item) >= 0;
+    }
+
+    // Esvazia o índice e liberta as tabelas (o próximo add volta a reservá-las).
+    void clear()
+    {
+        release();
+    }
+
+    // Liberta a memória das tabelas.
+    void release()
+    {
+        this.tables.run();
+        this.capacity = 0;
+        this.shift = 0;
+        this.size = 0;
+        this.countCapacity = 0;
+        this.countShift = 0;
+        this.countSize = 0;
+    }
+
+    // Memória fora do HEAP ocupada pelas duas tabelas, em bytes.
+    long memoryBytes()
+    {
+        return this.capacity * SLOT_BYTES + this.countCapacity * COUNT_SLOT_BYTES;
+    }
+
+    //Procura o item na tabela. Devolve a posição do seu representante, ou ~j (negativo) se não existir, sendo j a
+    //posição vazia onde teria de ser inserido.
+    private int find(Object item)
+    {
+        int mask = this.capacity - 1;
+        for(int j = home(hash(item)); ; j = (j + 1) & mask){
+            long rep = slot(j);
+            if(rep == NULL) return ~j;
+            if(matches(this.nodes.item(rep), item)) return j;
+        }
+    }
+
+    //tira a posição j da tabela
+    private void removeSlot(int j)
+    {
+        int mask = this.capacity - 1;
+        //backward shift: puxamos para o buraco as entradas seguintes que não ficariam alcançáveis a partir da sua casa
+        int hole = j;
+        int k = j;
+        while(true){
+            k = (k + 1) & mask;
+            long rep = slot(k);
+            if(rep == NULL){
+                break;
+            }
+            int h = home(hash(this.nodes.item(rep)));
+            //rep pode ir para o buraco se a sua casa h não estiver (circularmente) entre hole (exclusive) e k (inclusive)
+            boolean reachable = (hole <= k) ? (h > hole && h <= k) : (h > hole || h <= k);
+            if(!reachable){
+                setSlot(hole, rep);
+                hole = k;
+            }
+        }
+        setSlot(hole, NULL);
+        this.size--;
+    }
+
+    private boolean matches(Object candidate, Object item)
+    {
+        return this.byIdentity ? candidate == item : item.equals(candidate);
+    }
+
+    private int hash(Object item)
+    {
+        return this.byIdentity ? System.identityHashCode(item) : item.hashCode();
+    }
+
+    //dispersão multiplicativa (Fibonacci hashing): usa os bits de cima do produto
+    private int home(int hash)
+    {
+        return (hash * 0x9E3779B9) >>> this.shift;
+    }
+
+    private void resize(int newCapacity)
+    {
+        long oldAddr = this.tables.addr;
+        int oldCapacity = this.capacity;
+        //a tabela nova é reservada antes de a antiga deixar de estar nas Tables: se a reserva falhar, o índice fica
+        //como estava e a tabela antiga continua a ser libertada por release ou pelo Cleaner
+        install(reserve(newCapacity, SLOT_BYTES), newCapacity);
+        int mask = newCapacity - 1;
+        for(int j = 0; j < oldCapacity; j++){
+            long rep = UNSAFE.getLong(oldAddr + j * SLOT_BYTES);
+            if(rep != NULL){
+                int k = home(hash(this.nodes.item(rep)));
+                while(slot(k) != NULL){
+                    k = (k + 1) & mask;
+                }
+                setSlot(k, rep);
+            }
+        }
+        UNSAFE.freeMemory(oldAddr);
+        UNodeMemoryStats.bytesReleased(oldCapacity * SLOT_BYTES);
+    }
+
+    //reserva capacity posições de slotBytes bytes, todas vazias, e devolve o endereço da tabela
+    private static long reserve(int capacity, long slotBytes)
+    {
+        long bytes = capacity * slotBytes;
+        long addr = UNSAFE.allocateMemory(bytes);
+        UNSAFE.setMemory(addr, bytes, (byte) 0);
+        UNodeMemoryStats.bytesReserved(bytes);
+        UNodeMemoryStats.updatePeak();
+        return addr;
+    }
+
+    //a tabela em addr passa a ser a tabela do índice
+    private void install(long addr, int capacity)
+    {
+        this.tables.addr = addr;
+        this.tables.bytes = capacity * SLOT_BYTES;
+        this.capacity = capacity;
+        this.shift = 32 - Integer.numberOfTrailingZeros(capacity);
+    }
+
+    private long slot(int j)
+    {
+        return UNSAFE.getLong(this.tables.addr + j * SLOT_BYTES);
+    }
+
+    private void setSlot(int j, long rep)
+    {
+        UNSAFE.putLong(this.tables.addr + j * SLOT_BYTES, rep);
+    }
+
+    //Tabela das contagens: endereço do representante -> número de ocorrências do seu item (só se for maior que 1)
+
+    //número de ocorrências do item cujo representante é rep
+    private int count(long rep)
+    {
+        if(this.countSize == 0){
+            return 1;
+        }
+        int j = findCount(rep);
+        return (j < 0) ? 1 : UNSAFE.getInt(countSlot(j) + COUNT_OFFSET);
+    }
+
+    //muda o número de ocorrências do item cujo representante é rep (com count 1 a entrada sai da tabela)
+    private void setCount(long rep, int count)
+    {
+        int j = (this.countSize == 0) ? ~0 : findCount(rep);
+        if(count == 1){
+            if(j >= 0) removeCount(j);
+            return;
+        }
+        if(j < 0){
+            if(this.countSize + 1 > this.countCapacity / 4 * 3){
+                resizeCounts(Math.max(MIN_CAPACITY, this.countCapacity * 2));
+            }
+            j = ~findCount(rep);
+            UNSAFE.putLong(countSlot(j), rep);
+            this.countSize++;
+        }
+        UNSAFE.putInt(countSlot(j) + COUNT_OFFSET, count);
+    }
+
+    //posição de rep na tabela das contagens, ou ~j se não existir (j é a posição vazia onde teria de ser inserido)
+    private int findCount(long rep)
+    {
+        int mask = this.countCapacity - 1;
+        for(int j = countHome(rep); ; j = (j + 1) & mask){
+            long e = UNSAFE.getLong(countSlot(j));
+            if(e == NULL) return ~j;
+            if(e == rep) return j;
+        }
+    }
+
+    private void removeCount(int j)
+    {
+        int mask = this.countCapacity - 1;
+        int hole = j;
+        int k = j;
+        while(true){
+            k = (k + 1) & mask;
+            long e = UNSAFE.getLong(countSlot(k));
+            if(e == NULL){
+                break;
+            }
+            int h = countHome(e);
+            boolean reachable = (hole <= k) ? (h > hole && h <= k) : (h > hole || h <= k);
+            if(!reachable){
+                UNSAFE.copyMemory(countSlot(k), countSlot(hole), COUNT_SLOT_BYTES);
+                hole = k;
+            }
+        }
+        UNSAFE.setMemory(countSlot(hole), COUNT_SLOT_BYTES, (byte) 0);
+        this.countSize--;
+    }
+
+    //os endereços dos nós estão alinhados (e, em algumas stores, são índices pequenos): a dispersão de 64 bits usa
+    //os bits de cima do produto, que dependem de todos os bits do endereço
+    private int countHome(long rep)
+    {
+        return (int) ((rep * 0x9E3779B97F4A7C15L) >>> this.countShift);
+    }
+
+    private long countSlot(int j)
+    {
+        return this.tables.counts + j * COUNT_SLOT_BYTES;
+    }
+
+    private void resizeCounts(int newCapacity)
+    {
+        long oldAddr = this.tables.counts;
+        int oldCapacity = this.countCapacity;
+        long newAddr = reserve(newCapacity, COUNT_SLOT_BYTES);
+        this.tables.counts = newAddr;
+        this.tables.countBytes = newCapacity * COUNT_SLOT_BYTES;
+        this.countCapacity = newCapacity;
+        this.countShift = 64 - Integer.numberOfTrailingZeros(newCapacity);
+        int mask = newCapacity - 1;
+        for(int j = 0; j < oldCapacity; j++){
+            long e = UNSAFE.getLong(oldAddr + j * COUNT_SLOT_BYTES);
+            if(e != NULL){
+                int k = countHome(e);
+                while(UNSAFE.getLong(countSlot(k)) != NULL){
+                    k = (k + 1) & mask;
+                }
+                UNSAFE.copyMemory(oldAddr + j * COUNT_SLOT_BYTES, countSlot(k), COUNT_SLOT_BYTES);
+            }
+        }
+        if(oldAddr != 0L){
+            UNSAFE.freeMemory(oldAddr);
+            UNodeMemoryStats.bytesReleased(oldCapacity * COUNT_SLOT_BYTES);
+        }
+    }
+
+    // Memória das duas tabelas. É também a ação do Cleaner, por isso não pode ter referências para o índice.
+    private static class Tables implements Runnable {
+
+        private long addr = 0L;
+        private long bytes = 0L;
+        private long counts = 0L;
+        private long countBytes = 0L;
+
+        @Override
+        public void run()
+        {
+            if(this.addr != 0L){
+                UNSAFE.freeMemory(this.addr);
+                UNodeMemoryStats.bytesReleased(this.bytes);
+                this.addr = 0L;
+                this.bytes = 0L;
+            }
+            if(this.counts != 0L){
+                UNSAFE.freeMemory(this.counts);
+                UNodeMemoryStats.bytesReleased(this.countBytes);
+                this.counts = 0L;
+                this.countBytes = 0L;
+            }
+        }
+    }
+
+    //Benchmark: contains de valores aleatórios (quase todos ausentes) com o índice de contains, e memória por
+    //elemento do índice de contains e do índice de hash (que inclui o índice posicional no HEAP)
+
+    private static final Random R = new Random();
+    private static final int QUERIES = 1000;
+
+    public static StingyList<Integer> generateExample(int n)
+    {
+        StingyList<Integer> example = new StingyList<>(new HandleNodeStore());
+        for(int i = 0; i < n; i++){
+            example.add(R.nextInt());
+        }
+        example.setContainsIndexed(true, false);
+        return example;
+    }
+
+    public static void randomContains(StingyList<Integer> list)
+    {
+        for(int k = 0; k < QUERIES; k++){
+            list.contains(R.nextInt());
+        }
+    }
+
+    public static void main(String[] args)
+    {
+        TemporalAnalysisUtils.runDoublingRatioTest("contains com índice de contains", StingyListContainsIndex::generateExample, StingyListContainsIndex::randomContains, 1000, 10);
+
+        System.out.println("n\tíndice de contains (bytes/elemento, fora)\tíndice de hash (bytes/elemento, fora)\tíndice posicional (bytes/elemento, HEAP)");
+        //n em potências de 10, para apanhar a tabela em vários pontos entre acabada de crescer e quase cheia
+        for(int n = 1000; n <= 1_000_000; n *= 10){
+            StingyList<Integer> list = generateExample(n);
+            long containsBytes = list.hashIndexMemoryBytes();
+            list.setHashIndexed(true, false);
+            long hashBytes = list.hashIndexMemoryBytes();
+            long indexBytes = list.indexMemoryBytes();
+            System.out.println(n + "\t" + String.format("%.2f", (double) containsBytes / n) + "\t" + String.format("%.2f", (double) hashBytes / n)
+                    + "\t" + String.format("%.2f", (double) indexBytes / n));
+            list.close();
+        }
+    }
+}
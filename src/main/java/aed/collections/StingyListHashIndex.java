@@ -0,0 +1,409 @@
+package aed.collections;
+
+import sun.misc.Unsafe;
+
+import java.lang.ref.Cleaner;
+import java.util.Random;
+
+// Índice de hash opcional da StingyList, para contains em O(1) esperado e indexOf/remove(item) em O(1) esperado mais
+// O(log n) para saber a posição. É uma tabela de dispersão com endereçamento aberto (linear probing) guardada fora do
+// HEAP, com uma entrada por item DISTINTO: os itens iguais (por equals, ou por == no modo por identidade) não ocupam
+// posições diferentes da tabela, ficam numa cadeia, por isso muitos repetidos não formam um aglomerado de colisões e
+// add/remove/contains não dependem do número de repetidos.
+//
+// Os nós da treap do StingyListIndex (que sabe o endereço do UNode de cada elemento e, com os ponteiros para o pai, a
+// sua posição) são identificados por números t. Cada posição da tabela é um int com o t da cabeça da cadeia dos
+// elementos com esse item (0 = posição vazia). A cadeia é uma lista duplamente ligada circular de ts, pela ordem da
+// árvore, guardada num 2.º bloco fora do HEAP com dois ints (next e prev) por número de nó da treap. Como a cadeia
+// está pela ordem da árvore, a primeira ocorrência de um item é a cabeça da cadeia (ou a cauda, prev da cabeça, com a
+// lista invertida), e indexOf só calcula uma posição.
+//
+// Custos: acrescentar um repetido no início ou no fim da cadeia (add/addFirst, ou a ordem da lista ao ligar o índice)
+// e remover qualquer elemento são O(1); só inserir um repetido entre dois outros iguais (addAt no meio) anda pela
+// cadeia até ao sítio certo. Memória: 8 bytes por elemento (a cadeia) mais 4 bytes por posição da tabela, que com uma
+// ocupação máxima de 3/4 dá entre 5,3 e 10,7 bytes por item distinto.
+//
+// As remoções da tabela usam backward shift deletion, por isso a tabela nunca fica com lápides.
+// É mantido pelo StingyListIndex (em insert, delete, clear, splitOff e setItem), por isso só existe com o índice
+// posicional ligado, que custa mais cerca de 28 bytes por elemento no HEAP. Quem só precisa de contains deve usar o
+// StingyListContainsIndex, que não depende do índice posicional.
+
+class StingyListHashIndex {
+
+    private static final Unsafe UNSAFE = UnsafeHelper.getUnsafe();
+    private static final Cleaner CLEANER = Cleaner.create();
+    private static final int MIN_CAPACITY = 16;
+    private static final long SLOT_BYTES = 4L;
+    private static final long LINK_BYTES = 8L;     //next e prev de um nó da treap na sua cadeia
+    private static final long PREV_OFFSET = 4L;
+
+    private final StingyListIndex index;
+    private final boolean byIdentity;
+    private final Table table;  //memória da tabela e das cadeias (num objeto à parte para o Cleaner não depender do índice)
+    private int capacity;       //potência de 2
+    private int shift;          //32 - log2(capacity)
+    private int size;           //número de itens distintos
+    private int linkCapacity;   //número de nós da treap que cabem no bloco das cadeias
+
+    StingyListHashIndex(StingyListIndex index, boolean byIdentity, int expectedSize)
+    {
+        this.index = index;
+        this.byIdentity = byIdentity;
+        this.table = new Table();
+        CLEANER.register(this, this.table);
+        int capacity = MIN_CAPACITY;
+        while(capacity * 3 / 4 < expectedSize){
+            capacity *= 2;
+        }
+        allocate(capacity);
+        this.size = 0;
+        this.linkCapacity = 0;
+        growLinks(expectedSize + 1);
+    }
+
+    boolean isByIdentity()
+    {
+        return this.byIdentity;
+    }
+
+    // Regista o nó t da treap (cujo UNode já tem o item e que já está na árvore, na sua posição).
+    void add(int t)
+    {
+        int j = find(itemOf(t));
+        if(j < 0){
+            addDistinct(t, ~j);
+            return;
+        }
+        int head = slot(j);
+        int tail = prev(head);
+        int k = this.index.treePosition(t);
+        //Caso em que t fica depois de todos os iguais (o mais comum: add no fim da lista)
+        if(k > this.index.treePosition(tail)){
+            link(t, tail, head);
+        }
+        //Caso em que t fica antes de todos os iguais: passa a ser a cabeça
+        else if(k < this.index.treePosition(head)){
+            link(t, tail, head);
+            setSlot(j, t);
+        }
+        //Caso em que t fica entre dois iguais: procuramos o primeiro que fica depois dele
+        else{
+            int e = next(head);
+            while(this.index.treePosition(e) < k){
+                e = next(e);
+            }
+            link(t, prev(e), e);
+        }
+    }
+
+    // Regista o nó t da treap sabendo que fica depois de todos os nós já registados (usado para ligar o índice, que
+    // percorre a árvore por ordem), sem calcular posições.
+    void append(int t)
+    {
+        int j = find(itemOf(t));
+        if(j < 0){
+            addDistinct(t, ~j);
+        }
+        else{
+            int head = slot(j);
+            link(t, prev(head), head);
+        }
+    }
+
+    // Retira o nó t da treap do índice. Tem de ser chamado enquanto o UNode ainda tem o item com que t foi registado.
+    void remove(int t)
+    {
+        int j = find(itemOf(t));
+        int next = next(t);
+        //Caso em que t era o único com este item: o item sai da tabela
+        if(next == t){
+            removeSlot(j);
+            return;
+        }
+        int prev = prev(t);
+        setNext(prev, next);
+        setPrev(next, prev);
+        if(slot(j) == t){
+            setSlot(j, next);
+        }
+    }
+
+    boolean contains(Object item)
+    {
+        return find(item) >= 0;
+    }
+
+    // Devolve a menor posição da lista com um item igual a item, ou -1 se não houver nenhum.
+    int indexOf(Object item)
+    {
+        int j = find(item);
+        if(j < 0){
+            return -1;
+        }
+        int head = slot(j);
+        //invertida, a primeira ocorrência na lista é a última pela ordem da árvore
+        return this.index.position(this.index.isReversed() ? prev(head) : head);
+    }
+
+    void clear()
+    {
+        release();
+        allocate(MIN_CAPACITY);
+        this.size = 0;
+        this.linkCapacity = 0;
+        growLinks(MIN_CAPACITY);
+    }
+
+    // Liberta a memória da tabela e das cadeias (o índice de hash deixa de poder ser usado).
+    void release()
+    {
+        this.table.run();
+    }
+
+    // Memória fora do HEAP ocupada pela tabela e pelas cadeias, em bytes.
+    long memoryBytes()
+    {
+        return this.capacity * SLOT_BYTES + this.linkCapacity * LINK_BYTES;
+    }
+
+    //Procura o item na tabela. Devolve a posição da tabela com a sua cadeia, ou ~j (negativo) se não existir, sendo
+    //j a posição vazia onde teria de ser inserido.
+    private int find(Object item)
+    {
+        int mask = this.capacity - 1;
+        for(int j = home(hash(item)); ; j = (j + 1) & mask){
+            int e = slot(j);
+            if(e == 0) return ~j;
+            if(matches(itemOf(e), item)) return j;
+        }
+    }
+
+    //t é o primeiro nó com o seu item: fica numa cadeia só com ele, na posição vazia j da tabela
+    private void addDistinct(int t, int j)
+    {
+        ensureLink(t);
+        setNext(t, t);
+        setPrev(t, t);
+        if(this.size + 1 > this.capacity / 4 * 3){
+            resize(this.capacity * 2);
+            j = ~find(itemOf(t));
+        }
+        setSlot(j, t);
+        this.size++;
+    }
+
+    //liga t à cadeia entre prev e next (que são vizinhos na cadeia)
+    private void link(int t, int prev, int next)
+    {
+        ensureLink(t);
+        setNext(t, next);
+        setPrev(t, prev);
+        setNext(prev, t);
+        setPrev(next, t);
+    }
+
+    //tira a posição j da tabela
+    private void removeSlot(int j)
+    {
+        int mask = this.capacity - 1;
+        //backward shift: puxamos para o buraco as entradas seguintes que não ficariam alcançáveis a partir da sua casa
+        int hole = j;
+        int k = j;
+        while(true){
+            k = (k + 1) & mask;
+            int e = slot(k);
+            if(e == 0){
+                break;
+            }
+            int h = home(hash(itemOf(e)));
+            //e pode ir para o buraco se a sua casa h não estiver (circularmente) entre hole (exclusive) e k (inclusive)
+            boolean reachable = (hole <= k) ? (h > hole && h <= k) : (h > hole || h <= k);
+            if(!reachable){
+                setSlot(hole, e);
+                hole = k;
+            }
+        }
+        setSlot(hole, 0);
+        this.size--;
+    }
+
+    private boolean matches(Object candidate, Object item)
+    {
+        return this.byIdentity ? candidate == item : item.equals(candidate);
+    }
+
+    private Object itemOf(int t)
+    {
+        return this.index.item(this.index.nodeAddr(t));
+    }
+
+    private int hash(Object item)
+    {
+        return this.byIdentity ? System.identityHashCode(item) : item.hashCode();
+    }
+
+    //dispersão multiplicativa (Fibonacci hashing): usa os bits de cima do produto
+    private int home(int hash)
+    {
+        return (hash * 0x9E3779B9) >>> this.shift;
+    }
+
+    private void resize(int newCapacity)
+    {
+        long oldAddr = this.table.addr;
+        int oldCapacity = this.capacity;
+        //a tabela nova é reservada antes de a antiga deixar de estar na Table: se a reserva falhar, o índice fica como
+        //estava e a tabela antiga continua a ser libertada por release ou pelo Cleaner
+        install(reserve(newCapacity), newCapacity);
+        int mask = newCapacity - 1;
+        for(int j = 0; j < oldCapacity; j++){
+            int e = UNSAFE.getInt(oldAddr + j * SLOT_BYTES);
+            if(e != 0){
+                int k = home(hash(itemOf(e)));
+                while(slot(k) != 0){
+                    k = (k + 1) & mask;
+                }
+                setSlot(k, e);
+            }
+        }
+        UNSAFE.freeMemory(oldAddr);
+        UNodeMemoryStats.bytesReleased(oldCapacity * SLOT_BYTES);
+    }
+
+    private void allocate(int capacity)
+    {
+        install(reserve(capacity), capacity);
+    }
+
+    //reserva uma tabela com capacity posições, todas vazias, e devolve o seu endereço
+    private static long reserve(int capacity)
+    {
+        long bytes = capacity * SLOT_BYTES;
+        long addr = UNSAFE.allocateMemory(bytes);
+        UNSAFE.setMemory(addr, bytes, (byte) 0);
+        UNodeMemoryStats.bytesReserved(bytes);
+        UNodeMemoryStats.updatePeak();
+        return addr;
+    }
+
+    //a tabela em addr passa a ser a tabela do índice
+    private void install(long addr, int capacity)
+    {
+        this.table.addr = addr;
+        this.table.bytes = capacity * SLOT_BYTES;
+        this.capacity = capacity;
+        this.shift = 32 - Integer.numberOfTrailingZeros(capacity);
+    }
+
+    private void ensureLink(int t)
+    {
+        if(t >= this.linkCapacity){
+            growLinks(Math.max(t + 1, this.linkCapacity * 2));
+        }
+    }
+
+    //aumenta o bloco das cadeias para capacity nós da treap (o conteúdo antigo é mantido por reallocateMemory)
+    private void growLinks(int capacity)
+    {
+        long bytes = capacity * LINK_BYTES;
+        this.table.links = UNSAFE.reallocateMemory(this.table.links, bytes);
+        UNodeMemoryStats.bytesReleased(this.table.linkBytes);
+        UNodeMemoryStats.bytesReserved(bytes);
+        UNodeMemoryStats.updatePeak();
+        this.table.linkBytes = bytes;
+        this.linkCapacity = capacity;
+    }
+
+    private int slot(int j)
+    {
+        return UNSAFE.getInt(this.table.addr + j * SLOT_BYTES);
+    }
+
+    private void setSlot(int j, int t)
+    {
+        UNSAFE.putInt(this.table.addr + j * SLOT_BYTES, t);
+    }
+
+    private int next(int t)
+    {
+        return UNSAFE.getInt(this.table.links + t * LINK_BYTES);
+    }
+
+    private int prev(int t)
+    {
+        return UNSAFE.getInt(this.table.links + t * LINK_BYTES + PREV_OFFSET);
+    }
+
+    private void setNext(int t, int next)
+    {
+        UNSAFE.putInt(this.table.links + t * LINK_BYTES, next);
+    }
+
+    private void setPrev(int t, int prev)
+    {
+        UNSAFE.putInt(this.table.links + t * LINK_BYTES + PREV_OFFSET, prev);
+    }
+
+    // Memória da tabela e das cadeias. É também a ação do Cleaner, por isso não pode ter referências para o índice.
+    private static class Table implements Runnable {
+
+        private long addr = 0L;
+        private long bytes = 0L;
+        private long links = 0L;
+        private long linkBytes = 0L;
+
+        @Override
+        public void run()
+        {
+            if(this.addr != 0L){
+                UNSAFE.freeMemory(this.addr);
+                UNodeMemoryStats.bytesReleased(this.bytes);
+                this.addr = 0L;
+                this.bytes = 0L;
+            }
+            if(this.links != 0L){
+                UNSAFE.freeMemory(this.links);
+                UNodeMemoryStats.bytesReleased(this.linkBytes);
+                this.links = 0L;
+                this.linkBytes = 0L;
+            }
+        }
+    }
+
+    //Benchmark: contains de valores aleatórios (quase todos ausentes, o pior caso de uma pesquisa sequencial),
+    //com e sem índice de hash
+
+    private static final Random R = new Random();
+    private static final int QUERIES = 1000;
+
+    public static StingyList<Integer> generateExample(int n, boolean hashed)
+    {
+        StingyList<Integer> example = new StingyList<>();
+        for(int i = 0; i < n; i++){
+            example.add(R.nextInt());
+        }
+        example.setHashIndexed(hashed, false);
+        return example;
+    }
+
+    public static void randomContains(StingyList<Integer> list)
+    {
+        for(int k = 0; k < QUERIES; k++){
+            list.contains(R.nextInt());
+        }
+    }
+
+    public static void main(String[] args)
+    {
+        TemporalAnalysisUtils.runDoublingRatioTest("contains sem índice de hash", n -> generateExample(n, false), StingyListHashIndex::randomContains, 1000, 6);
+        TemporalAnalysisUtils.runDoublingRatioTest("contains com índice de hash", n -> generateExample(n, true), StingyListHashIndex::randomContains, 1000, 10);
+
+        System.out.println("n\tnós (bytes)\tíndice de hash, tabela e cadeias (bytes)\tbytes por elemento");
+        for(int n = 1000; n <= 1_024_000; n *= 4){
+            StingyList<Integer> list = generateExample(n, true);
+            long bytes = list.hashIndexMemoryBytes();
+            System.out.println(n + "\t" + (16L * n) + "\t" + bytes + "\t" + String.format("%.2f", (double) bytes / n));
+            list.close();
+        }
+    }
+}
@@ -0,0 +1,464 @@
+package aed.collections;
+
+import java.util.Arrays;
+import java.util.Random;
+
+// Índice posicional opcional para a StingyList: uma treap implícita (árvore de pesquisa balanceada aleatoriamente em
+// que a "chave" de cada nó é a sua posição, dada pelo tamanho das subárvores) que guarda os endereços dos UNodes pela
+// ordem da lista. Com ela, encontrar o endereço do nó na posição i, inserir e remover numa posição custa O(log n)
+// (esperado) em vez de O(n).
+//
+// A árvore é guardada em arrays paralelos (o índice 0 representa a árvore vazia), por isso não cria um objeto por nó:
+//   left/right/parent (4+4+4 bytes), count (4 bytes), priority (4 bytes) e o endereço do UNode (8 bytes) = 28 bytes
+// por elemento, mais a folga dos arrays, que crescem para o dobro quando enchem. Com os ponteiros para o pai também
+// conseguimos saber em O(log n) a posição de um nó da árvore, o que é usado pelo índice de hash opcional
+// (StingyListHashIndex), que é mantido aqui sempre que a árvore muda.
+//
+// O índice não mexe nos UNodes: a lista continua a ter nós de 16 bytes. Cabe à StingyList mantê-lo sincronizado
+// em todas as operações que alteram a sequência de nós.
+
+class StingyListIndex {
+
+    private static final int INITIAL_CAPACITY = 16;
+    private static final long BYTES_PER_SLOT = 4L + 4L + 4L + 4L + 4L + 8L;
+
+    private int[] left;
+    private int[] right;
+    private int[] parent;       //pai de cada nó (0 para a raiz)
+    private int[] count;        //número de nós da subárvore
+    private int[] priority;
+    private long[] addr;        //endereço do UNode guardado neste nó da árvore
+    private int root;
+    private int used;           //número de posições dos arrays já usadas alguma vez
+    private int freeSlot;       //primeira posição livre para reciclar (as livres estão ligadas através de left)
+    private boolean reversed;   //se true, a posição i da lista corresponde à posição size-1-i da árvore
+    private int seed;
+    private StingyListHashIndex hash;   //índice de hash opcional (null se estiver desligado)
+
+    private final UNodeStore nodes;     //store onde estão os nós da lista (para ler e trocar os seus itens)
+
+    //resultados do último split
+    private int splitLeft;
+    private int splitRight;
+
+    StingyListIndex(UNodeStore nodes)
+    {
+        this(nodes, INITIAL_CAPACITY);
+    }
+
+    //Cria um índice vazio com lugar para capacity-1 nós antes de ter de crescer.
+    private StingyListIndex(UNodeStore nodes, int capacity)
+    {
+        this.nodes = nodes;
+        this.left = new int[capacity];
+        this.right = new int[capacity];
+        this.parent = new int[capacity];
+        this.count = new int[capacity];
+        this.priority = new int[capacity];
+        this.addr = new long[capacity];
+        this.root = 0;
+        this.used = 1;  //a posição 0 está reservada para a árvore vazia
+        this.freeSlot = 0;
+        this.reversed = false;
+        this.seed = 0x2545F491;
+    }
+
+    int size()
+    {
+        return this.count[this.root];
+    }
+
+    // Devolve o endereço do nó na posição i da lista.
+    long get(int i)
+    {
+        return this.addr[slotAt(i)];
+    }
+
+    // Devolve o nó da árvore na posição i da lista.
+    private int slotAt(int i)
+    {
+        int k = this.reversed ? size() - 1 - i : i;
+        int t = this.root;
+        while(true){
+            int leftCount = this.count[this.left[t]];
+            if(k < leftCount){
+                t = this.left[t];
+            }
+            else if(k == leftCount){
+                return t;
+            }
+            else{
+                k -= leftCount + 1;
+                t = this.right[t];
+            }
+        }
+    }
+
+    // Regista que o nó nodeAddr passou a ocupar a posição i da lista (os nós a partir de i avançam uma posição).
+    void insert(int i, long nodeAddr)
+    {
+        int k = this.reversed ? size() - i : i;
+        int t = newSlot(nodeAddr);
+        split(this.root, k);
+        int rightPart = this.splitRight;
+        this.root = merge(merge(this.splitLeft, t), rightPart);
+        this.parent[this.root] = 0;
+        if(this.hash != null) this.hash.add(t);
+    }
+
+    // Regista que o nó da posição i saiu da lista. Devolve o endereço desse nó.
+    long delete(int i)
+    {
+        int k = this.reversed ? size() - 1 - i : i;
+        split(this.root, k);
+        int leftPart = this.splitLeft;
+        split(this.splitRight, 1);
+        int removed = this.splitLeft;
+        long result = this.addr[removed];
+        if(this.hash != null) this.hash.remove(removed);
+        this.root = merge(leftPart, this.splitRight);
+        this.parent[this.root] = 0;
+        freeSlot(removed);
+        return result;
+    }
+
+    // Tira deste índice as posições i..size()-1 da lista e devolve um novo índice só com elas, pela mesma ordem (para a
+    // lista criada por StingyList.splitAt). A árvore é cortada com um único split, O(log n), e a parte cortada é
+    // copiada tal como está (forma e prioridades) para os arrays do novo índice, em O(size()-i), em vez de apagar e
+    // voltar a inserir cada posição. Se o índice de hash estiver ligado, os nós cortados passam para o do novo índice.
+    StingyListIndex splitOff(int i)
+    {
+        int n = size();
+        StingyListIndex result = new StingyListIndex(this.nodes, Math.max(INITIAL_CAPACITY, n - i + 1));
+        int moved;
+        //invertida, a posição i da lista é a posição n-1-i da árvore: o fim da lista é o início da árvore
+        if(!this.reversed){
+            split(this.root, i);
+            this.root = this.splitLeft;
+            moved = this.splitRight;
+        }
+        else{
+            split(this.root, n - i);
+            this.root = this.splitRight;
+            moved = this.splitLeft;
+        }
+        this.parent[this.root] = 0;
+        result.reversed = this.reversed;
+        result.root = result.copyFrom(this, moved);
+        result.parent[result.root] = 0;
+        if(this.hash != null) result.enableHash(this.hash.isByIdentity());
+        return result;
+    }
+
+    //Copia a subárvore t de other para este índice (com as mesmas prioridades) e devolve o novo nó da raiz. Os nós
+    //copiados saem de other (da sua tabela de hash e para a lista de posições livres).
+    private int copyFrom(StingyListIndex other, int t)
+    {
+        if(t == 0){
+            return 0;
+        }
+        int leftCopy = copyFrom(other, other.left[t]);
+        int rightCopy = copyFrom(other, other.right[t]);
+        int copy = newSlot(other.addr[t]);
+        this.priority[copy] = other.priority[t];
+        this.left[copy] = leftCopy;
+        this.right[copy] = rightCopy;
+        update(copy);
+        if(other.hash != null) other.hash.remove(t);
+        other.freeSlot(t);
+        return copy;
+    }
+
+    // Inverter a lista não muda a árvore, apenas a forma como as posições são lidas.
+    void reverse()
+    {
+        this.reversed = !this.reversed;
+    }
+
+    boolean isReversed()
+    {
+        return this.reversed;
+    }
+
+    void clear()
+    {
+        this.left = new int[INITIAL_CAPACITY];
+        this.right = new int[INITIAL_CAPACITY];
+        this.parent = new int[INITIAL_CAPACITY];
+        this.count = new int[INITIAL_CAPACITY];
+        this.priority = new int[INITIAL_CAPACITY];
+        this.addr = new long[INITIAL_CAPACITY];
+        this.root = 0;
+        this.used = 1;
+        this.freeSlot = 0;
+        this.reversed = false;
+        if(this.hash != null) this.hash.clear();
+    }
+
+    // Endereço do UNode guardado no nó t da árvore.
+    long nodeAddr(int t)
+    {
+        return this.addr[t];
+    }
+
+    // Posição na lista do nó t da árvore: os nós à esquerda de t, mais os nós à esquerda de cada antepassado de que t
+    // descende pela direita. O(log n) esperado.
+    int position(int t)
+    {
+        int k = treePosition(t);
+        return this.reversed ? size() - 1 - k : k;
+    }
+
+    // Posição do nó t pela ordem da árvore (a da lista se não estiver invertida).
+    int treePosition(int t)
+    {
+        int k = this.count[this.left[t]];
+        while(t != this.root){
+            int p = this.parent[t];
+            if(this.right[p] == t){
+                k += this.count[this.left[p]] + 1;
+            }
+            t = p;
+        }
+        return k;
+    }
+
+    // Liga o índice de hash (com os itens que já estão na lista), comparando os itens com equals/hashCode ou por
+    // identidade. Se já estava ligado com o outro modo, é reconstruído.
+    void enableHash(boolean byIdentity)
+    {
+        if(this.hash != null){
+            if(this.hash.isByIdentity() == byIdentity) return;
+            disableHash();
+        }
+        this.hash = new StingyListHashIndex(this, byIdentity, size());
+        //percorremos a árvore por ordem, para que cada nó fique no fim da cadeia do seu item (sem calcular posições)
+        int t = this.root;
+        while(this.left[t] != 0){
+            t = this.left[t];
+        }
+        while(t != 0){
+            this.hash.append(t);
+            t = successor(t);
+        }
+    }
+
+    //nó seguinte a t pela ordem da árvore (0 se t for o último)
+    private int successor(int t)
+    {
+        if(this.right[t] != 0){
+            t = this.right[t];
+            while(this.left[t] != 0){
+                t = this.left[t];
+            }
+            return t;
+        }
+        while(t != this.root){
+            int p = this.parent[t];
+            if(this.left[p] == t){
+                return p;
+            }
+            t = p;
+        }
+        return 0;
+    }
+
+    void disableHash()
+    {
+        if(this.hash != null){
+            this.hash.release();
+            this.hash = null;
+        }
+    }
+
+    boolean isHashed()
+    {
+        return this.hash != null;
+    }
+
+    boolean isHashedByIdentity()
+    {
+        return this.hash != null && this.hash.isByIdentity();
+    }
+
+    boolean contains(Object item)
+    {
+        return this.hash.contains(item);
+    }
+
+    int indexOf(Object item)
+    {
+        return this.hash.indexOf(item);
+    }
+
+    // Troca o item guardado no nó da posição i da lista, mantendo o índice de hash atualizado. O(log n).
+    void setItem(int i, Object item)
+    {
+        int t = slotAt(i);
+        //o nó sai da tabela com o item antigo e volta a entrar com o novo
+        if(this.hash != null) this.hash.remove(t);
+        this.nodes.setItem(this.addr[t], item);
+        if(this.hash != null) this.hash.add(t);
+    }
+
+    // Item guardado no nó nodeAddr da lista.
+    Object item(long nodeAddr)
+    {
+        return this.nodes.item(nodeAddr);
+    }
+
+    // Memória fora do HEAP ocupada pelo índice de hash, em bytes (0 se estiver desligado).
+    long hashMemoryBytes()
+    {
+        return this.hash != null ? this.hash.memoryBytes() : 0L;
+    }
+
+    // Memória (no HEAP) ocupada pelos arrays do índice, em bytes.
+    long memoryBytes()
+    {
+        return this.addr.length * BYTES_PER_SLOT;
+    }
+
+    //Divide a árvore t em duas: splitLeft com as primeiras k posições e splitRight com as restantes.
+    private void split(int t, int k)
+    {
+        if(t == 0){
+            this.splitLeft = 0;
+            this.splitRight = 0;
+            return;
+        }
+        if(k <= this.count[this.left[t]]){
+            split(this.left[t], k);
+            this.left[t] = this.splitRight;
+            update(t);
+            this.splitRight = t;
+        }
+        else{
+            split(this.right[t], k - this.count[this.left[t]] - 1);
+            this.right[t] = this.splitLeft;
+            update(t);
+            this.splitLeft = t;
+        }
+    }
+
+    //Junta duas árvores, ficando todas as posições de a antes das de b.
+    private int merge(int a, int b)
+    {
+        if(a == 0) return b;
+        if(b == 0) return a;
+        if(this.priority[a] > this.priority[b]){
+            this.right[a] = merge(this.right[a], b);
+            update(a);
+            return a;
+        }
+        else{
+            this.left[b] = merge(a, this.left[b]);
+            update(b);
+            return b;
+        }
+    }
+
+    private void update(int t)
+    {
+        this.count[t] = this.count[this.left[t]] + this.count[this.right[t]] + 1;
+        this.parent[this.left[t]] = t;     //o pai da árvore vazia (posição 0) não é usado
+        this.parent[this.right[t]] = t;
+    }
+
+    private int newSlot(long nodeAddr)
+    {
+        int t;
+        if(this.freeSlot != 0){
+            t = this.freeSlot;
+            this.freeSlot = this.left[t];
+        }
+        else{
+            if(this.used == this.addr.length){
+                grow();
+            }
+            t = this.used++;
+        }
+        this.left[t] = 0;
+        this.right[t] = 0;
+        this.count[t] = 1;
+        this.priority[t] = nextPriority();
+        this.addr[t] = nodeAddr;
+        return t;
+    }
+
+    private void freeSlot(int t)
+    {
+        this.left[t] = this.freeSlot;
+        this.count[t] = 0;
+        this.freeSlot = t;
+    }
+
+    private void grow()
+    {
+        int capacity = this.addr.length * 2;
+        this.left = Arrays.copyOf(this.left, capacity);
+        this.right = Arrays.copyOf(this.right, capacity);
+        this.parent = Arrays.copyOf(this.parent, capacity);
+        this.count = Arrays.copyOf(this.count, capacity);
+        this.priority = Arrays.copyOf(this.priority, capacity);
+        this.addr = Arrays.copyOf(this.addr, capacity);
+    }
+
+    //xorshift: gera as prioridades aleatórias da treap sem criar objetos
+    private int nextPriority()
+    {
+        int x = this.seed;
+        x ^= x << 13;
+        x ^= x >>> 17;
+        x ^= x << 5;
+        this.seed = x;
+        return x;
+    }
+
+    //Relatório memória/latência: get(i) e addAt/removeAt aleatórios com e sem índice
+
+    private static final Random R = new Random();
+    private static final int OPERATIONS = 1000;
+
+    public static StingyList<Integer> generateExample(int n, boolean indexed)
+    {
+        StingyList<Integer> example = new StingyList<>();
+        example.setIndexed(indexed);
+        for(int i = 0; i < n; i++){
+            example.add(R.nextInt());
+        }
+        return example;
+    }
+
+    public static void randomGets(StingyList<Integer> list)
+    {
+        for(int k = 0; k < OPERATIONS; k++){
+            list.get(R.nextInt(list.size()));
+        }
+    }
+
+    public static void randomAddRemoveAts(StingyList<Integer> list)
+    {
+        for(int k = 0; k < OPERATIONS; k++){
+            list.addAt(R.nextInt(list.size() + 1), k);
+            list.removeAt(R.nextInt(list.size()));
+        }
+    }
+
+    public static void main(String[] args)
+    {
+        TemporalAnalysisUtils.runDoublingRatioTest("get(i) sem índice", n -> generateExample(n, false), StingyListIndex::randomGets, 1000, 8);
+        TemporalAnalysisUtils.runDoublingRatioTest("get(i) com índice", n -> generateExample(n, true), StingyListIndex::randomGets, 1000, 8);
+        TemporalAnalysisUtils.runDoublingRatioTest("addAt/removeAt sem índice", n -> generateExample(n, false), StingyListIndex::randomAddRemoveAts, 1000, 8);
+        TemporalAnalysisUtils.runDoublingRatioTest("addAt/removeAt com índice", n -> generateExample(n, true), StingyListIndex::randomAddRemoveAts, 1000, 8);
+
+        System.out.println("n\tnós (bytes)\tíndice (bytes)\tadd sem índice (ms)\tadd com índice (ms)");
+        for(int n = 1000; n <= 1_024_000; n *= 4){
+            int size = n;
+            StingyList<Integer> indexed = generateExample(size, true);
+            long addPlain = TemporalAnalysisUtils.getAverageCPUTime(() -> generateExample(size, false), 5);
+            long addIndexed = TemporalAnalysisUtils.getAverageCPUTime(() -> generateExample(size, true), 5);
+            System.out.println(n + "\t" + (16L * n) + "\t" + indexed.indexMemoryBytes() + "\t" + String.format("%.3f", addPlain / 1E6) + "\t" + String.format("%.3f", addIndexed / 1E6));
+        }
+    }
+}
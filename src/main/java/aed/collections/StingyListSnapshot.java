@@ -0,0 +1,273 @@
+package aed.collections;
+
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+import java.util.zip.CRC32C;
+
+// Snapshot de uma StingyList em ficheiro, e reconstrução rápida da lista a partir desse ficheiro.
+//
+// Formato (versão 1, inteiros em big endian):
+//
+//   ,-------------+-------------+-------------+----------------+------------+----------.
+//   | magic (int) | versão (int)| n.º itens   | bytes de dados | CRC32C dos | reservado|
+//   | "STGY"      |             | (long)      | (long)         | dados (int)| (int)    |
+//   `-------------+-------------+-------------+----------------+------------+----------'
+//   seguido de n registos, pela ordem da lista: | tamanho (int) | bytes escritos pelo codec |
+//
+// A escrita percorre a lista uma vez e escreve os registos por um FileChannel em blocos grandes; o cabeçalho
+// (com o checksum) é escrito no fim. A leitura mapeia o ficheiro em memória (MappedByteBuffer), em janelas, e
+// constrói a lista numa só passagem com StingyList.addAllBulk, que corta todos os nós de um único bloco contíguo
+// da arena e liga os XORs em sequência, sem um allocateMemory por elemento. O checksum é verificado durante essa
+// mesma passagem; se não bater certo, a lista é libertada e é lançada uma IOException.
+// read(file, codec, nodes) constrói a lista numa UNodeStore dada (por exemplo uma InlineNodeStore ou uma
+// CompactNodeStore) em vez da ArenaNodeStore por omissão.
+
+public final class StingyListSnapshot {
+
+    private static final int MAGIC = 0x53544759;    //"STGY"
+    public static final int VERSION = 1;
+    private static final int HEADER_SIZE = 32;
+    private static final int BUFFER_SIZE = 1 << 20;
+    private static final long WINDOW_SIZE = 1L << 28;   //tamanho de cada janela mapeada (256 MB)
+
+    private StingyListSnapshot()
+    {
+    }
+
+    public static <T> void write(StingyList<T> list, Path file, StingyListCodec<? super T> codec) throws IOException
+    {
+        try(FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING))
+        {
+            ByteBuffer out = ByteBuffer.allocateDirect(BUFFER_SIZE);
+            ByteBuffer item = ByteBuffer.allocate(256);
+            CRC32C crc = new CRC32C();
+            long payloadBytes = 0;
+            channel.position(HEADER_SIZE);
+
+            for(T element : list){
+                //codifica o item, aumentando o buffer auxiliar enquanto o item não couber
+                while(true){
+                    item.clear();
+                    try{
+                        codec.encode(element, item);
+                        break;
+                    }
+                    catch(BufferOverflowException e){
+                        item = ByteBuffer.allocate(item.capacity() * 2);
+                    }
+                }
+                item.flip();
+                int length = item.remaining();
+                if(out.remaining() < 4 + length){
+                    flush(channel, out, crc);
+                }
+                //registos maiores do que o buffer de saída são escritos diretamente
+                if(out.remaining() < 4 + length){
+                    ByteBuffer big = ByteBuffer.allocate(4 + length);
+                    big.putInt(length).put(item).flip();
+                    crc.update(big.duplicate());
+                    writeFully(channel, big);
+                }
+                else{
+                    out.putInt(length).put(item);
+                }
+                payloadBytes += 4 + length;
+            }
+            flush(channel, out, crc);
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC).putInt(VERSION).putLong(list.size()).putLong(payloadBytes).putInt((int) crc.getValue()).putInt(0);
+            header.flip();
+            while(header.hasRemaining()){
+                channel.write(header, header.position());
+            }
+            channel.force(true);
+        }
+    }
+
+    public static <T> StingyList<T> read(Path file, StingyListCodec<T> codec) throws IOException
+    {
+        return read(file, codec, new ArenaNodeStore(new UNodeArena()));
+    }
+
+    public static <T> StingyList<T> read(Path file, StingyListCodec<T> codec, UNodeStore nodes) throws IOException
+    {
+        try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ))
+        {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            while(header.hasRemaining()){
+                if(channel.read(header, header.position()) < 0){
+                    throw new IOException("Truncated StingyList snapshot header");
+                }
+            }
+            header.flip();
+            if(header.getInt() != MAGIC){
+                throw new IOException("Not a StingyList snapshot: " + file);
+            }
+            int version = header.getInt();
+            if(version != VERSION){
+                throw new IOException("Unsupported StingyList snapshot version " + version);
+            }
+            long count = header.getLong();
+            long payloadBytes = header.getLong();
+            int expectedCrc = header.getInt();
+            if(count < 0 || count > Integer.MAX_VALUE || payloadBytes < 0 || HEADER_SIZE + payloadBytes != channel.size()){
+                throw new IOException("Corrupted StingyList snapshot header");
+            }
+
+            StingyList<T> list = new StingyList<>(nodes);
+            RecordReader<T> reader = new RecordReader<>(channel, codec, HEADER_SIZE + payloadBytes);
+            try{
+                list.addAllBulk((int) count, reader::next);
+            }
+            catch(RuntimeException e){
+                list.close();
+                throw new IOException("Corrupted StingyList snapshot: " + e, e);
+            }
+            if(reader.position != HEADER_SIZE + payloadBytes || (int) reader.crc.getValue() != expectedCrc){
+                list.close();
+                throw new IOException("StingyList snapshot checksum mismatch: " + file);
+            }
+            return list;
+        }
+    }
+
+    private static void flush(FileChannel channel, ByteBuffer out, CRC32C crc) throws IOException
+    {
+        out.flip();
+        crc.update(out.duplicate());
+        writeFully(channel, out);
+        out.clear();
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException
+    {
+        while(buffer.hasRemaining()){
+            channel.write(buffer);
+        }
+    }
+
+    // Lê os registos do ficheiro mapeado em memória, uma janela de cada vez, e vai atualizando o checksum.
+    private static class RecordReader<T> {
+
+        final FileChannel channel;
+        final StingyListCodec<T> codec;
+        final long end;
+        final CRC32C crc;
+        MappedByteBuffer window;
+        long position;  //posição no ficheiro do próximo registo
+
+        RecordReader(FileChannel channel, StingyListCodec<T> codec, long end)
+        {
+            this.channel = channel;
+            this.codec = codec;
+            this.end = end;
+            this.crc = new CRC32C();
+            this.window = null;
+            this.position = HEADER_SIZE;
+        }
+
+        T next()
+        {
+            try{
+                if(this.window == null || this.window.remaining() < 4){
+                    remap(4);
+                }
+                int start = this.window.position();
+                int length = this.window.getInt(start);
+                if(length < 0 || this.position + 4 + length > this.end){
+                    throw new IllegalStateException("invalid record length " + length);
+                }
+                if(this.window.remaining() < 4 + length){
+                    remap(4 + length);
+                    start = 0;
+                }
+                //o codec vê apenas os bytes do registo (sem criar um buffer por registo)
+                this.window.limit(start + 4 + length).position(start + 4);
+                T item = this.codec.decode(this.window);
+                this.window.limit(this.window.capacity()).position(start + 4 + length);
+                this.position += 4 + length;
+                if(this.position == this.end){
+                    checksumWindow();
+                }
+                return item;
+            }
+            catch(IOException e){
+                throw new IllegalStateException(e);
+            }
+        }
+
+        //mapeia uma nova janela a começar no próximo registo, com pelo menos minBytes
+        private void remap(long minBytes) throws IOException
+        {
+            long size = Math.min(Math.max(WINDOW_SIZE, minBytes), this.end - this.position);
+            if(size < minBytes){
+                throw new IllegalStateException("truncated record");
+            }
+            checksumWindow();
+            this.window = this.channel.map(FileChannel.MapMode.READ_ONLY, this.position, size);
+        }
+
+        //atualiza o checksum com os registos já lidos da janela atual
+        private void checksumWindow()
+        {
+            if(this.window != null){
+                this.crc.update(this.window.slice(0, this.window.position()));
+            }
+        }
+    }
+
+    //Benchmark: escrever e reconstruir uma lista de n longs, comparando com reconstruí-la com add
+
+    public static void main(String[] args) throws IOException
+    {
+        int n = 2_000_000;
+        Random r = new Random();
+        Long[] items = new Long[n];
+        StingyList<Long> list = new StingyList<>();
+        for(int i = 0; i < n; i++){
+            items[i] = r.nextLong();
+            list.add(items[i]);
+        }
+        Path file = Files.createTempFile("stingy", ".snapshot");
+        try{
+            //várias rondas, para que as últimas já não incluam o tempo de compilação do JIT
+            for(int round = 1; round <= 3; round++){
+                long start = System.nanoTime();
+                write(list, file, StingyListCodec.LONGS);
+                long writeTime = System.nanoTime() - start;
+
+                start = System.nanoTime();
+                StingyList<Long> restored = read(file, StingyListCodec.LONGS);
+                long readTime = System.nanoTime() - start;
+
+                start = System.nanoTime();
+                StingyList<Long> rebuilt = new StingyList<>();
+                for(Long item : items){
+                    rebuilt.add(item);
+                }
+                long addTime = System.nanoTime() - start;
+
+                long fileBytes = Files.size(file);
+                System.out.println("ronda " + round + ": n = " + n + ", ficheiro com " + fileBytes + " bytes");
+                System.out.println("write (com fsync): " + String.format("%.1f", writeTime / 1E6) + " ms (" + String.format("%.1f", fileBytes / (writeTime / 1E9) / 1E6) + " MB/s)");
+                System.out.println("read:  " + String.format("%.1f", readTime / 1E6) + " ms (" + String.format("%.1f", fileBytes / (readTime / 1E9) / 1E6) + " MB/s)");
+                System.out.println("add:   " + String.format("%.1f", addTime / 1E6) + " ms");
+                System.out.println("restored.size() = " + restored.size() + ", último = " + restored.get() + " (esperado " + items[n-1] + ")");
+                restored.close();
+                rebuilt.close();
+            }
+        }
+        finally{
+            list.close();
+            Files.deleteIfExists(file);
+        }
+    }
+}
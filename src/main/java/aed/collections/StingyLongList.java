@@ -0,0 +1,139 @@
+package aed.collections;
+
+import java.util.PrimitiveIterator;
+import java.util.Random;
+import java.util.function.LongConsumer;
+import java.util.stream.LongStream;
+
+// Lista sovina de longs: cada elemento é guardado diretamente no nó de 16 bytes fora do HEAP, sem caixas Long.
+// Nenhuma operação de add/get aloca memória no HEAP.
+
+public class StingyLongList extends StingyPrimitiveList {
+
+    public StingyLongList()
+    {
+        super();
+    }
+
+    public void addLong(long value)
+    {
+        addRaw(value);
+    }
+
+    public void addLongAt(int i, long value)
+    {
+        addAtRaw(i, value);
+    }
+
+    public long removeLong()
+    {
+        return removeRaw();
+    }
+
+    public long removeLongAt(int i)
+    {
+        return removeAtRaw(i);
+    }
+
+    public long getLong()
+    {
+        return getRaw();
+    }
+
+    public long getLong(int i)
+    {
+        return getRaw(i);
+    }
+
+    public void setLong(int i, long value)
+    {
+        setRaw(i, value);
+    }
+
+    public long[] toArray()
+    {
+        return rawStream().toArray();
+    }
+
+    public void forEach(LongConsumer action)
+    {
+        forEachRaw(action);
+    }
+
+    public PrimitiveIterator.OfLong iterator()
+    {
+        return new StingyLongListIterator();
+    }
+
+    public LongStream stream()
+    {
+        return rawStream();
+    }
+
+    private class StingyLongListIterator extends RawIterator implements PrimitiveIterator.OfLong{
+
+        @Override
+        public long nextLong() {
+            return nextRaw();
+        }
+    }
+
+    //Comparação com StingyList<Long>: adicionar n longs e somá-los com get(i) sequencial
+
+    private static final Random R = new Random();
+
+    public static long[] generateValues(int n)
+    {
+        long[] values = new long[n];
+        for(int i = 0; i < n; i++){
+            values[i] = R.nextLong();
+        }
+        return values;
+    }
+
+    //soma de todos os valores lidos nos testes, escrita no fim do main para que as leituras não possam ser eliminadas
+    private static long benchmarkSum = 0;
+
+    public static void addAndSumPrimitive(long[] values)
+    {
+        StingyLongList list = new StingyLongList();
+        for(long value : values){
+            list.addLong(value);
+        }
+        long sum = 0;
+        for(int i = 0; i < list.size(); i++){
+            sum += list.getLong(i);
+        }
+        benchmarkSum += sum;
+        list.clear();
+    }
+
+    public static void addAndSumBoxed(long[] values)
+    {
+        StingyList<Long> list = new StingyList<>();
+        for(long value : values){
+            list.add(value);
+        }
+        long sum = 0;
+        for(int i = 0; i < list.size(); i++){
+            sum += list.get(i);
+        }
+        benchmarkSum += sum;
+        list.clear();
+    }
+
+    //Nota: a StingyList<Long> guarda os endereços das caixas Long, que o garbage collector pode mover ou recolher
+    //durante o teste. Para a comparação correr até ao fim convém usar um young generation grande (ex: -Xmn2g).
+    public static void main(String[] args)
+    {
+        TemporalAnalysisUtils.runDoublingRatioTest("StingyLongList addLong + getLong(i)", StingyLongList::generateValues, StingyLongList::addAndSumPrimitive, 1000, 10);
+        TemporalAnalysisUtils.runDoublingRatioTest("StingyList<Long> add + get(i)", StingyLongList::generateValues, StingyLongList::addAndSumBoxed, 1000, 10);
+        System.out.println("soma dos valores lidos: " + benchmarkSum);
+
+        StingyLongList list = new StingyLongList();
+        for(int i = 0; i < 1_000_000; i++){
+            list.addLong(i);
+        }
+        System.out.println("1000000 longs: " + list.nativeMemoryBytes() + " bytes fora do HEAP, soma = " + list.stream().sum());
+    }
+}
@@ -0,0 +1,685 @@
+package aed.collections;
+
+import sun.misc.Unsafe;
+
+import java.lang.ref.Cleaner;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Objects;
+import java.util.Random;
+
+// Mapa de chaves long para objetos em que a tabela de dispersão fica fora do HEAP, para usar em vez de uma
+// HashMap<Long, V>: em vez de um nó (32 bytes) e de um Long (16 bytes) por entrada no HEAP, cada entrada gasta uma
+// posição de 16 bytes numa tabela fora do HEAP e uma referência para o valor no HEAP.
+// Não implementa Map: tem get, put, remove, containsKey e forEach com chaves long (sem caixas), mas não tem vistas
+// (keySet, values, entrySet) nem iteradores.
+//
+// Cada posição da tabela tem a chave (8 bytes), o hash da chave (4 bytes) e o handle do valor (4 bytes): o handle é a
+// posição do valor numa tabela de referências no HEAP, como na HandleNodeStore (0 = posição vazia). A tabela usa
+// endereçamento aberto com sondagem linear, ocupação máxima de 3/4, dispersão multiplicativa (Fibonacci hashing) e
+// backward shift deletion, como o StingyListHashIndex. O hash guardado são os 32 bits de cima de chave * 2^64/phi, e a
+// casa de uma chave são os bits de cima do hash, por isso mudar de tamanho não precisa de voltar a calcular nada.
+//
+// A tabela cresce de forma incremental, para que nenhum put pare para copiar a tabela toda: quando enche, é reservada
+// uma tabela com o dobro do tamanho, as entradas novas vão para ela, e cada put ou remove muda MIGRATE_STEP posições
+// da tabela antiga para a nova (por ordem). Enquanto isso, as pesquisas veem primeiro a tabela nova e depois a antiga.
+// As posições já mudadas e as entradas removidas da tabela antiga ficam como lápides (handle TOMBSTONE), porque a
+// tabela antiga não pode ter entradas a mudar de posição por baixo da migração; a tabela antiga é libertada quando a
+// migração chega ao fim, bem antes de a tabela nova encher (com MIGRATE_STEP = 4, a migração acaba ao fim de
+// capacidade antiga / 4 operações, e a tabela nova só enche ao fim de 3/4 da capacidade antiga).
+// Pôr a zero uma tabela grande também demora (cerca de 100 ms para 256 MB), por isso a tabela seguinte é reservada
+// quando a atual chega a meio e cada put que acrescenta uma entrada põe ZERO_STEP posições dela a zero: quando a
+// tabela atual enche, a seguinte já está pronta.
+// Os valores estão em blocos de VALUE_CHUNK referências, que também nunca são copiados.
+//
+// Os valores não podem ser null. Tal como a arena, regista-se num Cleaner que liberta a memória fora do HEAP se o
+// mapa deixar de ser alcançável sem ter sido fechado, mas a memória deve ser libertada com clear() ou close(). Um mapa
+// vazio (acabado de criar, limpo ou fechado) não tem memória fora do HEAP: a primeira tabela só é reservada no put.
+// Não é thread-safe.
+
+public class StingyLongMap<V> implements AutoCloseable {
+
+    private static final Unsafe UNSAFE = UnsafeHelper.getUnsafe();
+    private static final Cleaner CLEANER = Cleaner.create();
+
+    //handles de uma posição da tabela: 0 = vazia, TOMBSTONE = lápide (só na tabela antiga)
+    private static final int EMPTY = 0;
+    private static final int TOMBSTONE = -1;
+
+    private static final long SLOT_BYTES = 16L;
+    private static final long HASH_OFFSET = 8L;
+    private static final long HANDLE_OFFSET = 12L;
+    private static final int MIN_CAPACITY = 16;
+    private static final int MAX_CAPACITY = 1 << 30;
+    static final int MIGRATE_STEP = 4;
+    static final int ZERO_STEP = 16;    //de 1/2 a 3/4 de ocupação há capacidade/4 puts para pôr 2*capacidade posições a zero
+
+    private static final int CHUNK_SHIFT = 14;
+    private static final int VALUE_CHUNK = 1 << CHUNK_SHIFT;   //16384 referências por bloco
+    private static final int CHUNK_MASK = VALUE_CHUNK - 1;
+
+    private final Memory memory;    //tabelas fora do HEAP (num objeto à parte para o Cleaner não depender do mapa)
+
+    private long tableAddr;         //o mesmo que memory.table (0L enquanto o mapa não tiver tabela)
+    private int capacity;           //potência de 2
+    private int shift;              //32 - log2(capacity)
+
+    private long oldAddr;           //tabela antiga durante uma migração (0L se não houver), o mesmo que memory.old
+    private int oldCapacity;
+    private int oldShift;
+    private int migrated;           //posições da tabela antiga já mudadas para a nova
+
+    private long nextAddr;          //tabela seguinte, reservada a partir de meia ocupação (0L se não houver), o mesmo que memory.next
+    private int nextCapacity;
+    private int zeroedSlots;        //posições da tabela seguinte já postas a zero
+
+    private Object[][] values;      //valor do handle h no bloco (h-1) >>> CHUNK_SHIFT
+    private int usedHandles;        //handles já usados alguma vez (os handles 1..usedHandles)
+    private int[][] freeHandles;    //pilha de handles libertados, também em blocos
+    private int freeCount;
+
+    private int size;               //entradas nas duas tabelas
+
+    public StingyLongMap()
+    {
+        this.memory = new Memory();
+        CLEANER.register(this, this.memory);
+        reset();
+    }
+
+    // Devolve o valor da chave, ou null se a chave não estiver no mapa.
+    public V get(long key)
+    {
+        int handle = findHandle(key, hash(key));
+        return (handle != EMPTY) ? value(handle) : null;
+    }
+
+    public boolean containsKey(long key)
+    {
+        return findHandle(key, hash(key)) != EMPTY;
+    }
+
+    // Associa o valor à chave e devolve o valor anterior, ou null se a chave não estava no mapa.
+    public V put(long key, V value)
+    {
+        if(value == null){
+            throw new IllegalArgumentException("Value cannot be null");
+        }
+        if(this.tableAddr == 0L){
+            reserveNext(MIN_CAPACITY);
+            installNext();
+        }
+        if(this.oldAddr != 0L){
+            migrate();
+        }
+        int hash = hash(key);
+        int handle = findHandle(key, hash);
+        if(handle != EMPTY){
+            V old = value(handle);
+            setValue(handle, value);
+            return old;
+        }
+        if(this.size >= (this.capacity >>> 2) * 3){
+            startResize();
+        }
+        else if(this.nextAddr != 0L){
+            zeroNext(ZERO_STEP);
+        }
+        else if(this.oldAddr == 0L && this.size >= (this.capacity >>> 1) && this.capacity < MAX_CAPACITY){
+            reserveNext(this.capacity * 2);
+        }
+        insertSlot(this.tableAddr, this.capacity, this.shift, key, hash, acquire(value));
+        this.size++;
+        return null;
+    }
+
+    // Tira a chave do mapa e devolve o seu valor, ou null se a chave não estiver no mapa.
+    public V remove(long key)
+    {
+        if(this.tableAddr == 0L){
+            return null;
+        }
+        if(this.oldAddr != 0L){
+            migrate();
+        }
+        int hash = hash(key);
+        int j = find(this.tableAddr, this.capacity, this.shift, key, hash);
+        int handle;
+        if(j >= 0){
+            handle = handle(this.tableAddr, j);
+            deleteSlot(j);
+        }
+        else{
+            j = (this.oldAddr != 0L) ? find(this.oldAddr, this.oldCapacity, this.oldShift, key, hash) : -1;
+            if(j < 0){
+                return null;
+            }
+            handle = handle(this.oldAddr, j);
+            UNSAFE.putInt(this.oldAddr + j * SLOT_BYTES + HANDLE_OFFSET, TOMBSTONE);
+        }
+        V value = value(handle);
+        release(handle);
+        this.size--;
+        return value;
+    }
+
+    public int size()
+    {
+        return this.size;
+    }
+
+    public boolean isEmpty()
+    {
+        return this.size == 0;
+    }
+
+    // Recebe cada entrada do mapa em forEach.
+    public interface EntryConsumer<V> {
+        void accept(long key, V value);
+    }
+
+    // Passa cada entrada do mapa à ação, sem ordem definida: primeiro as da tabela atual e depois, durante uma
+    // migração, as da tabela antiga que ainda não foram mudadas (as posições antes de migrated já são todas lápides).
+    // O mapa não pode ser alterado pela ação.
+    public void forEach(EntryConsumer<? super V> action)
+    {
+        forEachSlot(this.tableAddr, 0, this.capacity, action);
+        if(this.oldAddr != 0L){
+            forEachSlot(this.oldAddr, this.migrated, this.oldCapacity, action);
+        }
+    }
+
+    private void forEachSlot(long table, int from, int to, EntryConsumer<? super V> action)
+    {
+        for(int j = from; j < to; j++){
+            long slot = table + j * SLOT_BYTES;
+            int handle = UNSAFE.getInt(slot + HANDLE_OFFSET);
+            if(handle != EMPTY && handle != TOMBSTONE){
+                action.accept(UNSAFE.getLong(slot), value(handle));
+            }
+        }
+    }
+
+    // true enquanto houver uma tabela antiga a ser migrada.
+    public boolean isResizing()
+    {
+        return this.oldAddr != 0L;
+    }
+
+    // Memória fora do HEAP reservada pelo mapa, em bytes (a tabela e, se houver, a tabela antiga ou a seguinte).
+    public long nativeMemoryBytes()
+    {
+        return this.memory.tableBytes + this.memory.oldBytes + this.memory.nextBytes;
+    }
+
+    // Esvazia o mapa e liberta toda a memória fora do HEAP (o mapa pode continuar a ser usado: o próximo put volta a
+    // reservar uma tabela).
+    public void clear()
+    {
+        this.memory.run();
+        reset();
+    }
+
+    @Override
+    public void close()
+    {
+        clear();
+    }
+
+    //deixa o mapa vazio e sem tabelas (a memória já tem de ter sido libertada)
+    private void reset()
+    {
+        this.tableAddr = 0L;
+        this.capacity = 0;
+        this.shift = 0;
+        this.nextAddr = 0L;
+        this.nextCapacity = 0;
+        this.zeroedSlots = 0;
+        this.oldAddr = 0L;
+        this.oldCapacity = 0;
+        this.oldShift = 0;
+        this.migrated = 0;
+        this.values = new Object[4][];
+        this.usedHandles = 0;
+        this.freeHandles = new int[4][];
+        this.freeCount = 0;
+        this.size = 0;
+    }
+
+    //Tabelas
+
+    //32 bits de cima de key * 2^64/phi (Fibonacci hashing): a casa numa tabela de 2^b posições são os b bits de cima
+    private static int hash(long key)
+    {
+        return (int) ((key * 0x9E3779B97F4A7C15L) >>> 32);
+    }
+
+    private static int handle(long table, int j)
+    {
+        return UNSAFE.getInt(table + j * SLOT_BYTES + HANDLE_OFFSET);
+    }
+
+    private static void setSlot(long table, int j, long key, int hash, int handle)
+    {
+        long slot = table + j * SLOT_BYTES;
+        UNSAFE.putLong(slot, key);
+        UNSAFE.putInt(slot + HASH_OFFSET, hash);
+        UNSAFE.putInt(slot + HANDLE_OFFSET, handle);
+    }
+
+    //handle da chave (na tabela nova ou na antiga), ou EMPTY se a chave não estiver no mapa
+    private int findHandle(long key, int hash)
+    {
+        if(this.tableAddr == 0L){
+            return EMPTY;   //ainda não há tabela
+        }
+        int j = find(this.tableAddr, this.capacity, this.shift, key, hash);
+        if(j >= 0){
+            return handle(this.tableAddr, j);
+        }
+        if(this.oldAddr != 0L){
+            j = find(this.oldAddr, this.oldCapacity, this.oldShift, key, hash);
+            if(j >= 0){
+                return handle(this.oldAddr, j);
+            }
+        }
+        return EMPTY;
+    }
+
+    //posição da chave na tabela, ou -1 se não estiver lá (as lápides são saltadas, como as posições ocupadas)
+    private static int find(long table, int capacity, int shift, long key, int hash)
+    {
+        int mask = capacity - 1;
+        for(int j = hash >>> shift; ; j = (j + 1) & mask){
+            long slot = table + j * SLOT_BYTES;
+            int handle = UNSAFE.getInt(slot + HANDLE_OFFSET);
+            if(handle == EMPTY) return -1;
+            if(handle != TOMBSTONE && UNSAFE.getLong(slot) == key) return j;
+        }
+    }
+
+    private static void insertSlot(long table, int capacity, int shift, long key, int hash, int handle)
+    {
+        int mask = capacity - 1;
+        int j = hash >>> shift;
+        while(handle(table, j) != EMPTY){
+            j = (j + 1) & mask;
+        }
+        setSlot(table, j, key, hash, handle);
+    }
+
+    //só na tabela nova, que nunca tem lápides
+    private void deleteSlot(int j)
+    {
+        long table = this.tableAddr;
+        int mask = this.capacity - 1;
+        //backward shift: puxamos para o buraco as entradas seguintes que não ficariam alcançáveis a partir da sua casa
+        int hole = j;
+        int k = j;
+        while(true){
+            k = (k + 1) & mask;
+            long slot = table + k * SLOT_BYTES;
+            int handle = UNSAFE.getInt(slot + HANDLE_OFFSET);
+            if(handle == EMPTY){
+                break;
+            }
+            int hash = UNSAFE.getInt(slot + HASH_OFFSET);
+            int h = hash >>> this.shift;
+            //a entrada pode ir para o buraco se a sua casa h não estiver (circularmente) entre hole (exclusive) e k (inclusive)
+            boolean reachable = (hole <= k) ? (h > hole && h <= k) : (h > hole || h <= k);
+            if(!reachable){
+                setSlot(table, hole, UNSAFE.getLong(slot), hash, handle);
+                hole = k;
+            }
+        }
+        UNSAFE.putInt(table + hole * SLOT_BYTES + HANDLE_OFFSET, EMPTY);
+    }
+
+    //a tabela atual passa a ser a antiga e as entradas novas vão para uma tabela com o dobro do tamanho
+    private void startResize()
+    {
+        if(this.capacity == MAX_CAPACITY){
+            throw new IllegalStateException("StingyLongMap is full");
+        }
+        //não deve acontecer (a migração acaba antes de a tabela nova encher), mas se acontecer acaba-se já
+        while(this.oldAddr != 0L){
+            migrate();
+        }
+        this.oldAddr = this.tableAddr;
+        this.oldCapacity = this.capacity;
+        this.oldShift = this.shift;
+        this.migrated = 0;
+        this.memory.old = this.memory.table;
+        this.memory.oldBytes = this.memory.tableBytes;
+        this.memory.table = 0L;
+        this.memory.tableBytes = 0L;
+        if(this.nextAddr == 0L){
+            reserveNext(this.capacity * 2);
+        }
+        installNext();
+    }
+
+    //muda as próximas MIGRATE_STEP posições da tabela antiga para a nova e liberta-a quando chegar ao fim
+    private void migrate()
+    {
+        int end = Math.min(this.migrated + MIGRATE_STEP, this.oldCapacity);
+        for(int j = this.migrated; j < end; j++){
+            long slot = this.oldAddr + j * SLOT_BYTES;
+            int handle = UNSAFE.getInt(slot + HANDLE_OFFSET);
+            if(handle != EMPTY && handle != TOMBSTONE){
+                insertSlot(this.tableAddr, this.capacity, this.shift, UNSAFE.getLong(slot), UNSAFE.getInt(slot + HASH_OFFSET), handle);
+                UNSAFE.putInt(slot + HANDLE_OFFSET, TOMBSTONE);
+            }
+        }
+        this.migrated = end;
+        if(end == this.oldCapacity){
+            this.memory.freeOld();
+            this.oldAddr = 0L;
+            this.oldCapacity = 0;
+        }
+    }
+
+    //reserva a tabela seguinte, que vai sendo posta a zero por zeroNext
+    private void reserveNext(int capacity)
+    {
+        long bytes = capacity * SLOT_BYTES;
+        this.nextAddr = UNSAFE.allocateMemory(bytes);
+        this.nextCapacity = capacity;
+        this.zeroedSlots = 0;
+        this.memory.next = this.nextAddr;
+        this.memory.nextBytes = bytes;
+        UNodeMemoryStats.bytesReserved(bytes);
+        UNodeMemoryStats.updatePeak();
+    }
+
+    private void zeroNext(int slots)
+    {
+        int n = Math.min(slots, this.nextCapacity - this.zeroedSlots);
+        UNSAFE.setMemory(this.nextAddr + this.zeroedSlots * SLOT_BYTES, n * SLOT_BYTES, (byte) 0);
+        this.zeroedSlots += n;
+    }
+
+    //a tabela seguinte (acabada de pôr a zero) passa a ser a tabela atual
+    private void installNext()
+    {
+        zeroNext(this.nextCapacity);
+        this.tableAddr = this.nextAddr;
+        this.capacity = this.nextCapacity;
+        this.shift = 32 - Integer.numberOfTrailingZeros(this.capacity);
+        this.memory.table = this.memory.next;
+        this.memory.tableBytes = this.memory.nextBytes;
+        this.memory.next = 0L;
+        this.memory.nextBytes = 0L;
+        this.nextAddr = 0L;
+    }
+
+    //Valores
+
+    @SuppressWarnings("unchecked")
+    private V value(int handle)
+    {
+        return (V) this.values[(handle - 1) >>> CHUNK_SHIFT][(handle - 1) & CHUNK_MASK];
+    }
+
+    private void setValue(int handle, Object value)
+    {
+        this.values[(handle - 1) >>> CHUNK_SHIFT][(handle - 1) & CHUNK_MASK] = value;
+    }
+
+    private int acquire(Object value)
+    {
+        int handle;
+        if(this.freeCount > 0){
+            this.freeCount--;
+            handle = this.freeHandles[this.freeCount >>> CHUNK_SHIFT][this.freeCount & CHUNK_MASK];
+        }
+        else{
+            int chunk = this.usedHandles >>> CHUNK_SHIFT;
+            if(chunk == this.values.length){
+                this.values = Arrays.copyOf(this.values, chunk * 2);
+            }
+            if(this.values[chunk] == null){
+                this.values[chunk] = new Object[VALUE_CHUNK];
+            }
+            handle = ++this.usedHandles;
+        }
+        setValue(handle, value);
+        return handle;
+    }
+
+    private void release(int handle)
+    {
+        setValue(handle, null);     //o valor deixa de estar alcançável através do mapa
+        int chunk = this.freeCount >>> CHUNK_SHIFT;
+        if(chunk == this.freeHandles.length){
+            this.freeHandles = Arrays.copyOf(this.freeHandles, chunk * 2);
+        }
+        if(this.freeHandles[chunk] == null){
+            this.freeHandles[chunk] = new int[VALUE_CHUNK];
+        }
+        this.freeHandles[chunk][this.freeCount & CHUNK_MASK] = handle;
+        this.freeCount++;
+    }
+
+    private static class Memory implements Runnable {
+
+        private long table = 0L;
+        private long tableBytes = 0L;
+        private long old = 0L;
+        private long oldBytes = 0L;
+        private long next = 0L;
+        private long nextBytes = 0L;
+
+        void freeOld()
+        {
+            if(this.old != 0L){
+                UNSAFE.freeMemory(this.old);
+                this.old = 0L;
+            }
+            UNodeMemoryStats.bytesReleased(this.oldBytes);
+            this.oldBytes = 0L;
+        }
+
+        @Override
+        public void run()
+        {
+            freeOld();
+            if(this.table != 0L){
+                UNSAFE.freeMemory(this.table);
+                this.table = 0L;
+            }
+            if(this.next != 0L){
+                UNSAFE.freeMemory(this.next);
+                this.next = 0L;
+            }
+            UNodeMemoryStats.bytesReleased(this.tableBytes + this.nextBytes);
+            this.tableBytes = 0L;
+            this.nextBytes = 0L;
+        }
+    }
+
+    //Benchmark: memória por entrada e percentis da latência de put (a encher o mapa, incluindo as mudanças de
+    //tamanho) e de get (chaves aleatórias do mapa) com este mapa e com uma HashMap<Long, V>. Todas as entradas têm o
+    //mesmo valor, por isso só se mede a memória das estruturas.
+
+    private static final Random R = new Random();
+
+    // Histograma de latências em ns, com 16 baldes por potência de 2 (erro de até 1/16 em cada percentil).
+    private static class Latencies {
+
+        private final long[] counts = new long[64 * 16];
+        private long total = 0;
+        private long max = 0;
+
+        void record(long nanos)
+        {
+            long v = Math.max(nanos, 1L);
+            int exponent = 63 - Long.numberOfLeadingZeros(v);
+            int mantissa = (exponent >= 4) ? (int) (v >>> (exponent - 4)) & 15 : (int) (v << (4 - exponent)) & 15;
+            this.counts[exponent * 16 + mantissa]++;
+            this.total++;
+            this.max = Math.max(this.max, nanos);
+        }
+
+        //limite de cima do balde onde fica o percentil p
+        long percentile(double p)
+        {
+            long target = (long) Math.ceil(this.total * p / 100.0);
+            long seen = 0;
+            for(int b = 0; b < this.counts.length; b++){
+                seen += this.counts[b];
+                if(seen >= target && this.counts[b] > 0){
+                    int exponent = b / 16;
+                    int mantissa = b % 16;
+                    return Math.min(this.max, (long) ((16 + mantissa + 1) * Math.pow(2, exponent - 4)));
+                }
+            }
+            return this.max;
+        }
+
+        @Override
+        public String toString()
+        {
+            return percentile(50) + "\t" + percentile(99) + "\t" + percentile(99.9) + "\t" + percentile(99.99) + "\t" + this.max;
+        }
+    }
+
+    //soma dos comprimentos dos valores lidos nos gets, escrita no fim do main para que os gets não possam ser eliminados
+    private static long benchmarkSum = 0;
+
+    private static long[] randomKeys(int n)
+    {
+        long[] keys = new long[n];
+        for(int i = 0; i < n; i++){
+            keys[i] = R.nextLong();
+        }
+        return keys;
+    }
+
+    private static void printStingy(int n)
+    {
+        long[] keys = randomKeys(n);
+        String value = "valor";
+        Latencies puts = new Latencies();
+        Latencies gets = new Latencies();
+        long before = TemporalAnalysisUtils.getUsedHeap();
+        StingyLongMap<String> map = new StingyLongMap<>();
+        for(long key : keys){
+            long start = System.nanoTime();
+            map.put(key, value);
+            puts.record(System.nanoTime() - start);
+        }
+        long heap = TemporalAnalysisUtils.getUsedHeap() - before;
+        long sum = 0;
+        for(int i = 0; i < n; i++){
+            long key = keys[R.nextInt(n)];
+            long start = System.nanoTime();
+            String found = map.get(key);
+            gets.record(System.nanoTime() - start);
+            sum += found.length();
+        }
+        long offHeap = map.nativeMemoryBytes();
+        map.close();
+        benchmarkSum += sum;
+        printRow("StingyLongMap", n, heap, offHeap, puts, gets);
+    }
+
+    private static void printHashMap(int n)
+    {
+        long[] keys = randomKeys(n);
+        String value = "valor";
+        Latencies puts = new Latencies();
+        Latencies gets = new Latencies();
+        long before = TemporalAnalysisUtils.getUsedHeap();
+        HashMap<Long, String> map = new HashMap<>();
+        for(long key : keys){
+            long start = System.nanoTime();
+            map.put(key, value);
+            puts.record(System.nanoTime() - start);
+        }
+        long heap = TemporalAnalysisUtils.getUsedHeap() - before;
+        long sum = 0;
+        for(int i = 0; i < n; i++){
+            long key = keys[R.nextInt(n)];
+            long start = System.nanoTime();
+            String found = map.get(key);
+            gets.record(System.nanoTime() - start);
+            sum += found.length();
+        }
+        benchmarkSum += sum;
+        printRow("HashMap", n, heap, 0L, puts, gets);
+    }
+
+    private static void printRow(String name, int n, long heap, long offHeap, Latencies puts, Latencies gets)
+    {
+        System.out.println(name + "\t" + n + "\t" + String.format("%.1f", (double) heap / n) + "\t" + String.format("%.1f", (double) offHeap / n)
+                + "\t" + puts + "\t" + gets);
+    }
+
+    // Uso: StingyLongMap [maior n]. Por omissão vai até 10^7 entradas; com 10^8 o StingyLongMap precisa de cerca de
+    // 2,5 GB fora do HEAP (mais 1 GB durante a última migração) e a HashMap de cerca de 6 GB de HEAP (ex: -Xmx8g), por
+    // isso a HashMap é saltada se o HEAP máximo não chegar.
+    // Os percentis com 10^8 entradas não foram medidos: a máquina onde o benchmark correu só tinha 5 GB de RAM, por
+    // isso só há números até 10^7.
+    //Verificação aleatória: put/remove/get numa StingyLongMap e numa HashMap, com chaves em [0, range) (multiplicadas
+    //por 2^32 se highBits, para que só os bits altos variem). Com range grande a tabela cresce várias vezes e as
+    //operações apanham a migração a meio, com lápides dos remove nas duas tabelas. Depois de cada operação compara o
+    //resultado e o tamanho; de tempos a tempos (mais vezes durante a migração) compara todas as entradas com forEach,
+    //que não pode repetir nem perder entradas a meio da migração. Lança IllegalStateException na primeira diferença.
+    static void randomizedCheck(int range, int operations, boolean highBits, long seed)
+    {
+        Random r = new Random(seed);
+        StingyLongMap<Integer> map = new StingyLongMap<>();
+        HashMap<Long, Integer> reference = new HashMap<>();
+        try{
+            for(int op = 0; op < operations; op++){
+                long key = highBits ? (long) r.nextInt(range) << 32 : r.nextInt(range);
+                int kind = r.nextInt(10);
+                boolean same;
+                if(kind < 5){
+                    int value = r.nextInt();
+                    same = Objects.equals(map.put(key, value), reference.put(key, value));
+                }
+                else if(kind < 8){
+                    same = Objects.equals(map.remove(key), reference.remove(key));
+                }
+                else{
+                    same = Objects.equals(map.get(key), reference.get(key)) && map.containsKey(key) == reference.containsKey(key);
+                }
+                same = same && map.size() == reference.size();
+                if(same && op % (map.isResizing() ? 997 : 9973) == 0){
+                    HashMap<Long, Integer> seen = new HashMap<>();
+                    boolean[] repeated = new boolean[1];
+                    map.forEach((k, v) -> repeated[0] |= seen.put(k, v) != null);
+                    same = !repeated[0] && seen.equals(reference);
+                }
+                if(!same){
+                    throw new IllegalStateException("StingyLongMap differs from HashMap at operation " + op + " (range " + range + ", seed " + seed + ")");
+                }
+            }
+        }
+        finally{
+            map.close();
+        }
+    }
+
+    public static void main(String[] args)
+    {
+        long seed = R.nextLong();
+        for(int range = 50; range <= 500_000; range *= 100){
+            randomizedCheck(range, 300_000, false, seed);
+            randomizedCheck(range, 300_000, true, seed);
+        }
+        System.out.println("verificação aleatória contra a HashMap: ok (seed " + seed + ")");
+        int maxN = (args.length > 0) ? Integer.parseInt(args[0]) : 10_000_000;
+        System.out.println("bytes por entrada e latência em ns (p50, p99, p99.9, p99.99, máximo)\nmapa\tn\tHEAP\tfora\tput p50\tp99\tp99.9\tp99.99\tmáx\tget p50\tp99\tp99.9\tp99.99\tmáx");
+        printStingy(100_000);   //aquecimento do JIT
+        printHashMap(100_000);
+        for(int n = 1_000_000; n <= maxN && n > 0; n *= 10){
+            printStingy(n);
+            if(Runtime.getRuntime().maxMemory() >= 64L * n) printHashMap(n);
+            else System.out.println("HashMap\t" + n + "\tsaltado: HEAP máximo insuficiente");
+        }
+        System.out.println("soma dos comprimentos lidos: " + benchmarkSum);
+    }
+}
@@ -0,0 +1,801 @@
+package aed.collections;
+
+import sun.misc.Unsafe;
+
+import java.lang.ref.Cleaner;
+import java.lang.ref.Reference;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Random;
+import java.util.function.ToIntBiFunction;
+
+// Cache LRU (least recently used) em que toda a contabilidade fica fora do HEAP: a ordem de uso das entradas é uma
+// lista ligada por XOR, como a da StingyList, e o mapa chave -> entrada é uma tabela de dispersão com endereçamento
+// aberto, como a do StingyListHashIndex. No HEAP ficam apenas as referências para as chaves e para os valores.
+//
+// As entradas estão numa única região de memória e são identificadas pela sua posição (um índice de 32 bits a começar
+// em 1, como os nós da CompactNodeStore), por isso cada entrada gasta só 4 bytes fora do HEAP: o XOR dos índices da
+// entrada anterior e da seguinte na ordem de uso (a 1.ª é a mais recente). A chave e o valor da entrada e ficam nas
+// posições e-1 dos arrays keys e values. A tabela guarda em cada posição o índice da entrada (0 = posição vazia) e o
+// hash da sua chave (8 bytes), com ocupação máxima de 3/4 e backward shift deletion: com o hash na tabela, uma
+// pesquisa só sai da tabela quando encontra o hash certo, o que conta nas pesquisas falhadas, que percorrem em média
+// vários slots.
+// Por entrada isto dá 4 bytes de entrada + 10,7 a 21,3 bytes de tabela fora do HEAP, mais 2 referências no HEAP,
+// contra os cerca de 40 bytes de cada entrada de uma LinkedHashMap mais a sua tabela.
+//
+// Numa lista ligada por XOR só se consegue tirar uma entrada do meio da lista conhecendo uma das vizinhas, e a tabela
+// só dá a entrada. Por isso, quando um get encontra uma entrada no meio da lista, não a muda de sítio: cria uma cópia
+// à cabeça da lista (O(1)), aponta a tabela para a cópia e deixa a entrada antiga na lista como lápide (sem chave nem
+// valor, que deixam logo de estar alcançáveis). A ordem da lista é a ordem LRU exata. As lápides são libertadas:
+//   - quando chegam à cauda da lista, ao despejar entradas (O(1) cada);
+//   - numa passagem pela lista inteira sempre que há mais lápides do que entradas vivas, ou quando a região das
+//     entradas enche e pelo menos 1/8 são lápides (O(n), o que dá O(1) amortizado por lápide criada). Assim a lista
+//     nunca tem mais do dobro das entradas vivas, e com limite de entradas a região não passa de maxEntries * 8/7.
+// As entradas da cabeça e da cauda são mudadas de sítio sem cópia, porque a vizinha delas é conhecida.
+//
+// Há dois limites, que podem ser usados em conjunto:
+//   - número de entradas: StingyLruCache(maxEntries);
+//   - bytes: StingyLruCache(maxBytes, weigher), em que o weigher dá o tamanho em bytes de cada chave e valor, a que
+//     se soma ENTRY_OVERHEAD bytes pela contabilidade de cada entrada.
+// Quando um put passa um limite, são despejadas as entradas usadas há mais tempo.
+//
+// As chaves e os valores não podem ser null. Tal como a arena, regista-se num Cleaner que liberta a memória fora do
+// HEAP se a cache deixar de ser alcançável sem ter sido fechada. Uma cache vazia (acabada de criar, limpa ou fechada)
+// não tem memória fora do HEAP: a região das entradas e a tabela só são reservadas no primeiro put. Não é thread-safe.
+
+public class StingyLruCache<K, V> implements AutoCloseable {
+
+    //representamos null como o índice 0.
+    private static final int NULL = 0;
+    private static final Unsafe UNSAFE = UnsafeHelper.getUnsafe();
+    private static final Cleaner CLEANER = Cleaner.create();
+
+    private static final long ENTRY_BYTES = 4L;
+    private static final long SLOT_BYTES = 8L;
+    private static final long HASH_OFFSET = 4L;     //o hash vem depois do índice da entrada em cada slot
+    private static final int MIN_CAPACITY = 16;
+    private static final int MIN_SWEEP = 64;
+    static final int MAX_ENTRIES = Integer.MAX_VALUE - 8;     //maior tamanho seguro de um array em Java
+    private static final long REFERENCE_BYTES = UNSAFE.arrayIndexScale(Object[].class);
+
+    // Bytes de contabilidade de cada entrada no limite por bytes: a entrada, as duas referências e (em média) duas
+    // posições da tabela.
+    public static final long ENTRY_OVERHEAD = ENTRY_BYTES + 2 * REFERENCE_BYTES + 2 * SLOT_BYTES;
+
+    private final Memory memory;    //regiões fora do HEAP (num objeto à parte para o Cleaner não depender da cache)
+    private final int maxEntries;
+    private final long maxBytes;
+    private final ToIntBiFunction<? super K, ? super V> weigher;   //null se só houver limite de entradas
+
+    private long entriesBase;       //endereço da entrada 1 (o mesmo que memory.entries)
+    private int entryCapacity;
+    private int usedEntries;        //entradas já cortadas alguma vez (as entradas 1..usedEntries)
+    private int freeList;           //primeira entrada livre (as ligações de uma entrada livre guardam a próxima livre)
+    private Object[] keys;          //chave da entrada e na posição e-1 (null se a entrada for uma lápide ou estiver livre)
+    private Object[] values;
+    private int[] weights;          //bytes de cada entrada, só com limite por bytes
+
+    private int head;               //entrada usada mais recentemente
+    private int tail;               //entrada usada há mais tempo
+
+    private long tableAddr;         //o mesmo que memory.table (0L enquanto a cache não tiver tabela)
+    private int tableCapacity;      //potência de 2
+    private int shift;              //32 - log2(tableCapacity)
+
+    private int size;               //entradas vivas (as que estão na tabela)
+    private int tombstones;         //lápides ainda na lista
+    private long bytes;             //bytes das entradas vivas, só com limite por bytes
+
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    // Cache limitada a maxEntries entradas.
+    public StingyLruCache(int maxEntries)
+    {
+        this(maxEntries, Long.MAX_VALUE, null);
+    }
+
+    // Cache limitada a maxBytes bytes: a soma dos bytes de cada entrada (dados pelo weigher) mais ENTRY_OVERHEAD por
+    // entrada.
+    public StingyLruCache(long maxBytes, ToIntBiFunction<? super K, ? super V> weigher)
+    {
+        this(MAX_ENTRIES, maxBytes, weigher);
+        if(weigher == null){
+            throw new IllegalArgumentException("Weigher cannot be null");
+        }
+    }
+
+    // Cache com os dois limites.
+    public StingyLruCache(int maxEntries, long maxBytes, ToIntBiFunction<? super K, ? super V> weigher)
+    {
+        if(maxEntries <= 0 || maxBytes <= 0){
+            throw new IllegalArgumentException("Cache limits must be positive");
+        }
+        this.maxEntries = Math.min(maxEntries, MAX_ENTRIES);
+        this.maxBytes = maxBytes;
+        this.weigher = weigher;
+        this.memory = new Memory();
+        CLEANER.register(this, this.memory);
+        reset();
+    }
+
+    // Devolve o valor da chave (e passa a entrada para a cabeça da lista), ou null se a chave não estiver na cache.
+    public V get(K key)
+    {
+        if(key == null){
+            throw new IllegalArgumentException("Key cannot be null");
+        }
+        int j = find(key, key.hashCode());
+        if(j < 0){
+            this.misses++;
+            return null;
+        }
+        this.hits++;
+        int e = slot(j);
+        @SuppressWarnings("unchecked")
+        V value = (V) this.values[e-1];
+        touch(j, e);
+        return value;
+    }
+
+    // Guarda o valor da chave como o usado mais recentemente e despeja as entradas usadas há mais tempo se algum dos
+    // limites for ultrapassado. Devolve o valor que a chave tinha, ou null.
+    public V put(K key, V value)
+    {
+        if(key == null || value == null){
+            throw new IllegalArgumentException("Keys and values cannot be null");
+        }
+        if(this.tableAddr == 0L){
+            growEntries(MIN_CAPACITY);
+            installTable(reserveTable(MIN_CAPACITY), MIN_CAPACITY);
+        }
+        int hash = key.hashCode();
+        int weight = (this.weigher != null) ? this.weigher.applyAsInt(key, value) : 0;
+        int j = find(key, hash);
+        V old = null;
+        //Caso em que a chave já está na cache: trocamos o valor e passamos a entrada para a cabeça
+        if(j >= 0){
+            int e = slot(j);
+            @SuppressWarnings("unchecked")
+            V previous = (V) this.values[e-1];
+            old = previous;
+            this.values[e-1] = value;
+            if(this.weights != null){
+                this.bytes += weight - this.weights[e-1];
+                this.weights[e-1] = weight;
+            }
+            touch(j, e);
+        }
+        //Caso em que a chave é nova
+        else{
+            int e = newEntry(key, value, weight);
+            pushHead(e);
+            if(this.size + 1 > this.tableCapacity / 4 * 3){
+                resizeTable(this.tableCapacity * 2);
+            }
+            insertSlot(e, hash);
+            this.size++;
+            this.bytes += weight + ENTRY_OVERHEAD;
+        }
+        while(this.size > this.maxEntries || (this.weights != null && this.bytes > this.maxBytes)){
+            evict();
+        }
+        return old;
+    }
+
+    // Tira a chave da cache e devolve o seu valor, ou null se a chave não estiver na cache.
+    public V remove(K key)
+    {
+        if(key == null){
+            throw new IllegalArgumentException("Key cannot be null");
+        }
+        int j = find(key, key.hashCode());
+        if(j < 0){
+            return null;
+        }
+        int e = slot(j);
+        @SuppressWarnings("unchecked")
+        V value = (V) this.values[e-1];
+        deleteSlot(j);
+        this.size--;
+        if(this.weights != null) this.bytes -= this.weights[e-1] + ENTRY_OVERHEAD;
+        if(e == this.tail){
+            freeEntry(popTail());
+        }
+        else if(e == this.head){
+            freeEntry(popHead());
+        }
+        else{
+            bury(e);
+        }
+        return value;
+    }
+
+    // true se a chave estiver na cache (não conta como uso nem mexe nos contadores).
+    public boolean containsKey(K key)
+    {
+        if(key == null){
+            throw new IllegalArgumentException("Key cannot be null");
+        }
+        return find(key, key.hashCode()) >= 0;
+    }
+
+    public int size()
+    {
+        return this.size;
+    }
+
+    public boolean isEmpty()
+    {
+        return this.size == 0;
+    }
+
+    // Bytes das entradas (com ENTRY_OVERHEAD por entrada), só com limite por bytes; 0 se só houver limite de entradas.
+    public long bytes()
+    {
+        return (this.weights != null) ? this.bytes : 0L;
+    }
+
+    public long hits()
+    {
+        return this.hits;
+    }
+
+    public long misses()
+    {
+        return this.misses;
+    }
+
+    public long evictions()
+    {
+        return this.evictions;
+    }
+
+    public void resetCounters()
+    {
+        this.hits = 0;
+        this.misses = 0;
+        this.evictions = 0;
+    }
+
+    // Memória fora do HEAP ocupada pela cache, em bytes (entradas, incluindo lápides e folga, e tabela).
+    public long nativeMemoryBytes()
+    {
+        return this.memory.entriesBytes + this.memory.tableBytes;
+    }
+
+    // Esvazia a cache e liberta toda a memória fora do HEAP (a cache pode continuar a ser usada: o próximo put volta a
+    // reservá-la). Os contadores mantêm-se.
+    public void clear()
+    {
+        this.memory.run();
+        reset();
+    }
+
+    @Override
+    public void close()
+    {
+        clear();
+    }
+
+    //deixa a cache vazia e sem memória fora do HEAP (a memória já tem de ter sido libertada)
+    private void reset()
+    {
+        this.entriesBase = 0L;
+        this.entryCapacity = 0;
+        this.usedEntries = 0;
+        this.freeList = NULL;
+        this.keys = new Object[MIN_CAPACITY];
+        this.values = new Object[MIN_CAPACITY];
+        this.weights = (this.weigher != null) ? new int[MIN_CAPACITY] : null;
+        this.head = NULL;
+        this.tail = NULL;
+        this.size = 0;
+        this.tombstones = 0;
+        this.bytes = 0;
+        this.tableAddr = 0L;
+        this.tableCapacity = 0;
+        this.shift = 0;
+    }
+
+    //passa a entrada e (que está na posição j da tabela) para a cabeça da lista
+    private void touch(int j, int e)
+    {
+        if(e == this.head){
+            return;
+        }
+        if(e == this.tail){
+            pushHead(popTail());
+            return;
+        }
+        //no meio da lista não sabemos as vizinhas de e: a cópia vai para a cabeça e e fica como lápide
+        int copy = newEntry(this.keys[e-1], this.values[e-1], (this.weights != null) ? this.weights[e-1] : 0);
+        pushHead(copy);
+        setSlot(j, copy, slotHash(j));
+        bury(e);
+    }
+
+    //transforma a entrada e (que já não está na tabela) numa lápide
+    private void bury(int e)
+    {
+        this.keys[e-1] = null;
+        this.values[e-1] = null;
+        this.tombstones++;
+        if(this.tombstones > MIN_SWEEP && this.tombstones > this.size){
+            sweep();
+        }
+    }
+
+    //tira da lista todas as lápides numa só passagem (ao percorrer a lista sabemos as vizinhas de cada entrada)
+    private void sweep()
+    {
+        int prev = NULL;
+        int e = this.head;
+        while(e != NULL){
+            int next = links(e) ^ prev;
+            if(this.keys[e-1] == null){
+                if(prev != NULL) relink(prev, e, next);
+                else this.head = next;
+                if(next != NULL) relink(next, e, prev);
+                else this.tail = prev;
+                freeEntry(e);
+            }
+            else{
+                prev = e;
+            }
+            e = next;
+        }
+        this.tombstones = 0;
+    }
+
+    //despeja a entrada viva usada há mais tempo (libertando as lápides que estiverem na cauda)
+    private void evict()
+    {
+        while(true){
+            int e = popTail();
+            if(this.keys[e-1] == null){
+                freeEntry(e);
+                this.tombstones--;
+                continue;
+            }
+            int mask = this.tableCapacity - 1;
+            int j = home(this.keys[e-1].hashCode());
+            while(slot(j) != e){
+                j = (j + 1) & mask;
+            }
+            deleteSlot(j);
+            this.size--;
+            if(this.weights != null) this.bytes -= this.weights[e-1] + ENTRY_OVERHEAD;
+            freeEntry(e);
+            this.evictions++;
+            return;
+        }
+    }
+
+    //Lista da ordem de uso
+
+    private long address(int e)
+    {
+        return this.entriesBase + ((long) (e - 1) << 2);
+    }
+
+    private int links(int e)
+    {
+        return UNSAFE.getInt(address(e));
+    }
+
+    private void setLinks(int e, int prevXorNext)
+    {
+        UNSAFE.putInt(address(e), prevXorNext);
+    }
+
+    private void relink(int e, int oldNeighbour, int newNeighbour)
+    {
+        setLinks(e, links(e) ^ oldNeighbour ^ newNeighbour);
+    }
+
+    private void pushHead(int e)
+    {
+        setLinks(e, this.head);
+        if(this.head != NULL) relink(this.head, NULL, e);
+        else this.tail = e;
+        this.head = e;
+    }
+
+    private int popHead()
+    {
+        int e = this.head;
+        int next = links(e);
+        if(next != NULL) relink(next, e, NULL);
+        else this.tail = NULL;
+        this.head = next;
+        return e;
+    }
+
+    private int popTail()
+    {
+        int e = this.tail;
+        int prev = links(e);
+        if(prev != NULL) relink(prev, e, NULL);
+        else this.head = NULL;
+        this.tail = prev;
+        return e;
+    }
+
+    private int newEntry(Object key, Object value, int weight)
+    {
+        int e;
+        //Caso em que há entradas livres para reciclar
+        if(this.freeList != NULL){
+            e = this.freeList;
+            this.freeList = links(e);
+        }
+        //Caso em que a região está cheia mas pelo menos 1/8 das entradas são lápides: libertamos as lápides em vez de
+        //aumentar a região
+        else if(this.usedEntries == this.entryCapacity && this.tombstones >= this.entryCapacity / 8){
+            sweep();
+            e = this.freeList;
+            this.freeList = links(e);
+        }
+        //Caso em que temos de cortar uma entrada nova (aumentando a região se estiver cheia). Como só crescemos com
+        //menos de 1/8 de lápides, a região nunca precisa de mais do que maxEntries + maxEntries/7 entradas.
+        else{
+            if(this.usedEntries == this.entryCapacity){
+                if(this.usedEntries == MAX_ENTRIES){
+                    throw new IllegalStateException("StingyLruCache is limited to " + MAX_ENTRIES + " entries");
+                }
+                long limit = this.maxEntries + this.maxEntries / 7L + MIN_CAPACITY;
+                growEntries((int) Math.min(Math.min(2L * this.entryCapacity, limit), MAX_ENTRIES));
+            }
+            e = ++this.usedEntries;
+        }
+        this.keys[e-1] = key;
+        this.values[e-1] = value;
+        if(this.weights != null) this.weights[e-1] = weight;
+        return e;
+    }
+
+    private void freeEntry(int e)
+    {
+        this.keys[e-1] = null;
+        this.values[e-1] = null;
+        setLinks(e, this.freeList);
+        this.freeList = e;
+    }
+
+    private void growEntries(int newCapacity)
+    {
+        this.memory.resizeEntries(newCapacity * ENTRY_BYTES);
+        this.entriesBase = this.memory.entries;
+        if(newCapacity > this.keys.length){
+            Object[] newKeys = new Object[newCapacity];
+            Object[] newValues = new Object[newCapacity];
+            System.arraycopy(this.keys, 0, newKeys, 0, this.usedEntries);
+            System.arraycopy(this.values, 0, newValues, 0, this.usedEntries);
+            this.keys = newKeys;
+            this.values = newValues;
+            if(this.weights != null){
+                int[] newWeights = new int[newCapacity];
+                System.arraycopy(this.weights, 0, newWeights, 0, this.usedEntries);
+                this.weights = newWeights;
+            }
+        }
+        this.entryCapacity = newCapacity;
+        UNodeMemoryStats.updatePeak();
+    }
+
+    //Tabela de dispersão
+
+    //devolve a posição da tabela com a entrada da chave, ou -1 se a chave não estiver na tabela
+    private int find(Object key, int hash)
+    {
+        if(this.tableAddr == 0L){
+            return -1;  //ainda não há tabela
+        }
+        int mask = this.tableCapacity - 1;
+        for(int j = home(hash); ; j = (j + 1) & mask){
+            int e = slot(j);
+            if(e == NULL) return -1;
+            if(slotHash(j) == hash){
+                Object candidate = this.keys[e-1];
+                if(candidate == key || key.equals(candidate)) return j;
+            }
+        }
+    }
+
+    //dispersão multiplicativa (Fibonacci hashing): usa os bits de cima do produto
+    private int home(int hash)
+    {
+        return (hash * 0x9E3779B9) >>> this.shift;
+    }
+
+    private void insertSlot(int e, int hash)
+    {
+        int mask = this.tableCapacity - 1;
+        int j = home(hash);
+        while(slot(j) != NULL){
+            j = (j + 1) & mask;
+        }
+        setSlot(j, e, hash);
+    }
+
+    private void deleteSlot(int j)
+    {
+        int mask = this.tableCapacity - 1;
+        //backward shift: puxamos para o buraco as entradas seguintes que não ficariam alcançáveis a partir da sua casa
+        int hole = j;
+        int k = j;
+        while(true){
+            k = (k + 1) & mask;
+            int e = slot(k);
+            if(e == NULL){
+                break;
+            }
+            int hash = slotHash(k);
+            int h = home(hash);
+            //e pode ir para o buraco se a sua casa h não estiver (circularmente) entre hole (exclusive) e k (inclusive)
+            boolean reachable = (hole <= k) ? (h > hole && h <= k) : (h > hole || h <= k);
+            if(!reachable){
+                setSlot(hole, e, hash);
+                hole = k;
+            }
+        }
+        setSlot(hole, NULL, 0);
+    }
+
+    private void resizeTable(int newCapacity)
+    {
+        long oldAddr = this.tableAddr;
+        int oldCapacity = this.tableCapacity;
+        //a tabela nova é reservada antes de a antiga deixar de ser a da cache: se a reserva falhar, a cache fica como
+        //estava e a tabela antiga continua a ser libertada pelo clear/close ou pelo Cleaner
+        long newAddr = reserveTable(newCapacity);
+        installTable(newAddr, newCapacity);
+        for(int j = 0; j < oldCapacity; j++){
+            int e = UNSAFE.getInt(oldAddr + j * SLOT_BYTES);
+            if(e != NULL){
+                insertSlot(e, UNSAFE.getInt(oldAddr + j * SLOT_BYTES + HASH_OFFSET));
+            }
+        }
+        UNSAFE.freeMemory(oldAddr);
+        UNodeMemoryStats.bytesReleased(oldCapacity * SLOT_BYTES);
+    }
+
+    //reserva uma tabela com capacity posições, todas vazias, e devolve o seu endereço
+    private static long reserveTable(int capacity)
+    {
+        long bytes = capacity * SLOT_BYTES;
+        long addr = UNSAFE.allocateMemory(bytes);
+        UNSAFE.setMemory(addr, bytes, (byte) 0);
+        UNodeMemoryStats.bytesReserved(bytes);
+        UNodeMemoryStats.updatePeak();
+        return addr;
+    }
+
+    //a tabela em addr passa a ser a tabela da cache
+    private void installTable(long addr, int capacity)
+    {
+        this.tableAddr = addr;
+        this.memory.table = addr;
+        this.memory.tableBytes = capacity * SLOT_BYTES;
+        this.tableCapacity = capacity;
+        this.shift = 32 - Integer.numberOfTrailingZeros(capacity);
+    }
+
+    private int slot(int j)
+    {
+        return UNSAFE.getInt(this.tableAddr + j * SLOT_BYTES);
+    }
+
+    private int slotHash(int j)
+    {
+        return UNSAFE.getInt(this.tableAddr + j * SLOT_BYTES + HASH_OFFSET);
+    }
+
+    private void setSlot(int j, int e, int hash)
+    {
+        long addr = this.tableAddr + j * SLOT_BYTES;
+        UNSAFE.putInt(addr, e);
+        UNSAFE.putInt(addr + HASH_OFFSET, hash);
+    }
+
+    // Memória fora do HEAP de uma cache: a região das entradas e a tabela. É também a ação do Cleaner, por isso não
+    // pode ter referências para a cache.
+    private static class Memory implements Runnable {
+
+        private long entries = 0L;
+        private long entriesBytes = 0L;
+        private long table = 0L;
+        private long tableBytes = 0L;
+
+        //muda o tamanho da região das entradas para newBytes, mantendo o seu conteúdo
+        void resizeEntries(long newBytes)
+        {
+            this.entries = (this.entries == 0L) ? UNSAFE.allocateMemory(newBytes) : UNSAFE.reallocateMemory(this.entries, newBytes);
+            UNodeMemoryStats.bytesReserved(newBytes - this.entriesBytes);
+            this.entriesBytes = newBytes;
+        }
+
+        @Override
+        public void run()
+        {
+            if(this.entries != 0L){
+                UNSAFE.freeMemory(this.entries);
+                this.entries = 0L;
+            }
+            if(this.table != 0L){
+                UNSAFE.freeMemory(this.table);
+                this.table = 0L;
+            }
+            UNodeMemoryStats.bytesReleased(this.entriesBytes + this.tableBytes);
+            this.entriesBytes = 0L;
+            this.tableBytes = 0L;
+        }
+    }
+
+    //Benchmark: memória por entrada (no HEAP e fora dele) desta cache e de uma LinkedHashMap em modo LRU, e tempo e
+    //taxa de acertos de get/put com acessos enviesados (80% dos acessos a 20% das chaves).
+
+    private static final Random R = new Random();
+
+    private static <K, V> Map<K, V> linkedHashMapLru(int maxEntries)
+    {
+        return new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    //as chaves e o valor são criados antes, por isso só se mede a memória das estruturas de cada cache
+    private static void printFootprint(int n)
+    {
+        Long[] keys = new Long[n];
+        for(int i = 0; i < n; i++){
+            keys[i] = (long) i;
+        }
+        String value = "valor";
+
+        long before = TemporalAnalysisUtils.getUsedHeap();
+        StingyLruCache<Long, String> cache = new StingyLruCache<>(n);
+        for(Long key : keys){
+            cache.put(key, value);
+        }
+        long cacheHeap = TemporalAnalysisUtils.getUsedHeap() - before;
+        long cacheNative = cache.nativeMemoryBytes();
+        cache.close();
+        cache = null;
+
+        before = TemporalAnalysisUtils.getUsedHeap();
+        Map<Long, String> map = linkedHashMapLru(n);
+        for(Long key : keys){
+            map.put(key, value);
+        }
+        long mapHeap = TemporalAnalysisUtils.getUsedHeap() - before;
+        Reference.reachabilityFence(map);    //a LinkedHashMap não pode ser recolhida antes de ser medida
+
+        System.out.println(n + "\t" + String.format("%.2f", (double) cacheHeap / n) + "\t" + String.format("%.2f", (double) cacheNative / n)
+                + "\t" + String.format("%.2f", (double) (cacheHeap + cacheNative) / n) + "\t" + String.format("%.2f", (double) mapHeap / n));
+    }
+
+    //chaves em [0, keySpace), 80% delas no 1.º quinto
+    private static long[] generateAccesses(int n, int keySpace)
+    {
+        long[] accesses = new long[n];
+        for(int i = 0; i < n; i++){
+            accesses[i] = (R.nextInt(10) < 8) ? R.nextInt(keySpace / 5) : R.nextInt(keySpace);
+        }
+        return accesses;
+    }
+
+    private static void printWorkload(int capacity, int operations)
+    {
+        long[] accesses = generateAccesses(operations, capacity * 10);
+        Long[] boxed = new Long[capacity * 10];
+        for(int i = 0; i < boxed.length; i++){
+            boxed[i] = (long) i;
+        }
+        String value = "valor";
+
+        StingyLruCache<Long, String> cache = new StingyLruCache<>(capacity);
+        long start = System.nanoTime();
+        for(long access : accesses){
+            Long key = boxed[(int) access];
+            if(cache.get(key) == null) cache.put(key, value);
+        }
+        double cacheTime = (System.nanoTime() - start) / 1E6;
+        double cacheHitRatio = (double) cache.hits() / operations;
+        long evictions = cache.evictions();
+        cache.close();
+
+        Map<Long, String> map = linkedHashMapLru(capacity);
+        long mapHits = 0;
+        start = System.nanoTime();
+        for(long access : accesses){
+            Long key = boxed[(int) access];
+            if(map.get(key) == null) map.put(key, value);
+            else mapHits++;
+        }
+        double mapTime = (System.nanoTime() - start) / 1E6;
+        double mapHitRatio = (double) mapHits / operations;
+
+        System.out.println(capacity + "\t" + operations + "\t" + String.format("%.1f", cacheTime) + "\t" + String.format("%.3f", cacheHitRatio)
+                + "\t" + evictions + "\t" + String.format("%.1f", mapTime) + "\t" + String.format("%.3f", mapHitRatio));
+    }
+
+    //Verificação aleatória: get/put/remove numa cache com o limite dado e numa LinkedHashMap em modo LRU com o mesmo
+    //limite, com muitas mais chaves do que entradas, para que haja muitas lápides (cópias à cabeça), despejos de
+    //lápides na cauda e passagens de limpeza. Depois de cada operação compara o resultado, o tamanho e a entrada
+    //despejada; de tempos a tempos compara todas as chaves. Lança IllegalStateException na primeira diferença.
+    static void randomizedCheck(int capacity, int operations, long seed)
+    {
+        Random r = new Random(seed);
+        StingyLruCache<Integer, Integer> cache = new StingyLruCache<>(capacity);
+        Integer[] evicted = new Integer[1];
+        Map<Integer, Integer> map = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Integer> eldest) {
+                if(size() <= capacity) return false;
+                evicted[0] = eldest.getKey();
+                return true;
+            }
+        };
+        int keySpace = capacity * 3 + 2;
+        try{
+            for(int op = 0; op < operations; op++){
+                Integer key = r.nextInt(keySpace);
+                int kind = r.nextInt(10);
+                Object expected, actual;
+                evicted[0] = null;
+                if(kind < 5){
+                    expected = map.get(key);
+                    actual = cache.get(key);
+                }
+                else if(kind < 9){
+                    Integer value = r.nextInt();
+                    expected = map.put(key, value);
+                    actual = cache.put(key, value);
+                }
+                else{
+                    expected = map.remove(key);
+                    actual = cache.remove(key);
+                }
+                if(!Objects.equals(expected, actual) || cache.size() != map.size() || (evicted[0] != null && cache.containsKey(evicted[0]))){
+                    throw new IllegalStateException("StingyLruCache(" + capacity + ") differs from LinkedHashMap at operation " + op + " (seed " + seed + ")");
+                }
+                if(op % 1000 == 0){
+                    for(Integer k : map.keySet()){
+                        if(!cache.containsKey(k)){
+                            throw new IllegalStateException("StingyLruCache(" + capacity + ") lost key " + k + " at operation " + op + " (seed " + seed + ")");
+                        }
+                    }
+                }
+            }
+        }
+        finally{
+            cache.close();
+        }
+    }
+
+    //Nota: com 10^7 entradas a LinkedHashMap precisa de perto de 1 GB de HEAP (ex: -Xmx3g).
+    public static void main(String[] args)
+    {
+        long seed = R.nextLong();
+        for(int capacity = 1; capacity <= 10_000; capacity *= 10){
+            randomizedCheck(capacity, 200_000, seed);
+        }
+        System.out.println("verificação aleatória contra a LinkedHashMap: ok (seed " + seed + ")");
+        System.out.println("bytes por entrada\nn\tcache(HEAP)\tcache(fora)\tcache(total)\tLinkedHashMap(HEAP)");
+        for(int n = 100_000; n <= 10_000_000; n *= 10){
+            printFootprint(n);
+        }
+        System.out.println("get/put com acessos enviesados\ncapacidade\toperações\tcache(ms)\tcache(acertos)\tcache(despejos)\tLinkedHashMap(ms)\tLinkedHashMap(acertos)");
+        printWorkload(100_000, 2_000_000);  //aquecimento do JIT
+        for(int capacity = 10_000; capacity <= 1_000_000; capacity *= 10){
+            printWorkload(capacity, 10_000_000);
+        }
+    }
+}
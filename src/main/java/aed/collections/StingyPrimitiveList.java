@@ -0,0 +1,328 @@
+package aed.collections;
+
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.function.LongConsumer;
+import java.util.stream.LongStream;
+import java.util.stream.StreamSupport;
+
+// Base comum das listas sovinas de primitivos (StingyLongList, StingyIntList e StingyDoubleList).
+// Usa os mesmos algoritmos de ligação por XOR da StingyList, mas o 2.º long de cada nó guarda diretamente o valor
+// (um long, ou os bits de um int/double) em vez do endereço de um objeto no HEAP. Assim cada elemento ocupa
+// exatamente um nó de 16 bytes, não há caixas (Long/Integer/Double) para o garbage collector, e nem add nem get
+// alocam memória no HEAP.
+//
+// Toda a navegação (finger, iterador, spliterator) está aqui e trabalha sobre os valores em bruto (long); o finger é o
+// mesmo da StingyList (StingyFinger). As subclasses apenas convertem os valores de e para long e dão nomes sem boxing
+// aos métodos (addLong, getLong, ...).
+
+abstract class StingyPrimitiveList implements AutoCloseable {
+
+    //representamos null como o long 0L.
+    static final long NULL = 0L;
+
+    int size;
+    long first;
+    long last;
+    final UNodeArena arena;
+    private final UNodeStore nodes; //a arena vista como UNodeStore, para o finger a percorrer como na StingyList
+
+    //finger: última posição visitada, como na StingyList
+    private final StingyFinger finger;
+
+    StingyPrimitiveList()
+    {
+        this.size = 0;
+        this.first = NULL;
+        this.last = NULL;
+        this.arena = new UNodeArena();
+        this.nodes = new ArenaNodeStore(this.arena);
+        this.finger = new StingyFinger();
+    }
+
+    long getBeyond(long node, long fromAddr)
+    {
+        return UNode.get_prev_next_addr(node) ^ fromAddr;
+    }
+
+    void addRaw(long value)
+    {
+        //Caso em que a lista está vazia
+        if(this.size == 0){
+            this.first = UNode.create_value_node(this.arena, value, NULL, NULL);
+            this.last = this.first;
+        }
+        else{
+            long tempNodeAddr = this.last;
+            this.last = UNode.create_value_node(this.arena, value, tempNodeAddr, NULL);
+            StingyList.updateNodeReference(tempNodeAddr, NULL, this.last);
+        }
+        this.size++;
+    }
+
+    long removeRaw()
+    {
+        if(this.size == 0){
+            throw new IndexOutOfBoundsException();
+        }
+        long result = UNode.get_value(this.last);
+        long tempNodeAddr = getBeyond(this.last, NULL);
+        if(tempNodeAddr != NULL){
+            StingyList.updateNodeReference(tempNodeAddr, this.last, NULL);
+        }
+        UNode.free_node(this.arena, this.last);
+        this.last = tempNodeAddr;
+        this.size--;
+        if(this.size == 0){
+            this.first = NULL;
+        }
+        this.finger.removedLast(this.size);
+        return result;
+    }
+
+    long getRaw()
+    {
+        if(this.size == 0){
+            throw new IndexOutOfBoundsException();
+        }
+        return UNode.get_value(this.last);
+    }
+
+    long getRaw(int i)
+    {
+        if(i < 0 || i >= this.size){
+            throw new IndexOutOfBoundsException();
+        }
+        return UNode.get_value(seek(i));
+    }
+
+    void setRaw(int i, long value)
+    {
+        if(i < 0 || i >= this.size){
+            throw new IndexOutOfBoundsException();
+        }
+        UNode.set_value(seek(i), value);
+    }
+
+    void addAtRaw(int i, long value)
+    {
+        if(i < 0 || i > this.size){
+            throw new IndexOutOfBoundsException();
+        }
+        //Caso em que i é o fim da lista (inclui a lista vazia)
+        if(i == this.size){
+            addRaw(value);
+        }
+        //Caso em que i é o início da lista
+        else if(i == 0){
+            long tempNodeAddr = this.first;
+            this.first = UNode.create_value_node(this.arena, value, NULL, tempNodeAddr);
+            StingyList.updateNodeReference(tempNodeAddr, NULL, this.first);
+            this.finger.addedFirst(this.first);
+            this.size++;
+        }
+        else{
+            long iAddr = seek(i);
+            long iPrevAddr = this.finger.prevAddr;
+            long newNode = UNode.create_value_node(this.arena, value, iPrevAddr, iAddr);
+            StingyList.updateNodeReference(iPrevAddr, iAddr, newNode);
+            StingyList.updateNodeReference(iAddr, iPrevAddr, newNode);
+            this.finger.addr = newNode;
+            this.size++;
+        }
+    }
+
+    long removeAtRaw(int i)
+    {
+        if(i < 0 || i >= this.size){
+            throw new IndexOutOfBoundsException();
+        }
+        //Caso em que i é o fim da lista
+        if(i == this.size-1){
+            return removeRaw();
+        }
+        long iAddr = seek(i);
+        long iPrevAddr = this.finger.prevAddr;
+        long iNextAddr = getBeyond(iAddr, iPrevAddr);
+        long result = UNode.get_value(iAddr);
+        if(iPrevAddr != NULL){
+            StingyList.updateNodeReference(iPrevAddr, iAddr, iNextAddr);
+        }
+        else{
+            this.first = iNextAddr;
+        }
+        StingyList.updateNodeReference(iNextAddr, iAddr, iPrevAddr);
+        UNode.free_node(this.arena, iAddr);
+        this.finger.addr = iNextAddr;    //o nó i+1 passou a ser a posição i
+        this.size--;
+        return result;
+    }
+
+    //Coloca o finger na posição i e devolve o endereço do nó nessa posição (o do nó i-1 fica em finger.prevAddr).
+    private long seek(int i)
+    {
+        return this.finger.seek(this.nodes, this.first, this.last, this.size, i);
+    }
+
+    public void reverse()
+    {
+        long tempAddr = this.first;
+        this.first = this.last;
+        this.last = tempAddr;
+        this.finger.reversed(this.nodes, this.size);
+    }
+
+    public void clear()
+    {
+        //todos os nós vêm da arena desta lista, por isso podemos libertá-los todos de uma vez
+        this.arena.freeAll();
+        this.first = NULL;
+        this.last = NULL;
+        this.size = 0;
+        this.finger.invalidate();
+    }
+
+    // Liberta a memória fora do HEAP ocupada pela lista (a lista fica vazia, mas pode continuar a ser usada).
+    @Override
+    public void close()
+    {
+        clear();
+    }
+
+    public boolean isEmpty()
+    {
+        return this.size == 0;
+    }
+
+    public int size()
+    {
+        return this.size;
+    }
+
+    // Memória fora do HEAP reservada pela lista, em bytes (16 bytes por nó, mais a folga do último slab da arena).
+    public long nativeMemoryBytes()
+    {
+        return this.arena.reservedBytes();
+    }
+
+    // Percorre os valores em bruto, do first para o last.
+    void forEachRaw(LongConsumer action)
+    {
+        long prevI = NULL;
+        for(long i = this.first; i != NULL; ){
+            action.accept(UNode.get_value(i));
+            long tempPrevI = prevI;
+            prevI = i;
+            i = getBeyond(i, tempPrevI);
+        }
+    }
+
+    // Stream dos valores em bruto, sobre um spliterator que se divide (ver RawSpliterator). As subclasses fazem
+    // mapToInt/mapToDouble sobre ele, o que mantém o tamanho conhecido e a divisão para streams paralelas.
+    LongStream rawStream()
+    {
+        return StreamSupport.longStream(new RawSpliterator(NULL, this.first, this.size), false);
+    }
+
+    // Iterador sobre os valores em bruto (long) dos nós, usado pelos iteradores primitivos das subclasses.
+    class RawIterator {
+
+        long prevI;
+
+        long i;
+
+        RawIterator(){
+            this.prevI = NULL;
+            this.i = first;
+        }
+
+        public boolean hasNext() {
+            return this.i != NULL;
+        }
+
+        long nextRaw() {
+            if(this.i == NULL){
+                throw new NoSuchElementException();
+            }
+            long result = UNode.get_value(this.i);
+            long tempPrevI = this.prevI;
+            this.prevI = this.i;
+            this.i = getBeyond(this.i, tempPrevI);
+            return result;
+        }
+    }
+
+    // Spliterator dos valores em bruto, como o StingyListSpliterator: percorre um intervalo de remaining nós a partir
+    // de i (com prevI antes dele) e, para se dividir, anda até ao meio do intervalo e fica com a segunda metade.
+    // Não indica IMMUTABLE porque a lista pode ser alterada enquanto é percorrida.
+    private class RawSpliterator implements Spliterator.OfLong {
+
+        private static final int MIN_SPLIT_SIZE = 1024;  //intervalos mais pequenos não compensam ser divididos
+
+        long prevI;
+
+        long i;
+
+        int remaining;  //número de elementos que faltam percorrer
+
+        RawSpliterator(long prevI, long i, int remaining){
+            this.prevI = prevI;
+            this.i = i;
+            this.remaining = remaining;
+        }
+
+        @Override
+        public boolean tryAdvance(LongConsumer action) {
+            if(this.remaining == 0){
+                return false;
+            }
+            action.accept(UNode.get_value(this.i));
+            advance();
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(LongConsumer action) {
+            while(this.remaining > 0){
+                action.accept(UNode.get_value(this.i));
+                advance();
+            }
+        }
+
+        private void advance(){
+            this.remaining--;
+            if(this.remaining > 0){
+                long tempPrevI = this.prevI;
+                this.prevI = this.i;
+                this.i = getBeyond(this.i, tempPrevI);
+            }
+        }
+
+        // Fica com a segunda metade do intervalo e devolve um spliterator para a primeira metade.
+        @Override
+        public Spliterator.OfLong trySplit() {
+            if(this.remaining < MIN_SPLIT_SIZE){
+                return null;
+            }
+            int half = this.remaining / 2;
+            Spliterator.OfLong prefix = new RawSpliterator(this.prevI, this.i, half);
+            for(int k = 0; k < half; k++){
+                long tempPrevI = this.prevI;
+                this.prevI = this.i;
+                this.i = getBeyond(this.i, tempPrevI);
+            }
+            this.remaining -= half;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return this.remaining;
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | SIZED | SUBSIZED | NONNULL;
+        }
+    }
+}
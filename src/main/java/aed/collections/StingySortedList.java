@@ -0,0 +1,653 @@
+package aed.collections;
+
+import sun.misc.Unsafe;
+
+import java.lang.ref.Reference;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+// Lista sovina ordenada: a lista de base é a lista duplamente ligada por XOR da StingyList (os nós vêm de uma
+// UNodeStore, por omissão uma HandleNodeStore), sempre por ordem crescente, e por cima dela há níveis "expresso" à
+// maneira de uma skip list, também fora do HEAP, para chegar a qualquer chave em O(log n) esperado.
+//
+// Cada nó da base tem probabilidade 1/4 de ter uma torre, que aparece nos níveis 1..h (com P(h >= k) = 4^-k). Uma
+// torre é um bloco fora do HEAP cortado da arena do seu tamanho (uma UNodeArena por altura):
+//
+//   ,-----------+------------------+------------+-----+------------.
+//   | nó base   | anterior do nó   | next nível 1| ... | next nível h|
+//   `-----------+------------------+------------+-----+------------'
+//      8 bytes        8 bytes          8 bytes por nível
+//
+// Como a base é ligada por XOR, para andar a partir do nó de uma torre é preciso saber também o nó anterior, por isso a
+// torre guarda-o. Esse anterior só muda quando se insere ou remove um nó mesmo antes do nó da torre, e essa torre é
+// sempre a próxima torre do nível 1 no caminho da pesquisa, por isso é atualizada em O(1).
+// Em média há 1/3 de nível por elemento, o que dá cerca de 6,7 bytes de torres por elemento, mais os 16 bytes do nó.
+//
+// A pesquisa desce os níveis expresso (andando para a frente enquanto o item da próxima torre for menor que a chave)
+// e acaba na base, a partir da última torre, com em média 4 nós por percorrer. Depois disso a base permite percorrer
+// as chaves nos dois sentidos a partir de qualquer ponto. Itens iguais (compare == 0) podem repetir-se: insert põe o
+// novo item depois dos iguais que já existem.
+//
+// Os iteradores não suportam alterações da lista enquanto estão a ser usados. Não é thread-safe.
+
+public class StingySortedList<T> implements Iterable<T>, AutoCloseable {
+
+    //representamos null como o long 0L (e nos arrays de predecessores, NULL é a cabeça dos níveis expresso).
+    private static final long NULL = 0L;
+    private static final Unsafe UNSAFE = UnsafeHelper.getUnsafe();
+
+    static final int MAX_LEVEL = 15;    //4^15 torres no nível mais alto: mais do que cabe num size() int
+    private static final long BASE_OFFSET = 0L;
+    private static final long PREV_OFFSET = 8L;
+    private static final long NEXT_OFFSET = 8L;    //o next do nível l fica em NEXT_OFFSET + 8*l (l >= 1)
+
+    private final Comparator<? super T> comparator;    //null para a ordem natural
+    private final UNodeStore nodes;
+    private boolean owner;              //true enquanto a lista está registada como dona da store (ver close)
+    private final UNodeArena[] towers;  //towers[h] corta torres de altura h
+    private final long[] headNext;      //next da cabeça em cada nível expresso
+    private final long[] update;        //última torre antes da chave em cada nível, preenchido por search
+    private int level;                  //maior altura de uma torre da lista
+    private int seed;                   //xorshift para as alturas das torres
+
+    private int size;
+    private long first;
+    private long last;
+
+    //resultado de search: o último nó da base que passa o teste e o primeiro que não passa
+    private long foundPrev;
+    private long found;
+
+    // Lista ordenada pela ordem natural dos itens (que têm de ser Comparable).
+    public StingySortedList()
+    {
+        this(null);
+    }
+
+    // Lista ordenada pelo comparator (ou pela ordem natural, se for null).
+    public StingySortedList(Comparator<? super T> comparator)
+    {
+        this(comparator, new HandleNodeStore());
+    }
+
+    // Lista cujos nós da base são guardados na store recebida.
+    public StingySortedList(Comparator<? super T> comparator, UNodeStore nodes)
+    {
+        this.comparator = comparator;
+        this.nodes = nodes;
+        this.nodes.retain();
+        this.owner = true;
+        this.towers = new UNodeArena[MAX_LEVEL + 1];
+        for(int h = 1; h <= MAX_LEVEL; h++){
+            this.towers[h] = new UNodeArena(NEXT_OFFSET + 8L * h + 8L);
+        }
+        this.headNext = new long[MAX_LEVEL + 1];
+        this.update = new long[MAX_LEVEL + 1];
+        this.level = 0;
+        this.seed = new Random().nextInt() | 1;
+        this.size = 0;
+        this.first = NULL;
+        this.last = NULL;
+    }
+
+    //Métodos de acesso às torres (a torre NULL é a cabeça)
+
+    private long next(long tower, int l)
+    {
+        return (tower == NULL) ? this.headNext[l] : UNSAFE.getLong(tower + NEXT_OFFSET + 8L * l);
+    }
+
+    private void setNext(long tower, int l, long next)
+    {
+        if(tower == NULL) this.headNext[l] = next;
+        else UNSAFE.putLong(tower + NEXT_OFFSET + 8L * l, next);
+    }
+
+    private static long base(long tower)
+    {
+        return UNSAFE.getLong(tower + BASE_OFFSET);
+    }
+
+    private static long prev(long tower)
+    {
+        return UNSAFE.getLong(tower + PREV_OFFSET);
+    }
+
+    private static void setPrev(long tower, long prev)
+    {
+        UNSAFE.putLong(tower + PREV_OFFSET, prev);
+    }
+
+    private T item(long node)
+    {
+        return this.nodes.item(node);
+    }
+
+    @SuppressWarnings("unchecked")
+    private int compare(T a, T b)
+    {
+        return (this.comparator != null) ? this.comparator.compare(a, b) : ((Comparable<? super T>) a).compareTo(b);
+    }
+
+    //altura de uma torre nova: 0 com probabilidade 3/4, e cada nível seguinte com probabilidade 1/4
+    private int randomLevel()
+    {
+        int x = this.seed;
+        x ^= x << 13;
+        x ^= x >>> 17;
+        x ^= x << 5;
+        this.seed = x;
+        return Integer.numberOfTrailingZeros(x | (1 << 30)) / 2;
+    }
+
+    // Procura a posição da chave: se inclusive, a posição depois dos itens iguais à chave, senão antes deles. No fim,
+    // found é o primeiro nó da base cujo item não passa o teste (item < chave, ou item <= chave) e foundPrev o último
+    // que passa (NULL se não houver), e update[l] é a última torre do nível l que passa o teste (NULL = cabeça).
+    private void search(T key, boolean inclusive)
+    {
+        long tower = NULL;
+        for(int l = this.level; l >= 1; l--){
+            long next = next(tower, l);
+            while(next != NULL && passes(item(base(next)), key, inclusive)){
+                tower = next;
+                next = next(tower, l);
+            }
+            this.update[l] = tower;
+        }
+        long prevAddr;
+        long addr;
+        if(tower == NULL){
+            prevAddr = NULL;
+            addr = this.first;
+        }
+        else{
+            prevAddr = prev(tower);
+            addr = base(tower);
+        }
+        while(addr != NULL && passes(item(addr), key, inclusive)){
+            long nextAddr = this.nodes.links(addr) ^ prevAddr;
+            prevAddr = addr;
+            addr = nextAddr;
+        }
+        this.foundPrev = prevAddr;
+        this.found = addr;
+    }
+
+    private boolean passes(T item, T key, boolean inclusive)
+    {
+        int c = compare(item, key);
+        return inclusive ? c <= 0 : c < 0;
+    }
+
+    //primeira torre do nível 1 depois do caminho da última pesquisa (a única cujo anterior pode ter mudado)
+    private long nextTower()
+    {
+        return (this.level >= 1) ? next(this.update[1], 1) : NULL;
+    }
+
+    // Insere o item na sua posição (depois dos itens iguais que já existam). Custa O(log n) esperado.
+    public void insert(T item)
+    {
+        if(item == null){
+            throw new IllegalArgumentException("Cannot insert null");
+        }
+        search(item, true);
+        long prevAddr = this.foundPrev;
+        long nextAddr = this.found;
+        if(!this.owner){
+            this.nodes.retain();    //a lista tinha sido fechada e volta a ter nós
+            this.owner = true;
+        }
+        long node = this.nodes.create(item, prevAddr, nextAddr);
+        if(prevAddr != NULL) this.nodes.relink(prevAddr, nextAddr, node);
+        else this.first = node;
+        if(nextAddr != NULL) this.nodes.relink(nextAddr, prevAddr, node);
+        else this.last = node;
+        //se o nó seguinte tem torre, o seu anterior passou a ser o nó novo
+        long following = nextTower();
+        if(following != NULL && base(following) == nextAddr){
+            setPrev(following, node);
+        }
+        int h = randomLevel();
+        if(h > 0){
+            for(int l = this.level + 1; l <= h; l++){
+                this.update[l] = NULL;
+            }
+            this.level = Math.max(this.level, h);
+            long tower = this.towers[h].allocate();
+            UNSAFE.putLong(tower + BASE_OFFSET, node);
+            setPrev(tower, prevAddr);
+            for(int l = 1; l <= h; l++){
+                setNext(tower, l, next(this.update[l], l));
+                setNext(this.update[l], l, tower);
+            }
+        }
+        this.size++;
+    }
+
+    // Remove o primeiro item igual à chave (compare == 0). Devolve false se não houver nenhum. Custa O(log n) esperado.
+    public boolean remove(T key)
+    {
+        if(key == null){
+            throw new IllegalArgumentException("Key cannot be null");
+        }
+        if(this.size == 0){
+            return false;
+        }
+        search(key, false);
+        long node = this.found;
+        if(node == NULL || compare(item(node), key) != 0){
+            return false;
+        }
+        long prevAddr = this.foundPrev;
+        long nextAddr = this.nodes.links(node) ^ prevAddr;
+        if(prevAddr != NULL) this.nodes.relink(prevAddr, node, nextAddr);
+        else this.first = nextAddr;
+        if(nextAddr != NULL) this.nodes.relink(nextAddr, node, prevAddr);
+        else this.last = prevAddr;
+        long following = nextTower();
+        //se o nó tinha torre, a torre sai de todos os seus níveis (é a próxima torre de cada nível no caminho)
+        if(following != NULL && base(following) == node){
+            long tower = following;
+            following = next(tower, 1);
+            int h = 0;
+            while(h < this.level && next(this.update[h + 1], h + 1) == tower){
+                h++;
+                setNext(this.update[h], h, next(tower, h));
+            }
+            this.towers[h].free(tower);
+            while(this.level > 0 && this.headNext[this.level] == NULL){
+                this.level--;
+            }
+        }
+        //se o nó seguinte tem torre, o seu anterior passou a ser o anterior do nó removido
+        if(following != NULL && base(following) == nextAddr){
+            setPrev(following, prevAddr);
+        }
+        this.nodes.free(node);
+        this.size--;
+        return true;
+    }
+
+    public boolean contains(T key)
+    {
+        if(key == null){
+            throw new IllegalArgumentException("Key cannot be null");
+        }
+        search(key, false);
+        return this.found != NULL && compare(item(this.found), key) == 0;
+    }
+
+    // Maior item <= key, ou null se não houver.
+    public T floor(T key)
+    {
+        return neighbour(key, true, false);
+    }
+
+    // Menor item >= key, ou null se não houver.
+    public T ceiling(T key)
+    {
+        return neighbour(key, false, true);
+    }
+
+    // Maior item < key, ou null se não houver.
+    public T lower(T key)
+    {
+        return neighbour(key, false, false);
+    }
+
+    // Menor item > key, ou null se não houver.
+    public T higher(T key)
+    {
+        return neighbour(key, true, true);
+    }
+
+    private T neighbour(T key, boolean inclusive, boolean after)
+    {
+        if(key == null){
+            throw new IllegalArgumentException("Key cannot be null");
+        }
+        search(key, inclusive);
+        long node = after ? this.found : this.foundPrev;
+        return (node != NULL) ? item(node) : null;
+    }
+
+    public T first()
+    {
+        if(this.size == 0){
+            throw new NoSuchElementException();
+        }
+        return item(this.first);
+    }
+
+    public T last()
+    {
+        if(this.size == 0){
+            throw new NoSuchElementException();
+        }
+        return item(this.last);
+    }
+
+    public int size()
+    {
+        return this.size;
+    }
+
+    public boolean isEmpty()
+    {
+        return this.size == 0;
+    }
+
+    // Remove todos os itens e liberta os nós e as torres.
+    public void clear()
+    {
+        if(!this.owner) return;    //fechada: já não tem nós (e a store pode ser de outra lista)
+        if(this.nodes.canFreeAll()) this.nodes.freeAll();
+        else if(this.first != NULL) this.nodes.freeChain(this.first);
+        for(int h = 1; h <= MAX_LEVEL; h++){
+            this.towers[h].freeAll();
+        }
+        Arrays.fill(this.headNext, NULL);
+        this.level = 0;
+        this.size = 0;
+        this.first = NULL;
+        this.last = NULL;
+    }
+
+    // Remove todos os itens e deixa de ser dona da store (que, se for partilhada, pode voltar a ser libertada de uma
+    // só vez pela outra dona). A lista pode continuar a ser usada.
+    @Override
+    public void close()
+    {
+        clear();
+        if(this.owner){
+            this.nodes.release();
+            this.owner = false;
+        }
+    }
+
+    // Memória fora do HEAP reservada pela lista, em bytes (nós da base e torres, incluindo a folga das arenas).
+    public long nativeMemoryBytes()
+    {
+        long bytes = this.nodes.reservedBytes();
+        for(int h = 1; h <= MAX_LEVEL; h++){
+            bytes += this.towers[h].reservedBytes();
+        }
+        return bytes;
+    }
+
+    // Todos os itens por ordem crescente.
+    @Override
+    public Iterator<T> iterator()
+    {
+        return new SortedListIterator(this.first, NULL);
+    }
+
+    // Todos os itens por ordem decrescente.
+    public Iterator<T> descendingIterator()
+    {
+        return new SortedListIterator(this.last, NULL);
+    }
+
+    // Os itens >= key, por ordem crescente. Custa O(log n) para começar e O(1) por item.
+    public Iterator<T> ascendingFrom(T key)
+    {
+        if(key == null){
+            throw new IllegalArgumentException("Key cannot be null");
+        }
+        search(key, false);
+        return new SortedListIterator(this.found, this.foundPrev);
+    }
+
+    // Os itens <= key, por ordem decrescente. Custa O(log n) para começar e O(1) por item.
+    public Iterator<T> descendingFrom(T key)
+    {
+        if(key == null){
+            throw new IllegalArgumentException("Key cannot be null");
+        }
+        search(key, true);
+        return new SortedListIterator(this.foundPrev, this.found);
+    }
+
+    // Percorre a base a partir do nó node, afastando-se do nó from (o vizinho de onde vem): como as ligações são XOR,
+    // o mesmo código serve para os dois sentidos.
+    private class SortedListIterator implements Iterator<T> {
+
+        private long node;
+        private long from;
+
+        SortedListIterator(long node, long from)
+        {
+            this.node = node;
+            this.from = from;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return this.node != NULL;
+        }
+
+        @Override
+        public T next() {
+            if(this.node == NULL){
+                throw new NoSuchElementException();
+            }
+            T result = item(this.node);
+            long tempFrom = this.from;
+            this.from = this.node;
+            this.node = nodes.links(this.node) ^ tempFrom;
+            return result;
+        }
+    }
+
+    //Benchmark: memória por elemento e tempo de insert, floor e remove de chaves aleatórias com esta lista, com uma
+    //TreeSet (uma TreeMap por baixo) e com uma ConcurrentSkipListSet.
+
+    private static final Random R = new Random();
+
+    //as chaves são criadas antes, por isso só se mede a memória das estruturas
+    private static void printFootprint(int n)
+    {
+        Long[] keys = new Long[n];
+        for(int i = 0; i < n; i++){
+            keys[i] = R.nextLong();
+        }
+        long before = TemporalAnalysisUtils.getUsedHeap();
+        StingySortedList<Long> sorted = new StingySortedList<>();
+        for(Long key : keys){
+            sorted.insert(key);
+        }
+        long sortedHeap = TemporalAnalysisUtils.getUsedHeap() - before;
+        long sortedNative = sorted.nativeMemoryBytes();
+        sorted.close();
+        sorted = null;
+
+        before = TemporalAnalysisUtils.getUsedHeap();
+        TreeSet<Long> tree = new TreeSet<>();
+        for(Long key : keys){
+            tree.add(key);
+        }
+        long treeHeap = TemporalAnalysisUtils.getUsedHeap() - before;
+        Reference.reachabilityFence(tree);    //a TreeSet não pode ser recolhida antes de ser medida
+        tree = null;
+
+        before = TemporalAnalysisUtils.getUsedHeap();
+        ConcurrentSkipListSet<Long> skipList = new ConcurrentSkipListSet<>();
+        for(Long key : keys){
+            skipList.add(key);
+        }
+        long skipListHeap = TemporalAnalysisUtils.getUsedHeap() - before;
+        Reference.reachabilityFence(skipList);
+        skipList = null;
+
+        System.out.println(n + "\t" + String.format("%.2f", (double) sortedHeap / n) + "\t" + String.format("%.2f", (double) sortedNative / n)
+                + "\t" + String.format("%.2f", (double) (sortedHeap + sortedNative) / n) + "\t" + String.format("%.2f", (double) treeHeap / n)
+                + "\t" + String.format("%.2f", (double) skipListHeap / n));
+    }
+
+    //tempo médio (ns) de insert, floor e remove de n chaves aleatórias em cada estrutura
+    private static void printLatency(int n)
+    {
+        Long[] keys = new Long[n];
+        Long[] queries = new Long[n];
+        for(int i = 0; i < n; i++){
+            keys[i] = R.nextLong();
+            queries[i] = R.nextLong();
+        }
+        long sum = 0;
+
+        StingySortedList<Long> sorted = new StingySortedList<>();
+        long start = System.nanoTime();
+        for(Long key : keys) sorted.insert(key);
+        long sortedInsert = System.nanoTime() - start;
+        start = System.nanoTime();
+        for(Long query : queries){
+            Long floor = sorted.floor(query);
+            if(floor != null) sum += floor;
+        }
+        long sortedFloor = System.nanoTime() - start;
+        start = System.nanoTime();
+        for(Long key : keys) sorted.remove(key);
+        long sortedRemove = System.nanoTime() - start;
+        sorted.close();
+
+        TreeSet<Long> tree = new TreeSet<>();
+        start = System.nanoTime();
+        for(Long key : keys) tree.add(key);
+        long treeInsert = System.nanoTime() - start;
+        start = System.nanoTime();
+        for(Long query : queries){
+            Long floor = tree.floor(query);
+            if(floor != null) sum += floor;
+        }
+        long treeFloor = System.nanoTime() - start;
+        start = System.nanoTime();
+        for(Long key : keys) tree.remove(key);
+        long treeRemove = System.nanoTime() - start;
+
+        ConcurrentSkipListSet<Long> skipList = new ConcurrentSkipListSet<>();
+        start = System.nanoTime();
+        for(Long key : keys) skipList.add(key);
+        long skipListInsert = System.nanoTime() - start;
+        start = System.nanoTime();
+        for(Long query : queries){
+            Long floor = skipList.floor(query);
+            if(floor != null) sum += floor;
+        }
+        long skipListFloor = System.nanoTime() - start;
+        start = System.nanoTime();
+        for(Long key : keys) skipList.remove(key);
+        long skipListRemove = System.nanoTime() - start;
+
+        System.out.println(n + "\t" + nanosPerOp(sortedInsert, n) + "\t" + nanosPerOp(sortedFloor, n) + "\t" + nanosPerOp(sortedRemove, n)
+                + "\t" + nanosPerOp(treeInsert, n) + "\t" + nanosPerOp(treeFloor, n) + "\t" + nanosPerOp(treeRemove, n)
+                + "\t" + nanosPerOp(skipListInsert, n) + "\t" + nanosPerOp(skipListFloor, n) + "\t" + nanosPerOp(skipListRemove, n)
+                + "\t" + sum);
+    }
+
+    private static String nanosPerOp(long nanos, int n)
+    {
+        return String.format("%.0f", (double) nanos / n);
+    }
+
+    //Verificação aleatória: insert/remove de chaves repetidas numa StingySortedList e numa TreeMap com o número de
+    //cópias de cada chave (uma TreeSet não guarda repetidos). Depois de cada operação compara o resultado, o tamanho,
+    //as pontas e floor/ceiling/lower/higher/contains de uma chave ao acaso, e os primeiros itens de ascendingFrom e
+    //descendingFrom, que arrancam de uma torre e dependem do anterior guardado nela. De tempos a tempos compara a
+    //lista inteira nos dois sentidos. Lança IllegalStateException na primeira diferença.
+    static void randomizedCheck(int range, int operations, long seed)
+    {
+        Random r = new Random(seed);
+        StingySortedList<Integer> list = new StingySortedList<>();
+        TreeMap<Integer, Integer> counts = new TreeMap<>();
+        int size = 0;
+        try{
+            for(int op = 0; op < operations; op++){
+                Integer key = r.nextInt(range);
+                boolean same;
+                if(r.nextInt(10) < 5){
+                    list.insert(key);
+                    counts.merge(key, 1, Integer::sum);
+                    size++;
+                    same = true;
+                }
+                else{
+                    Integer count = counts.get(key);
+                    if(count == null){
+                        same = !list.remove(key);
+                    }
+                    else{
+                        same = list.remove(key);
+                        if(count == 1) counts.remove(key);
+                        else counts.put(key, count - 1);
+                        size--;
+                    }
+                }
+                Integer query = r.nextInt(range + 2) - 1;
+                same = same && list.size() == size
+                        && Objects.equals(list.floor(query), counts.floorKey(query))
+                        && Objects.equals(list.ceiling(query), counts.ceilingKey(query))
+                        && Objects.equals(list.lower(query), counts.lowerKey(query))
+                        && Objects.equals(list.higher(query), counts.higherKey(query))
+                        && list.contains(query) == counts.containsKey(query)
+                        && (size == 0 || (list.first().equals(counts.firstKey()) && list.last().equals(counts.lastKey())))
+                        && sameItems(list.ascendingFrom(query), counts.tailMap(query, true), false, 4)
+                        && sameItems(list.descendingFrom(query), counts.headMap(query, true).descendingMap(), false, 4);
+                if(same && op % 500 == 0){
+                    same = sameItems(list.iterator(), counts, true, size) && sameItems(list.descendingIterator(), counts.descendingMap(), true, size);
+                }
+                if(!same){
+                    throw new IllegalStateException("StingySortedList differs from TreeMap at operation " + op + " (range " + range + ", seed " + seed + ")");
+                }
+            }
+        }
+        finally{
+            list.close();
+        }
+    }
+
+    //true se o iterador devolve as chaves do mapa, cada uma repetida tantas vezes quanto a sua contagem, pela mesma
+    //ordem, até limit itens; se exhaust, o iterador também tem de acabar ali
+    private static boolean sameItems(Iterator<Integer> it, Map<Integer, Integer> counts, boolean exhaust, int limit)
+    {
+        int seen = 0;
+        for(Map.Entry<Integer, Integer> entry : counts.entrySet()){
+            for(int c = 0; c < entry.getValue(); c++){
+                if(seen == limit){
+                    return !exhaust || !it.hasNext();
+                }
+                if(!it.hasNext() || !it.next().equals(entry.getKey())){
+                    return false;
+                }
+                seen++;
+            }
+        }
+        return !it.hasNext();
+    }
+
+    public static void main(String[] args)
+    {
+        long seed = R.nextLong();
+        for(int range = 4; range <= 40_000; range *= 10){
+            randomizedCheck(range, 100_000, seed);
+        }
+        System.out.println("verificação aleatória contra a TreeMap: ok (seed " + seed + ")");
+        System.out.println("bytes por elemento\nn\tStingySortedList(HEAP)\tStingySortedList(fora)\tStingySortedList(total)\tTreeSet\tConcurrentSkipListSet");
+        for(int n = 100_000; n <= 10_000_000; n *= 10){
+            printFootprint(n);
+        }
+        System.out.println("ns por operação\nn\tinsert\tfloor\tremove\tTreeSet insert\tfloor\tremove\tConcurrentSkipListSet insert\tfloor\tremove\tsoma dos floor");
+        printLatency(100_000);  //aquecimento do JIT
+        for(int n = 10_000; n <= 1_000_000; n *= 10){
+            printLatency(n);
+        }
+    }
+}
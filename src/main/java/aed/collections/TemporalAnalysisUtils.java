@@ -215,6 +215,18 @@ public class TemporalAnalysisUtils {
         return getAverageCPUTime(method,DEFAULT_TRIALS);
     }
 
+    //this method returns the heap memory in use, in bytes, after running the garbage collector a few times,
+    //so that the difference between two calls approximates the memory retained by what was created between them
+    public static long getUsedHeap()
+    {
+        for(int i = 0; i < 3; i++)
+        {
+            System.gc();
+        }
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
     private static long getCPUTime(ThreadMXBean threadMXBean, long[] allThreadIds)
     {
         long nano = 0;
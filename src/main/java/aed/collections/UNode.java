@@ -58,6 +58,8 @@ public class UNode {
     {
         assert UNSAFE != null;
         long addr = UNSAFE.allocateMemory(16L);
+        UNodeMemoryStats.nodeAllocated();
+        UNodeMemoryStats.bytesReserved(16L);
         set_prev_next_addr(addr, previous^next);
         set_item(addr, item);
         return addr;
@@ -69,6 +71,45 @@ public class UNode {
     {
         assert UNSAFE != null;
         UNSAFE.freeMemory(nodeAddr);
+        UNodeMemoryStats.nodeFreed();
+        UNodeMemoryStats.bytesReleased(16L);
+    }
+
+    // Versão do construtor que corta o nó de uma UNodeArena em vez de fazer um allocateMemory por nó.
+    // Se a arena for null, o nó é criado com allocateMemory, tal como no construtor original.
+    public static <T> long create_node(UNodeArena arena, T item, long previous, long next)
+    {
+        if(arena == null) return create_node(item, previous, next);
+        long addr = arena.allocate();
+        set_prev_next_addr(addr, previous^next);
+        set_item(addr, item);
+        return addr;
+    }
+
+    // Liberta um nó criado com create_node(arena, ...). O nó volta para a lista de nós livres da arena, ou é libertado
+    // com freeMemory se a arena for null.
+    public static void free_node(UNodeArena arena, long nodeAddr)
+    {
+        if(arena == null) free_node(nodeAddr);
+        else arena.free(nodeAddr);
+    }
+
+    // Liberta de uma só vez todos os nós de uma cadeia ligada por XOR que já foi separada da lista (o prev do 1.º nó e o
+    // next do último são NULL). Com arena, os nós voltam todos para a lista de nós livres da arena.
+    public static void free_chain(UNodeArena arena, long headAddr)
+    {
+        if(arena != null){
+            arena.freeChain(headAddr);
+            return;
+        }
+        long prevAddr = NULL;
+        long addr = headAddr;
+        while(addr != NULL){
+            long nextAddr = get_prev_next_addr(addr) ^ prevAddr;    //lemos o próximo antes de libertar o nó atual
+            free_node(addr);
+            prevAddr = addr;
+            addr = nextAddr;
+        }
     }
 
     // Dado um endereço de memória de um nó, devolve o valor guardado como xor dos endereços previous e next.
@@ -87,6 +128,41 @@ public class UNode {
         UNSAFE.putLong(null,nodeAddr,prev_next_addr);
     }
 
+    // Construtor de nós que guardam diretamente um valor primitivo de 64 bits (long, ou os bits de um int/double) no
+    // 2.º long do nó, em vez do endereço de um objeto. O nó continua a ocupar 16 bytes.
+    public static long create_value_node(UNodeArena arena, long value, long previous, long next)
+    {
+        assert UNSAFE != null;
+        long addr;
+        if(arena == null){
+            addr = UNSAFE.allocateMemory(16L);
+            UNodeMemoryStats.nodeAllocated();
+            UNodeMemoryStats.bytesReserved(16L);
+        }
+        else{
+            addr = arena.allocate();
+        }
+        set_prev_next_addr(addr, previous^next);
+        set_value(addr, value);
+        return addr;
+    }
+
+    // Dado um endereço de memória de um nó criado com create_value_node, devolve o valor guardado no nó.
+    public static long get_value(long nodeAddr) throws NullPointerException
+    {
+        assert UNSAFE != null;
+        if(nodeAddr == NULL) throw new NullPointerException("Trying to get value of NULL address");
+        return UNSAFE.getLong(nodeAddr+ITEM_OFFSET);
+    }
+
+    // Dado um endereço de memória de um nó criado com create_value_node, guarda o novo valor no nó.
+    public static void set_value(long nodeAddr, long value) throws NullPointerException
+    {
+        assert UNSAFE != null;
+        if(nodeAddr == NULL) throw new NullPointerException("Trying to set value of NULL address");
+        UNSAFE.putLong(null,nodeAddr+ITEM_OFFSET,value);
+    }
+
     // Dado um endereço de memória de um nó, devolve o item que foi guardado nesse nó.
     @SuppressWarnings("unchecked")
     public static <T> T get_item(long nodeAddr) throws NullPointerException
@@ -0,0 +1,380 @@
+package aed.collections;
+
+import sun.misc.Unsafe;
+
+import java.lang.ref.Cleaner;
+import java.util.Random;
+
+// Alocador de nós por "arena" (slab allocator) para os UNodes.
+// Em vez de chamar allocateMemory(16) por cada nó criado e freeMemory por cada nó apagado (um malloc/free por elemento),
+// a arena reserva blocos grandes de memória fora do HEAP (slabs) e vai cortando nós desses blocos.
+// Os nós libertados não são devolvidos ao sistema: ficam numa lista de nós livres intrusiva, isto é, o 1.º long de um
+// nó livre guarda o endereço do próximo nó livre, pelo que a lista de livres não gasta memória nenhuma extra.
+// A memória dos slabs só é devolvida ao sistema quando chamamos freeAll().
+//
+// Os slabs crescem geometricamente (64, 128, 256, ... nós) até um máximo, para que listas pequenas não reservem
+// muita memória e listas grandes façam poucas reservas.
+//
+// Como rede de segurança, cada arena regista-se num Cleaner: se a arena deixar de ser alcançável sem que tenha sido
+// chamado freeAll(), os slabs que ainda tiver são libertados quando o garbage collector a recolher.
+//
+// Uma arena não é thread-safe: deve ser usada por uma única lista (ou por listas usadas na mesma thread).
+// A arena conta as listas que a usam (retain/release): só uma arena com uma única dona pode ser libertada de uma só
+// vez pela lista, por isso as listas que partilham uma arena devem ser fechadas (close) quando deixam de ser usadas.
+
+public class UNodeArena {
+
+    //representamos null como o long 0L.
+    private static final long NULL = 0L;
+    private static final Unsafe UNSAFE = UnsafeHelper.getUnsafe();
+
+    static final long DEFAULT_NODE_SIZE = 16L;
+    private static final int FIRST_SLAB_NODES = 64;
+    private static final int MAX_SLAB_NODES = 1 << 16;
+    private static final Cleaner CLEANER = Cleaner.create();
+
+    private final long nodeSize;    //tamanho em bytes de cada nó cortado desta arena
+    private final Slabs slabs;      //slabs reservados (num objeto à parte para o Cleaner não depender da arena)
+    private int owners;             //número de listas que usam esta arena
+    private int nextSlabNodes;      //número de nós do próximo slab a reservar
+    private long bump;              //endereço do próximo nó ainda nunca usado no slab atual
+    private long bumpEnd;           //endereço do fim do slab atual
+    private long freeList;          //endereço do primeiro nó da lista de nós livres
+    private long freeTail;          //endereço do último nó da lista de nós livres (só válido se freeList não for NULL)
+    private int reservedRun;        //nós reservados com reserve() que ainda têm de ser cortados seguidos do slab atual
+    private long reservedBytes;     //total de bytes reservados em slabs
+
+    public UNodeArena()
+    {
+        this(DEFAULT_NODE_SIZE);
+    }
+
+    // Cria uma arena que corta nós de nodeSize bytes. O tamanho tem de ser pelo menos 8 bytes (para caber o ponteiro
+    // da lista de livres) e é arredondado para múltiplo de 8 para manter os longs alinhados.
+    public UNodeArena(long nodeSize)
+    {
+        if(nodeSize < 8L){
+            throw new IllegalArgumentException("Node size must be at least 8 bytes");
+        }
+        this.nodeSize = (nodeSize + 7L) & ~7L;
+        this.slabs = new Slabs();
+        this.owners = 0;
+        CLEANER.register(this, this.slabs);
+        this.nextSlabNodes = FIRST_SLAB_NODES;
+        this.bump = NULL;
+        this.bumpEnd = NULL;
+        this.freeList = NULL;
+        this.reservedRun = 0;
+        this.reservedBytes = 0;
+    }
+
+    // Devolve o endereço de um nó com nodeSize bytes. O conteúdo do nó não é inicializado.
+    public long allocate()
+    {
+        long addr;
+        //Caso em que há nós livres para reciclar (e não estamos a servir uma reserva, que tem de ser contígua)
+        if(this.freeList != NULL && this.reservedRun == 0){
+            addr = this.freeList;
+            this.freeList = UNSAFE.getLong(addr);   //o 1.º long do nó livre aponta para o próximo nó livre
+        }
+        //Caso em que temos de cortar um nó novo (reservando um novo slab se o atual estiver cheio)
+        else{
+            if(this.bump == this.bumpEnd){
+                newSlab(this.nextSlabNodes);
+            }
+            addr = this.bump;
+            this.bump += this.nodeSize;
+            if(this.reservedRun > 0) this.reservedRun--;
+        }
+        this.slabs.liveNodes++;
+        UNodeMemoryStats.nodeAllocated();
+        return addr;
+    }
+
+    // Devolve o nó à lista de nós livres da arena. O nó tem de ter sido obtido com allocate() desta arena.
+    public void free(long nodeAddr)
+    {
+        if(this.freeList == NULL) this.freeTail = nodeAddr;
+        UNSAFE.putLong(nodeAddr, this.freeList);
+        this.freeList = nodeAddr;
+        this.slabs.liveNodes--;
+        UNodeMemoryStats.nodeFreed();
+    }
+
+    // Devolve à lista de nós livres todos os nós de uma cadeia ligada por XOR (cujo 1.º nó tem prev NULL e o último
+    // next NULL), numa só passagem e com uma única atualização das estatísticas.
+    void freeChain(long headAddr)
+    {
+        long count = 0;
+        long prevAddr = NULL;
+        long addr = headAddr;
+        while(addr != NULL){
+            long nextAddr = UNSAFE.getLong(addr) ^ prevAddr;
+            if(this.freeList == NULL) this.freeTail = addr;
+            UNSAFE.putLong(addr, this.freeList);
+            this.freeList = addr;
+            prevAddr = addr;
+            addr = nextAddr;
+            count++;
+        }
+        this.slabs.liveNodes -= count;
+        UNodeMemoryStats.nodesFreed(count);
+    }
+
+    // Liberta de uma só vez a memória de todos os slabs. Todos os nós desta arena deixam de ser válidos.
+    // A arena pode continuar a ser usada depois disto.
+    public void freeAll()
+    {
+        this.slabs.run();
+        this.nextSlabNodes = FIRST_SLAB_NODES;
+        this.bump = NULL;
+        this.bumpEnd = NULL;
+        this.freeList = NULL;
+        this.reservedRun = 0;
+        this.reservedBytes = 0;
+    }
+
+    // Garante que as próximas nodes chamadas a allocate() devolvem nós contíguos, por ordem crescente de endereço, sem
+    // reservar mais memória: são todas servidas pelo slab atual, mesmo que haja nós livres (que ficam para depois).
+    // Se o slab atual não tiver espaço suficiente, os nós que ainda lá restam passam para a lista de livres e é
+    // reservado de uma só vez um slab com pelo menos nodes nós. Os free() pelo meio não quebram a reserva.
+    public void reserve(int nodes)
+    {
+        if(nodes <= 0){
+            return;
+        }
+        if((this.bumpEnd - this.bump) / this.nodeSize < nodes){
+            pushFree(this.bump, this.bumpEnd);
+            newSlab(Math.max(nodes, this.nextSlabNodes));
+        }
+        this.reservedRun = nodes;
+    }
+
+    // Passa para esta arena os slabs de other, sem copiar nem mover nós: os nós de other continuam nos mesmos endereços,
+    // mas passam a ser desta arena (e são libertados pelo freeAll desta arena). other fica vazia e pode continuar a ser
+    // usada. Os nós livres de other também passam para esta arena: a lista de livres de other é pendurada no fim da
+    // desta, em O(1). Do slab atual de cada arena, fica a servir os próximos allocate() o que tiver mais espaço por
+    // usar, e os nós que restam no outro (o que tem menos espaço por usar) passam para a lista de livres.
+    // Custa O(número de slabs de other), que é O(log n) porque os slabs crescem geometricamente.
+    void adopt(UNodeArena other)
+    {
+        if(other.nodeSize != this.nodeSize){
+            throw new IllegalArgumentException("Arenas with different node sizes");
+        }
+        this.slabs.moveFrom(other.slabs);
+        this.reservedBytes += other.reservedBytes;
+        if(other.freeList != NULL){
+            UNSAFE.putLong(other.freeTail, this.freeList);
+            if(this.freeList == NULL) this.freeTail = other.freeTail;
+            this.freeList = other.freeList;
+        }
+        //uma reserva em curso tem de continuar a ser servida pelo slab atual desta arena
+        if(this.reservedRun == 0 && other.bumpEnd - other.bump > this.bumpEnd - this.bump){
+            pushFree(this.bump, this.bumpEnd);
+            this.bump = other.bump;
+            this.bumpEnd = other.bumpEnd;
+        }
+        else{
+            pushFree(other.bump, other.bumpEnd);
+        }
+        other.nextSlabNodes = FIRST_SLAB_NODES;
+        other.bump = NULL;
+        other.bumpEnd = NULL;
+        other.freeList = NULL;
+        other.reservedRun = 0;
+        other.reservedBytes = 0;
+    }
+
+    // Copia os size nós da cadeia ligada por XOR que começa em first (todos desta arena) para um único slab novo, pela
+    // ordem da cadeia, e liberta de uma só vez todos os slabs antigos. O resto de cada nó (o item) é copiado tal como
+    // está. Os slabs antigos passam primeiro para uma arena temporária (adopt), que os liberta no fim. Só pode ser usado
+    // se a cadeia tiver todos os nós em uso da arena. Devolve os novos endereços do 1.º e do último nó.
+    long[] relayout(long first, int size)
+    {
+        UNodeArena old = new UNodeArena(this.nodeSize);
+        old.adopt(this);
+        reserve(size);
+        long oldPrev = NULL;
+        long oldAddr = first;
+        long newFirst = NULL;
+        long newPrevPrev = NULL;
+        long newPrev = NULL;
+        for(int i = 0; i < size; i++){
+            long newAddr = allocate();
+            UNSAFE.copyMemory(oldAddr + 8L, newAddr + 8L, this.nodeSize - 8L);
+            //agora que sabemos o next do nó anterior, podemos escrever o seu XOR
+            if(newPrev == NULL) newFirst = newAddr;
+            else UNSAFE.putLong(newPrev, newPrevPrev ^ newAddr);
+            long oldNext = UNSAFE.getLong(oldAddr) ^ oldPrev;
+            oldPrev = oldAddr;
+            oldAddr = oldNext;
+            newPrevPrev = newPrev;
+            newPrev = newAddr;
+        }
+        UNSAFE.putLong(newPrev, newPrevPrev);   //o último nó tem next NULL
+        old.freeAll();
+        return new long[] {newFirst, newPrev};
+    }
+
+    public long nodeSize()
+    {
+        return this.nodeSize;
+    }
+
+    public long liveNodes()
+    {
+        return this.slabs.liveNodes;
+    }
+
+    public long reservedBytes()
+    {
+        return this.reservedBytes;
+    }
+
+    // Regista mais uma lista a usar esta arena.
+    void retain()
+    {
+        this.owners++;
+    }
+
+    // Tira uma lista das que usam esta arena (chamado pela lista quando fica vazia com clear() ou close()). Enquanto
+    // uma lista partilhar a arena com outra (depois de reversed() ou splitAt(), por exemplo) a arena está partilhada
+    // e nenhuma delas a pode libertar de uma só vez, compactar ou passar para outra lista; por isso as listas que
+    // partilham uma arena devem ser fechadas quando deixarem de ser usadas.
+    void release()
+    {
+        if(this.owners > 0){
+            this.owners--;
+        }
+    }
+
+    // Uma arena partilhada por várias listas não pode ser libertada de uma só vez por uma delas.
+    boolean isShared()
+    {
+        return this.owners > 1;
+    }
+
+    //passa para a lista de livres os nós ainda nunca usados entre os endereços from (inclusive) e to (exclusive)
+    private void pushFree(long from, long to)
+    {
+        for(long addr = from; addr < to; addr += this.nodeSize){
+            if(this.freeList == NULL) this.freeTail = addr;
+            UNSAFE.putLong(addr, this.freeList);
+            this.freeList = addr;
+        }
+    }
+
+    private void newSlab(long nodes)
+    {
+        long bytes = nodes * this.nodeSize;
+        long slab = UNSAFE.allocateMemory(bytes);
+        this.slabs.add(slab, bytes);
+        UNodeMemoryStats.bytesReserved(bytes);
+        UNodeMemoryStats.updatePeak();
+        this.bump = slab;
+        this.bumpEnd = slab + bytes;
+        this.reservedBytes += bytes;
+        if(this.nextSlabNodes < MAX_SLAB_NODES){
+            this.nextSlabNodes *= 2;
+        }
+    }
+
+    // Endereços dos slabs de uma arena (e o número de nós em uso, para a contabilidade do UNodeMemoryStats).
+    // É também a ação do Cleaner, por isso não pode ter referências para a arena.
+    private static class Slabs implements Runnable {
+
+        private long[] addrs = new long[8];
+        private int count = 0;
+        private long bytes = 0;
+        private long liveNodes = 0;
+
+        void add(long slab, long slabBytes)
+        {
+            this.bytes += slabBytes;
+            if(this.count == this.addrs.length){
+                long[] newAddrs = new long[this.addrs.length * 2];
+                System.arraycopy(this.addrs, 0, newAddrs, 0, this.count);
+                this.addrs = newAddrs;
+            }
+            this.addrs[this.count++] = slab;
+        }
+
+        //passa os slabs de other para estes, sem os libertar
+        void moveFrom(Slabs other)
+        {
+            for(int i = 0; i < other.count; i++){
+                add(other.addrs[i], 0);
+                other.addrs[i] = NULL;
+            }
+            this.bytes += other.bytes;
+            this.liveNodes += other.liveNodes;
+            other.count = 0;
+            other.bytes = 0;
+            other.liveNodes = 0;
+        }
+
+        //liberta todos os slabs
+        @Override
+        public void run()
+        {
+            for(int i = 0; i < this.count; i++){
+                UNSAFE.freeMemory(this.addrs[i]);
+                this.addrs[i] = NULL;
+            }
+            this.count = 0;
+            UNodeMemoryStats.bytesReleased(this.bytes);
+            UNodeMemoryStats.nodesFreed(this.liveNodes);
+            this.bytes = 0;
+            this.liveNodes = 0;
+        }
+    }
+
+    //Benchmark: adicionar n elementos a uma StingyList e remover os n elementos, com e sem arena.
+
+    private static final Random R = new Random();
+
+    public static Integer[] generateItems(int n)
+    {
+        Integer[] items = new Integer[n];
+        for(int i = 0; i < n; i++){
+            items[i] = R.nextInt();
+        }
+        return items;
+    }
+
+    public static void addRemoveWithArena(Integer[] items)
+    {
+        UNodeArena arena = new UNodeArena();
+        addRemove(new StingyList<>(arena), items);
+        arena.freeAll();
+    }
+
+    public static void addRemoveWithoutArena(Integer[] items)
+    {
+        addRemove(new StingyList<>((UNodeArena) null), items);
+    }
+
+    private static void addRemove(StingyList<Integer> list, Integer[] items)
+    {
+        for(Integer item : items){
+            list.add(item);
+        }
+        for(int i = 0; i < items.length; i++){
+            list.remove();
+        }
+    }
+
+    public static void main(String[] args)
+    {
+        TemporalAnalysisUtils.runDoublingRatioTest("add/remove com arena", UNodeArena::generateItems, UNodeArena::addRemoveWithArena, 1000, 10);
+        TemporalAnalysisUtils.runDoublingRatioTest("add/remove sem arena (allocateMemory por nó)", UNodeArena::generateItems, UNodeArena::addRemoveWithoutArena, 1000, 10);
+
+        int n = 1_000_000;
+        Integer[] items = generateItems(n);
+        long withArena = TemporalAnalysisUtils.getAverageCPUTime(() -> addRemoveWithArena(items), 10);
+        long withoutArena = TemporalAnalysisUtils.getAverageCPUTime(() -> addRemoveWithoutArena(items), 10);
+        System.out.println("n = " + n + " (n adds + n removes)");
+        System.out.println("com arena: " + String.format("%.1f", 2.0 * n / (withArena / 1E6)) + " ops/ms");
+        System.out.println("sem arena: " + String.format("%.1f", 2.0 * n / (withoutArena / 1E6)) + " ops/ms");
+    }
+}
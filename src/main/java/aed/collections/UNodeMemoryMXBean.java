@@ -0,0 +1,22 @@
+package aed.collections;
+
+// Interface de gestão (JMX) com as estatísticas da memória fora do HEAP usada pelos UNodes.
+// Está registada no platform MBean server com o nome "aed.collections:type=UNodeMemory".
+
+public interface UNodeMemoryMXBean {
+
+    // Número de nós atualmente em uso (alocados e ainda não libertados).
+    long getLiveNodes();
+
+    // Bytes atualmente reservados fora do HEAP (slabs das arenas mais nós reservados individualmente).
+    long getReservedBytes();
+
+    // Maior valor de bytes reservados observado até agora.
+    long getPeakReservedBytes();
+
+    // Total de nós alocados desde o arranque.
+    long getTotalAllocations();
+
+    // Total de nós libertados desde o arranque.
+    long getTotalFrees();
+}
@@ -0,0 +1,192 @@
+package aed.collections;
+
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+// Contabilidade da memória fora do HEAP usada pelos UNodes. Nem o -Xmx nem os heap dumps mostram esta memória,
+// por isso contamos aqui as alocações e libertações feitas pelo UNode e pelas UNodeArenas.
+//
+// Os contadores são LongAdders (contadores "às riscas", com uma célula por thread em caso de contenção), por isso
+// incrementá-los no caminho crítico de create_node/free_node é barato e não serializa as threads.
+// O pico é atualizado sempre que uma arena reserva um slab (operação rara) e sempre que se tira um snapshot;
+// os nós reservados individualmente (listas sem arena) só entram no pico na altura do snapshot.
+//
+// As estatísticas podem ser lidas por JMX (UNodeMemoryMXBean, registado como "aed.collections:type=UNodeMemory")
+// ou programaticamente com snapshot().
+
+public final class UNodeMemoryStats implements UNodeMemoryMXBean {
+
+    public static final String OBJECT_NAME = "aed.collections:type=UNodeMemory";
+
+    private static final LongAdder ALLOCATIONS = new LongAdder();
+    private static final LongAdder FREES = new LongAdder();
+    private static final LongAdder BYTES_RESERVED = new LongAdder();
+    private static final LongAdder BYTES_RELEASED = new LongAdder();
+    private static final AtomicLong PEAK_RESERVED_BYTES = new AtomicLong();
+
+    private static final UNodeMemoryStats INSTANCE = new UNodeMemoryStats();
+
+    static
+    {
+        try
+        {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(INSTANCE, new ObjectName(OBJECT_NAME));
+        }
+        catch(Exception e)
+        {
+            //já registado (por exemplo por outro class loader) ou JMX indisponível: as estatísticas continuam
+            //disponíveis através de snapshot()
+        }
+    }
+
+    private UNodeMemoryStats()
+    {
+    }
+
+    public static UNodeMemoryMXBean getMXBean()
+    {
+        return INSTANCE;
+    }
+
+    //Métodos chamados pelo UNode e pela UNodeArena
+
+    static void nodeAllocated()
+    {
+        ALLOCATIONS.increment();
+    }
+
+    static void nodeFreed()
+    {
+        FREES.increment();
+    }
+
+    static void nodesFreed(long count)
+    {
+        FREES.add(count);
+    }
+
+    static void bytesReserved(long bytes)
+    {
+        BYTES_RESERVED.add(bytes);
+    }
+
+    static void bytesReleased(long bytes)
+    {
+        BYTES_RELEASED.add(bytes);
+    }
+
+    // Chamado quando uma arena reserva um slab: atualiza o pico com o valor atual de bytes reservados.
+    static void updatePeak()
+    {
+        long current = BYTES_RESERVED.sum() - BYTES_RELEASED.sum();
+        PEAK_RESERVED_BYTES.accumulateAndGet(current, Math::max);
+    }
+
+    public static Snapshot snapshot()
+    {
+        updatePeak();
+        long allocations = ALLOCATIONS.sum();
+        long frees = FREES.sum();
+        long reserved = BYTES_RESERVED.sum() - BYTES_RELEASED.sum();
+        return new Snapshot(allocations - frees, reserved, PEAK_RESERVED_BYTES.get(), allocations, frees);
+    }
+
+    @Override
+    public long getLiveNodes()
+    {
+        return ALLOCATIONS.sum() - FREES.sum();
+    }
+
+    @Override
+    public long getReservedBytes()
+    {
+        return BYTES_RESERVED.sum() - BYTES_RELEASED.sum();
+    }
+
+    @Override
+    public long getPeakReservedBytes()
+    {
+        updatePeak();
+        return PEAK_RESERVED_BYTES.get();
+    }
+
+    @Override
+    public long getTotalAllocations()
+    {
+        return ALLOCATIONS.sum();
+    }
+
+    @Override
+    public long getTotalFrees()
+    {
+        return FREES.sum();
+    }
+
+    // Fotografia imutável das estatísticas num dado momento. Como os contadores são lidos um a um, sem parar as
+    // outras threads, os valores são coerentes entre si apenas de forma aproximada.
+    public static final class Snapshot {
+
+        private final long liveNodes;
+        private final long reservedBytes;
+        private final long peakReservedBytes;
+        private final long totalAllocations;
+        private final long totalFrees;
+
+        Snapshot(long liveNodes, long reservedBytes, long peakReservedBytes, long totalAllocations, long totalFrees)
+        {
+            this.liveNodes = liveNodes;
+            this.reservedBytes = reservedBytes;
+            this.peakReservedBytes = peakReservedBytes;
+            this.totalAllocations = totalAllocations;
+            this.totalFrees = totalFrees;
+        }
+
+        public long liveNodes()
+        {
+            return this.liveNodes;
+        }
+
+        public long reservedBytes()
+        {
+            return this.reservedBytes;
+        }
+
+        public long peakReservedBytes()
+        {
+            return this.peakReservedBytes;
+        }
+
+        public long totalAllocations()
+        {
+            return this.totalAllocations;
+        }
+
+        public long totalFrees()
+        {
+            return this.totalFrees;
+        }
+
+        @Override
+        public String toString()
+        {
+            return "liveNodes=" + this.liveNodes + ", reservedBytes=" + this.reservedBytes
+                    + ", peakReservedBytes=" + this.peakReservedBytes + ", totalAllocations=" + this.totalAllocations
+                    + ", totalFrees=" + this.totalFrees;
+        }
+    }
+
+    public static void main(String[] args)
+    {
+        System.out.println(snapshot());
+        StingyList<Integer> list = new StingyList<>();
+        for(int i = 0; i < 1_000_000; i++){
+            list.add(i & 127);
+        }
+        System.out.println("lista com " + list.size() + " nós, " + list.nativeMemoryBytes() + " bytes fora do HEAP");
+        System.out.println(snapshot());
+        list.close();
+        System.out.println(snapshot());
+    }
+}
@@ -0,0 +1,79 @@
+package aed.collections;
+
+// Sítio onde vivem os nós de uma StingyList. A lista só conhece os nós pelos seus "endereços" (longs diferentes de 0,
+// que continua a representar NULL) e faz o XOR desses endereços para guardar o previous e o next de cada nó, por isso
+// não precisa de saber como é que os nós estão guardados. Há duas implementações:
+//   - ArenaNodeStore: os UNodes de 16 bytes de sempre, lidos e escritos com o Unsafe e cortados de uma UNodeArena
+//     (ou reservados um a um com allocateMemory). É a que a StingyList usa por omissão.
+//   - BufferNodeStore: as ligações ficam em ByteBuffers diretos (fora do HEAP), acedidos com VarHandles, e os itens
+//     num array de referências normal no HEAP. Não usa o Unsafe nem o truque do endereço dos objetos.
+//
+// Uma store pode ser partilhada por várias listas (por exemplo pela lista devolvida por reversed() ou splitAt()), por
+// isso conta quantas listas a usam (retain/release). Tal como a arena, uma store não é thread-safe.
+
+public interface UNodeStore {
+
+    // Cria um nó com o item e com as ligações previous/next e devolve o seu endereço.
+    long create(Object item, long previous, long next);
+
+    // Liberta um nó criado por esta store.
+    void free(long node);
+
+    // Liberta todos os nós de uma cadeia ligada por XOR que já foi separada da lista (o prev do 1.º nó e o next do
+    // último são NULL).
+    void freeChain(long head);
+
+    // Devolve o XOR dos endereços do previous e do next do nó.
+    long links(long node);
+
+    void setLinks(long node, long prevXorNext);
+
+    // Atualiza uma das ligações do nó (o previous ou o next), mantendo a outra.
+    default void relink(long node, long oldAddr, long newAddr)
+    {
+        setLinks(node, links(node) ^ oldAddr ^ newAddr);
+    }
+
+    <T> T item(long node);
+
+    void setItem(long node, Object item);
+
+    // Prepara a store para as próximas nodes chamadas a create() (por exemplo reservando a memória de uma só vez).
+    // Com uma UNodeArena (UNodeArena.reserve) esses nós são também contíguos, por ordem crescente de endereço.
+    void reserve(int nodes);
+
+    // Regista mais uma lista a usar esta store.
+    void retain();
+
+    // Tira uma lista das que usam esta store (a lista ficou vazia com clear() ou close()). As listas que partilham
+    // uma store têm de ser fechadas para que a última possa voltar a libertá-la de uma só vez (canFreeAll).
+    default void release()
+    {
+    }
+
+    // true se a store puder libertar de uma só vez todos os seus nós com freeAll (só tem uma dona).
+    boolean canFreeAll();
+
+    // Liberta todos os nós da store de uma só vez.
+    void freeAll();
+
+    // Tenta que os nós de other (que deixam de ser usados por other) passem a pertencer a esta store sem serem
+    // copiados. Devolve true se os nós de other já eram desta store ou se passaram a ser, e false se tiverem de ser
+    // copiados um a um.
+    boolean adopt(UNodeStore other);
+
+    // Copia os size nós da cadeia que começa em first (e acaba num nó com next NULL) para memória nova e contígua, pela
+    // ordem da cadeia, refaz as ligações XOR e liberta a memória antiga da store. Os itens não mudam. Só é possível se
+    // a cadeia tiver todos os nós da store e a store tiver uma só dona (canFreeAll). Devolve os novos endereços do
+    // 1.º e do último nó, ou null se a store não souber compactar os seus nós.
+    default long[] compact(long first, int size)
+    {
+        return null;
+    }
+
+    // Bytes fora do HEAP reservados pela store (inclui a folga que ainda não está a ser usada).
+    long reservedBytes();
+
+    // Bytes fora do HEAP usados por cada nó.
+    long nodeBytes();
+}